@@ -0,0 +1,211 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.openstego.desktop.util.LabelUtil;
+
+/**
+ * Class to process a list of files on a bounded pool of worker threads. Each file is processed by the given
+ * {@link Task}, and its result is reported as soon as it is done, so the files are reported in the order in which
+ * they finish rather than the order of the list. A file which fails does not stop the others from being processed
+ */
+public class BatchExecutor {
+    /**
+     * Task to be done for each file of the batch. The task is called from many threads at once, so it must not keep
+     * any state between the files
+     *
+     * @param <T> Type of the result of the task
+     */
+    public interface Task<T> {
+        /**
+         * Method to process one file of the batch
+         *
+         * @param file File to be processed
+         * @return Result for the file
+         * @throws OpenStegoException
+         */
+        public T process(File file) throws OpenStegoException;
+    }
+
+    /**
+     * Listener which is told about each file of the batch as soon as it is done. The listener is always called from
+     * the thread which runs {@link BatchExecutor#execute(List, Task, Listener)}, one file at a time
+     *
+     * @param <T> Type of the result of the task
+     */
+    public interface Listener<T> {
+        /**
+         * Method called when a file is processed
+         *
+         * @param file File which was processed
+         * @param index Index of the file in the list
+         * @param result Result for the file
+         */
+        public void fileProcessed(File file, int index, T result);
+
+        /**
+         * Method called when a file fails
+         *
+         * @param file File which failed
+         * @param index Index of the file in the list
+         * @param osEx Error thrown while processing the file
+         */
+        public void fileFailed(File file, int index, OpenStegoException osEx);
+    }
+
+    /**
+     * LabelUtil instance to retrieve labels
+     */
+    private static LabelUtil labelUtil = LabelUtil.getInstance(OpenStego.NAMESPACE);
+
+    /**
+     * Number of worker threads
+     */
+    private int threads = 0;
+
+    /**
+     * Default constructor
+     *
+     * @param threads Number of worker threads (zero for one thread per available processor)
+     */
+    public BatchExecutor(int threads) {
+        this.threads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Method to process all the files of the batch, and report the result of each file to the listener as soon as it
+     * is done
+     *
+     * @param files List of files to be processed
+     * @param task Task to be done for each file
+     * @param listener Listener to report the results to
+     * @return Number of files which failed
+     * @throws OpenStegoException
+     */
+    public <T> int execute(List<File> files, final Task<T> task, Listener<T> listener) throws OpenStegoException {
+        Map<Future<T>, Integer> indexes = new HashMap<Future<T>, Integer>();
+        ExecutorService executor = null;
+        CompletionService<T> completion = null;
+        Future<T> future = null;
+        int index = 0;
+        int failed = 0;
+
+        if (files.size() == 0) {
+            return 0;
+        }
+
+        executor = Executors.newFixedThreadPool(Math.min(this.threads, files.size()));
+        try {
+            completion = new ExecutorCompletionService<T>(executor);
+            for (int i = 0; i < files.size(); i++) {
+                final File file = files.get(i);
+                indexes.put(completion.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        return task.process(file);
+                    }
+                }), i);
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                future = completion.take();
+                index = indexes.get(future);
+                try {
+                    listener.fileProcessed(files.get(index), index, future.get());
+                } catch (ExecutionException execEx) {
+                    failed++;
+                    if (execEx.getCause() instanceof OpenStegoException) {
+                        listener.fileFailed(files.get(index), index, (OpenStegoException) execEx.getCause());
+                    } else {
+                        listener.fileFailed(files.get(index), index, new OpenStegoException(execEx.getCause()));
+                    }
+                }
+            }
+        } catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new OpenStegoException(intEx);
+        } finally {
+            executor.shutdownNow();
+        }
+        return failed;
+    }
+
+    /**
+     * Method to process all the files of the batch. The result of every file which is processed is printed to the
+     * given stream, and the error of every file which fails is printed to stderr
+     *
+     * @param files List of files to be processed
+     * @param task Task to be done for each file
+     * @param out Stream to print the results to
+     * @return Number of files which failed
+     * @throws OpenStegoException
+     */
+    public <T> int execute(List<File> files, Task<T> task, PrintStream out) throws OpenStegoException {
+        return execute(files, task, new PrintListener<T>(out));
+    }
+
+    /**
+     * Listener which prints the results to a stream, and the errors to stderr
+     *
+     * @param <T> Type of the result of the task
+     */
+    public static class PrintListener<T> implements Listener<T> {
+        /**
+         * Stream to print the results to
+         */
+        private PrintStream out = null;
+
+        /**
+         * Default constructor
+         *
+         * @param out Stream to print the results to
+         */
+        public PrintListener(PrintStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Method called when a file is processed. The result is printed to the stream
+         *
+         * @param file File which was processed
+         * @param index Index of the file in the list
+         * @param result Result for the file
+         */
+        @Override
+        public void fileProcessed(File file, int index, T result) {
+            this.out.println(result);
+        }
+
+        /**
+         * Method called when a file fails. The error is printed to stderr
+         *
+         * @param file File which failed
+         * @param index Index of the file in the list
+         * @param osEx Error thrown while processing the file
+         */
+        @Override
+        public void fileFailed(File file, int index, OpenStegoException osEx) {
+            if (osEx.getErrorCode() == OpenStegoException.UNHANDLED_EXCEPTION) {
+                osEx.printStackTrace();
+            }
+            System.err.println(labelUtil.getString("cmd.msg.fileFailed", file.getName(), osEx.getMessage()));
+        }
+    }
+}
@@ -37,11 +37,12 @@ public abstract class DataHidingPlugin extends OpenStegoPlugin {
      * Method to generate the signature data. This implementation returns <code>null</code> as this class is for data
      * hiding plugins only
      *
+     * @param config Configuration data to be used for this call
      * @return Signature data
      * @throws OpenStegoException
      */
     @Override
-    public final byte[] generateSignature() throws OpenStegoException {
+    public final byte[] generateSignature(OpenStegoConfig config) throws OpenStegoException {
         return null;
     }
 
@@ -85,12 +86,13 @@ public abstract class DataHidingPlugin extends OpenStegoPlugin {
      * Method to find out whether given stego data can be handled by this plugin or not
      *
      * @param stegoData Stego data containing the message
+     * @param config Configuration data to be used for this call
      * @return Boolean indicating whether the stego data can be handled by this plugin or not
      */
     @Override
-    public final boolean canHandle(byte[] stegoData) {
+    public final boolean canHandle(byte[] stegoData, OpenStegoConfig config) {
         try {
-            extractMsgFileName(stegoData, "DUMMY");
+            extractMsgFileName(stegoData, "DUMMY", config);
         } catch (OpenStegoException osEx) {
             if (osEx.getErrorCode() != OpenStegoException.INVALID_PASSWORD) {
                 return false;
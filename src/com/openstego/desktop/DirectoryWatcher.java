@@ -0,0 +1,223 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to watch a directory for new cover files, and process each of them as soon as it has arrived. The files are
+ * processed by a pool of worker threads through a bounded queue: once the queue is full, the watcher waits for a
+ * file to be done before it takes on the next one, so a burst of files does not pile up in memory. A file is taken
+ * on once no change has been seen for it for {@link #QUIET_PERIOD} milliseconds, so that files which are still being
+ * copied into the directory are not read half-written
+ */
+public class DirectoryWatcher {
+    /**
+     * Time (in milliseconds) for which a file must not change before it is processed
+     */
+    public static final long QUIET_PERIOD = 100;
+
+    /**
+     * Number of files which can wait in the queue for each worker thread
+     */
+    private static final int QUEUE_SIZE_PER_THREAD = 2;
+
+    /**
+     * Directory to watch
+     */
+    private File watchDir = null;
+
+    /**
+     * Directory where the output files are written. Files whose output is newer than the file itself are not
+     * processed again when the watcher starts
+     */
+    private File outputDir = null;
+
+    /**
+     * List of file extensions (in lower case) of the files to be processed
+     */
+    private List<String> extensions = null;
+
+    /**
+     * Number of worker threads
+     */
+    private int threads = 0;
+
+    /**
+     * Default constructor
+     *
+     * @param watchDir Directory to watch
+     * @param outputDir Directory where the output files are written (must be different from the watched directory)
+     * @param extensions List of file extensions of the files to be processed
+     * @param threads Number of worker threads (zero for one thread per available processor)
+     */
+    public DirectoryWatcher(File watchDir, File outputDir, List<String> extensions, int threads) {
+        this.watchDir = watchDir;
+        this.outputDir = outputDir;
+        this.extensions = extensions;
+        this.threads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Method to watch the directory and process the files in it. The files already in the directory, which do not
+     * have a newer output file yet, are processed first. This method returns only if the watched directory is no
+     * longer accessible or the thread is interrupted
+     *
+     * @param task Task to be done for each file. Its result is reported to the listener
+     * @param listener Listener to report the results to. Unlike {@link BatchExecutor}, the listener is called from the
+     *        worker threads, so it must be thread-safe. The index given to it is the sequence number of the file
+     * @throws OpenStegoException
+     */
+    public <T> void watch(BatchExecutor.Task<T> task, BatchExecutor.Listener<T> listener) throws OpenStegoException {
+        Map<File, Long> pending = new HashMap<File, Long>();
+        ExecutorService executor = null;
+        Semaphore slots = null;
+        WatchService watcher = null;
+        WatchKey key = null;
+        Path dirPath = this.watchDir.toPath();
+        int count = 0;
+        boolean valid = true;
+
+        executor = Executors.newFixedThreadPool(this.threads);
+        slots = new Semaphore(this.threads * (1 + QUEUE_SIZE_PER_THREAD));
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            dirPath.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            // Register first and scan afterwards, so that no file can arrive unseen in between
+            scanDirectory(pending);
+
+            while (valid) {
+                key = watcher.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // Events have been lost, so look at the whole directory again
+                            scanDirectory(pending);
+                        } else {
+                            File file = dirPath.resolve((Path) event.context()).toFile();
+                            if (isEligible(file)) {
+                                pending.put(file, System.currentTimeMillis());
+                            }
+                        }
+                    }
+                    valid = key.reset();
+                }
+
+                // Hand over the files which have not changed for the quiet period
+                Iterator<Map.Entry<File, Long>> iter = pending.entrySet().iterator();
+                long now = System.currentTimeMillis();
+                while (iter.hasNext()) {
+                    Map.Entry<File, Long> entry = iter.next();
+                    if (now - entry.getValue() >= QUIET_PERIOD) {
+                        iter.remove();
+                        if (entry.getKey().isFile()) {
+                            slots.acquire();
+                            submit(executor, slots, entry.getKey(), count++, task, listener);
+                        }
+                    }
+                }
+            }
+        } catch (IOException ioEx) {
+            throw new OpenStegoException(ioEx);
+        } catch (ClosedWatchServiceException cwsEx) {
+            // Watcher closed, so nothing more to do
+        } catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException ioEx) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to hand over a file to the worker threads. The slot taken for the file is released once it is done
+     *
+     * @param executor Executor of the worker threads
+     * @param slots Slots of the bounded queue
+     * @param file File to be processed
+     * @param index Sequence number of the file
+     * @param task Task to be done for the file
+     * @param listener Listener to report the result to
+     */
+    private <T> void submit(ExecutorService executor, final Semaphore slots, final File file, final int index, final BatchExecutor.Task<T> task,
+            final BatchExecutor.Listener<T> listener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.fileProcessed(file, index, task.process(file));
+                } catch (OpenStegoException osEx) {
+                    listener.fileFailed(file, index, osEx);
+                } catch (RuntimeException rtEx) {
+                    listener.fileFailed(file, index, new OpenStegoException(rtEx));
+                } finally {
+                    slots.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Method to add the files in the watched directory which do not have a newer output file to the pending files
+     *
+     * @param pending Map of the pending files to the time of their last change
+     */
+    private void scanDirectory(Map<File, Long> pending) {
+        File[] files = this.watchDir.listFiles();
+        File output = null;
+        long now = System.currentTimeMillis();
+
+        if (files == null) {
+            return;
+        }
+        for (int i = 0; i < files.length; i++) {
+            output = new File(this.outputDir, files[i].getName());
+            // Files which are already pending keep the time of their last change, so that they still wait for the
+            // quiet period
+            if (isEligible(files[i]) && !pending.containsKey(files[i])
+                    && (!output.exists() || output.lastModified() < files[i].lastModified())) {
+                pending.put(files[i], now);
+            }
+        }
+    }
+
+    /**
+     * Method to check whether a file is to be processed, based on its extension
+     *
+     * @param file File to check
+     * @return true if the file is to be processed
+     */
+    private boolean isEligible(File file) {
+        String name = file.getName();
+        int pos = name.lastIndexOf('.');
+
+        return pos > 0 && this.extensions.contains(name.substring(pos + 1).toLowerCase());
+    }
+}
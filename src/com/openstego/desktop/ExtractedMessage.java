@@ -0,0 +1,158 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Message extracted from stego data, along with the details stored in its header. This is returned by
+ * {@link OpenStegoPlugin#extractMessage(byte[], String, OpenStegoConfig)}, which gets the header and the message in a single pass over
+ * the stego data, and by {@link OpenStegoPlugin#extractMessageStream(byte[], String, OpenStegoConfig)}, which reads only the header and
+ * leaves the message to be read from a stream
+ */
+public class ExtractedMessage {
+    /**
+     * Message file name
+     */
+    private String fileName = null;
+
+    /**
+     * Message data, as embedded (i.e. still compressed and encrypted, if those flags are set)
+     */
+    private byte[] data = null;
+
+    /**
+     * Stream to read the message data from, as embedded (<code>null</code> if the data is held in the byte array)
+     */
+    private InputStream stream = null;
+
+    /**
+     * Length of the message data
+     */
+    private int dataLength = 0;
+
+    /**
+     * Flag to indicate whether the message data is compressed
+     */
+    private boolean useCompression = false;
+
+    /**
+     * Flag to indicate whether the message data is encrypted
+     */
+    private boolean useEncryption = false;
+
+    /**
+     * Algorithm used to encrypt the message data
+     */
+    private String encryptionAlgorithm = null;
+
+    /**
+     * Default constructor
+     *
+     * @param fileName Message file name
+     * @param data Message data, as embedded
+     * @param useCompression Flag to indicate whether the message data is compressed
+     * @param useEncryption Flag to indicate whether the message data is encrypted
+     * @param encryptionAlgorithm Algorithm used to encrypt the message data
+     */
+    public ExtractedMessage(String fileName, byte[] data, boolean useCompression, boolean useEncryption, String encryptionAlgorithm) {
+        this.fileName = fileName;
+        this.data = data;
+        this.dataLength = data.length;
+        this.useCompression = useCompression;
+        this.useEncryption = useEncryption;
+        this.encryptionAlgorithm = encryptionAlgorithm;
+    }
+
+    /**
+     * Constructor for a message which is read from a stream
+     *
+     * @param fileName Message file name
+     * @param stream Stream to read the message data from, as embedded. The stream must end after the message data
+     * @param dataLength Length of the message data
+     * @param useCompression Flag to indicate whether the message data is compressed
+     * @param useEncryption Flag to indicate whether the message data is encrypted
+     * @param encryptionAlgorithm Algorithm used to encrypt the message data
+     */
+    public ExtractedMessage(String fileName, InputStream stream, int dataLength, boolean useCompression, boolean useEncryption,
+            String encryptionAlgorithm) {
+        this.fileName = fileName;
+        this.stream = stream;
+        this.dataLength = dataLength;
+        this.useCompression = useCompression;
+        this.useEncryption = useEncryption;
+        this.encryptionAlgorithm = encryptionAlgorithm;
+    }
+
+    /**
+     * Get method for fileName
+     *
+     * @return fileName
+     */
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    /**
+     * Get method for data
+     *
+     * @return data (<code>null</code> if the message is read from a stream)
+     */
+    public byte[] getData() {
+        return this.data;
+    }
+
+    /**
+     * Get a stream to read the message data from. For a message held in a byte array, this gives a new stream over
+     * the array
+     *
+     * @return Stream to read the message data from
+     */
+    public InputStream getStream() {
+        if (this.stream == null) {
+            return new ByteArrayInputStream(this.data);
+        }
+        return this.stream;
+    }
+
+    /**
+     * Get method for dataLength
+     *
+     * @return dataLength
+     */
+    public int getDataLength() {
+        return this.dataLength;
+    }
+
+    /**
+     * Get method for useCompression
+     *
+     * @return useCompression
+     */
+    public boolean isUseCompression() {
+        return this.useCompression;
+    }
+
+    /**
+     * Get method for useEncryption
+     *
+     * @return useEncryption
+     */
+    public boolean isUseEncryption() {
+        return this.useEncryption;
+    }
+
+    /**
+     * Get method for encryptionAlgorithm
+     *
+     * @return encryptionAlgorithm
+     */
+    public String getEncryptionAlgorithm() {
+        return this.encryptionAlgorithm;
+    }
+}
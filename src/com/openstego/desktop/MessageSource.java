@@ -0,0 +1,34 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Source of message data to be embedded, which writes the data directly to the stream of the plugin instead of
+ * handing it over as a byte array. This is used by
+ * {@link OpenStegoPlugin#embedMessage(MessageSource, String, byte[], String, String, OpenStegoConfig)}
+ */
+public interface MessageSource {
+    /**
+     * Get the upper limit for the number of bytes which {@link #writeTo(OutputStream)} writes. Plugins use this to
+     * reserve space in the cover data before the data is written
+     *
+     * @return Maximum length of the data
+     */
+    int getMaxLength();
+
+    /**
+     * Write the message data to the given stream. The stream may get closed once the data is written
+     *
+     * @param out Stream to write the data to
+     * @throws IOException
+     * @throws OpenStegoException
+     */
+    void writeTo(OutputStream out) throws IOException, OpenStegoException;
+}
@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -62,10 +63,13 @@ public class OpenStego {
     }
 
     /**
-     * Constructor using {@link OpenStegoConfig} object
+     * Constructor using {@link OpenStegoConfig} object. The configuration is passed to the plugin with each call, so
+     * many OpenStego objects with different configurations can share the same plugin object
      *
      * @param plugin Stego plugin to use
-     * @param config OpenStegoConfig object with configuration data
+     * @param config OpenStegoConfig object with configuration data, which should be created by the
+     *        <code>createConfig</code> methods of the plugin. If <code>null</code>, the default configuration of the
+     *        plugin is used
      * @throws OpenStegoException
      */
     public OpenStego(OpenStegoPlugin plugin, OpenStegoConfig config) throws OpenStegoException {
@@ -74,7 +78,7 @@ public class OpenStego {
             throw new OpenStegoException(null, NAMESPACE, OpenStegoException.NO_PLUGIN_SPECIFIED);
         }
         this.plugin = plugin;
-        this.config = (config == null) ? new OpenStegoConfig() : config;
+        this.config = (config == null) ? plugin.createConfig() : config;
     }
 
     /**
@@ -85,7 +89,7 @@ public class OpenStego {
      * @throws OpenStegoException
      */
     public OpenStego(OpenStegoPlugin plugin, Map<String, String> propMap) throws OpenStegoException {
-        this(plugin, new OpenStegoConfig(propMap));
+        this(plugin, (plugin == null) ? null : plugin.createConfig(propMap));
     }
 
     /**
@@ -100,10 +104,19 @@ public class OpenStego {
      * @throws OpenStegoException
      */
     public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName) throws OpenStegoException {
-        if (!this.plugin.getPurposes().contains(OpenStegoPlugin.Purpose.DATA_HIDING)) {
-            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_DH);
-        }
+        return embedPreparedData(prepareMessage(msg), msgFileName, cover, coverFileName, stegoFileName);
+    }
 
+    /**
+     * Method to compress and encrypt the message data as per the configuration, so that it is ready to be embedded.
+     * This allows the same message to be embedded into many cover files (see
+     * {@link #embedPreparedData(byte[], String, byte[], String, String)}) while compressing and encrypting it only once
+     *
+     * @param msg Message data to be embedded
+     * @return Message data as it is to be embedded
+     * @throws OpenStegoException
+     */
+    public byte[] prepareMessage(byte[] msg) throws OpenStegoException {
         try {
             // Compress data, if requested
             if (this.config.isUseCompression()) {
@@ -123,7 +136,100 @@ public class OpenStego {
                 msg = crypto.encrypt(msg);
             }
 
-            return this.plugin.embedData(msg, msgFileName, cover, coverFileName, stegoFileName);
+            return msg;
+        } catch (OpenStegoException osEx) {
+            throw osEx;
+        } catch (Exception ex) {
+            throw new OpenStegoException(ex);
+        }
+    }
+
+    /**
+     * Method to embed message data which is already compressed and encrypted (see {@link #prepareMessage(byte[])})
+     * into the cover data. The plugins do not keep any state between embeddings, so this can be called from many
+     * threads at once with the same message data
+     *
+     * @param preparedMsg Message data as returned by {@link #prepareMessage(byte[])}
+     * @param msgFileName Name of the message file
+     * @param cover Cover data into which message data needs to be embedded
+     * @param coverFileName Name of the cover file
+     * @param stegoFileName Name of the output stego file
+     * @return Stego data containing the embedded message
+     * @throws OpenStegoException
+     */
+    public byte[] embedPreparedData(byte[] preparedMsg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName)
+            throws OpenStegoException {
+        if (!this.plugin.getPurposes().contains(OpenStegoPlugin.Purpose.DATA_HIDING)) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_DH);
+        }
+
+        return this.plugin.embedData(preparedMsg, msgFileName, cover, coverFileName, stegoFileName, this.config);
+    }
+
+    /**
+     * Method to embed the message data read from a stream into the cover data. The data is compressed and encrypted
+     * as it is read, and written straight into the plugin, so the message is never held in memory as a whole (if the
+     * plugin supports this, see {@link OpenStegoPlugin#embedMessage(MessageSource, String, byte[], String, String, OpenStegoConfig)})
+     * <p>
+     * As the data is embedded before its final length is known, the plugin has to size the embedding for the largest
+     * length the data can have once compressed and encrypted. This can use more of the cover (e.g. more bits per color
+     * channel) than {@link #embedData(byte[], String, byte[], String, String)} would for the same message, so that
+     * method should be preferred when the message fits in memory
+     *
+     * @param msg Stream with the message data to be embedded. The stream is read to its end, but not closed
+     * @param msgLength Length of the message data
+     * @param msgFileName Name of the message file
+     * @param cover Cover data into which message data needs to be embedded
+     * @param coverFileName Name of the cover file
+     * @param stegoFileName Name of the output stego file
+     * @return Stego data containing the embedded message
+     * @throws OpenStegoException
+     */
+    public byte[] embedData(final InputStream msg, long msgLength, String msgFileName, byte[] cover, String coverFileName, String stegoFileName)
+            throws OpenStegoException {
+        if (!this.plugin.getPurposes().contains(OpenStegoPlugin.Purpose.DATA_HIDING)) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_DH);
+        }
+
+        final boolean useCompression = this.config.isUseCompression();
+        final OpenStegoCrypto crypto;
+        long maxLength = msgLength;
+
+        try {
+            // Work out the largest length the data can have once compressed and encrypted. The compressed length is
+            // bounded by the length of the data stored uncompressed, plus the overhead of the blocks and the GZIP
+            // wrapper
+            if (useCompression) {
+                maxLength += (maxLength >> 12) + (maxLength >> 14) + (maxLength >> 25) + 31;
+            }
+            if (this.config.isUseEncryption()) {
+                crypto = new OpenStegoCrypto(this.config.getPassword(), this.config.getEncryptionAlgorithm());
+                maxLength = crypto.getMaxEncryptedLength(maxLength);
+            } else {
+                crypto = null;
+            }
+            final int maxMsgLength = (int) Math.min(maxLength, Integer.MAX_VALUE);
+
+            return this.plugin.embedMessage(new MessageSource() {
+                @Override
+                public int getMaxLength() {
+                    return maxMsgLength;
+                }
+
+                @Override
+                public void writeTo(OutputStream out) throws IOException, OpenStegoException {
+                    OutputStream os = out;
+
+                    if (crypto != null) {
+                        os = crypto.encrypt(os);
+                    }
+                    if (useCompression) {
+                        os = new GZIPOutputStream(os);
+                    }
+                    CommonUtil.copyStream(msg, os);
+                    os.close();
+                }
+            }, msgFileName, cover, coverFileName, stegoFileName, this.config);
         } catch (OpenStegoException osEx) {
             throw osEx;
         } catch (Exception ex) {
@@ -182,7 +288,7 @@ public class OpenStego {
 
         try {
             // No compression and encryption should be done as this is signature data
-            return this.plugin.embedData(sig, sigFileName, cover, coverFileName, stegoFileName);
+            return this.plugin.embedData(sig, sigFileName, cover, coverFileName, stegoFileName, this.config);
         } catch (OpenStegoException osEx) {
             throw osEx;
         } catch (Exception ex) {
@@ -237,21 +343,25 @@ public class OpenStego {
         }
 
         byte[] msg = null;
+        ExtractedMessage message = null;
         List<Object> output = new ArrayList<Object>();
 
         try {
+            // Get the file name and the message in one pass over the stego data
+            message = this.plugin.extractMessage(stegoData, stegoFileName, this.config);
+
             // Add file name as first element of output list
-            output.add(this.plugin.extractMsgFileName(stegoData, stegoFileName));
-            msg = this.plugin.extractData(stegoData, stegoFileName, null);
+            output.add(message.getFileName());
+            msg = message.getData();
 
             // Decrypt data, if required
-            if (this.config.isUseEncryption()) {
-                OpenStegoCrypto crypto = new OpenStegoCrypto(this.config.getPassword(), this.config.getEncryptionAlgorithm());
+            if (message.isUseEncryption()) {
+                OpenStegoCrypto crypto = new OpenStegoCrypto(this.config.getPassword(), message.getEncryptionAlgorithm());
                 msg = crypto.decrypt(msg);
             }
 
             // Decompress data, if required
-            if (this.config.isUseCompression()) {
+            if (message.isUseCompression()) {
                 try {
                     ByteArrayInputStream bis = new ByteArrayInputStream(msg);
                     GZIPInputStream zis = new GZIPInputStream(bis);
@@ -289,6 +399,72 @@ public class OpenStego {
         return extractData(CommonUtil.getFileBytes(stegoFile), stegoFile.getName());
     }
 
+    /**
+     * Method to extract the message data from stego data as a stream. The message is decrypted and decompressed as the
+     * stream is read, so a large message can be written to a file or a socket without holding it in memory. The
+     * stream should be closed once read. An invalid password is reported here if the message is compressed, as the
+     * decrypted data then does not start with a valid GZIP header. Otherwise, as the data is decrypted only as it is
+     * read, it shows up as an <code>IOException</code> at the end of the stream, whose cause is an
+     * {@link OpenStegoException} with error code {@link OpenStegoException#INVALID_PASSWORD}
+     *
+     * @param stegoData Stego data from which the message needs to be extracted
+     * @param stegoFileName Name of the stego file
+     * @return Extracted message (List's first element is filename and second element is the message as InputStream)
+     * @throws OpenStegoException
+     */
+    public List<?> extractDataStream(byte[] stegoData, String stegoFileName) throws OpenStegoException {
+        if (!this.plugin.getPurposes().contains(OpenStegoPlugin.Purpose.DATA_HIDING)) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_DH);
+        }
+
+        InputStream msg = null;
+        ExtractedMessage message = null;
+        List<Object> output = new ArrayList<Object>();
+
+        message = this.plugin.extractMessageStream(stegoData, stegoFileName, this.config);
+        msg = message.getStream();
+
+        // Decrypt data, if required
+        if (message.isUseEncryption()) {
+            OpenStegoCrypto crypto = new OpenStegoCrypto(this.config.getPassword(), message.getEncryptionAlgorithm());
+            msg = crypto.decrypt(msg);
+        }
+
+        // Decompress data, if required
+        if (message.isUseCompression()) {
+            try {
+                msg = new GZIPInputStream(msg);
+            } catch (IOException ioEx) {
+                if (ioEx.getCause() instanceof OpenStegoException) {
+                    throw (OpenStegoException) ioEx.getCause();
+                }
+                // Decrypting with an invalid password gives data which is not in GZIP format
+                throw new OpenStegoException(ioEx, OpenStego.NAMESPACE,
+                    message.isUseEncryption() ? OpenStegoException.INVALID_PASSWORD : OpenStegoException.CORRUPT_DATA);
+            }
+        }
+
+        // Add file name and message stream to output list
+        output.add(message.getFileName());
+        output.add(msg);
+        return output;
+    }
+
+    /**
+     * Method to extract the message data from stego data as a stream (alternate API)
+     *
+     * @param stegoFile Stego file from which message needs to be extracted
+     * @return Extracted message (List's first element is filename and second element is the message as InputStream)
+     * @throws OpenStegoException
+     */
+    public List<?> extractDataStream(File stegoFile) throws OpenStegoException {
+        if (!this.plugin.getPurposes().contains(OpenStegoPlugin.Purpose.DATA_HIDING)) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_DH);
+        }
+
+        return extractDataStream(CommonUtil.getFileBytes(stegoFile), stegoFile.getName());
+    }
+
     /**
      * Method to extract the watermark data from stego data
      *
@@ -303,7 +479,7 @@ public class OpenStego {
             throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_WM);
         }
 
-        return this.plugin.extractData(stegoData, stegoFileName, origSigData);
+        return this.plugin.extractData(stegoData, stegoFileName, origSigData, this.config);
     }
 
     /**
@@ -336,7 +512,7 @@ public class OpenStego {
             throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_WM);
         }
 
-        return this.plugin.checkMark(stegoData, stegoFileName, origSigData);
+        return this.plugin.checkMark(stegoData, stegoFileName, origSigData, this.config);
     }
 
     /**
@@ -359,6 +535,66 @@ public class OpenStego {
         return correl;
     }
 
+    /**
+     * Method to parse the signature data once, so that many images can be checked against it (see
+     * {@link #checkMark(File, WatermarkSignature)})
+     *
+     * @param origSigFile Original signature file
+     * @return Parsed signature
+     * @throws OpenStegoException
+     */
+    public WatermarkSignature parseSignature(File origSigFile) throws OpenStegoException {
+        if (!this.plugin.getPurposes().contains(OpenStegoPlugin.Purpose.WATERMARKING)) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_WM);
+        }
+
+        return this.plugin.parseSignature(CommonUtil.getFileBytes(origSigFile));
+    }
+
+    /**
+     * Method to check the correlation for the given image and the parsed original signature. This can be called from
+     * many threads at once with the same signature
+     *
+     * @param stegoFile Stego file from which watermark needs to be extracted
+     * @param signature Original signature, as returned by {@link #parseSignature(File)}
+     * @return Correlation
+     * @throws OpenStegoException
+     */
+    public double checkMark(File stegoFile, WatermarkSignature signature) throws OpenStegoException {
+        if (!this.plugin.getPurposes().contains(OpenStegoPlugin.Purpose.WATERMARKING)) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_DOES_NOT_SUPPORT_WM);
+        }
+
+        double correl = this.plugin.checkMark(CommonUtil.getFileBytes(stegoFile), stegoFile.getName(), signature, this.config);
+        if (Double.isNaN(correl)) {
+            correl = 0.0;
+        }
+        return correl;
+    }
+
+    /**
+     * Method to check the correlation for a list of images and the original signature. The signature is parsed only
+     * once, and the images are checked by a pool of worker threads (see {@link OpenStegoConfig#getBatchThreads()}).
+     * The correlation of each image is reported to the listener as soon as it is known, so the images are reported in
+     * the order in which they finish
+     *
+     * @param stegoFiles List of stego files from which watermark needs to be extracted
+     * @param origSigFile Original signature file
+     * @param listener Listener to report the correlation of each image to
+     * @return Number of images which could not be checked
+     * @throws OpenStegoException
+     */
+    public int checkMark(List<File> stegoFiles, File origSigFile, BatchExecutor.Listener<Double> listener) throws OpenStegoException {
+        final WatermarkSignature signature = parseSignature(origSigFile);
+
+        return new BatchExecutor(this.config.getBatchThreads()).execute(stegoFiles, new BatchExecutor.Task<Double>() {
+            @Override
+            public Double process(File stegoFile) throws OpenStegoException {
+                return checkMark(stegoFile, signature);
+            }
+        }, listener);
+    }
+
     /**
      * Method to generate the signature data using the given plugin
      *
@@ -374,7 +610,7 @@ public class OpenStego {
             throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PWD_MANDATORY_FOR_GENSIG);
         }
 
-        return this.plugin.generateSignature();
+        return this.plugin.generateSignature(this.config);
     }
 
     /**
@@ -422,6 +658,8 @@ public class OpenStego {
      * @param args Command line arguments
      */
     public static void main(String[] args) {
+        int status = 0;
+
         try {
             // Load the stego plugins
             PluginManager.loadPlugins();
@@ -436,7 +674,7 @@ public class OpenStego {
                 }
                 new OpenStegoUI().setVisible(true);
             } else {
-                OpenStegoCmd.execute(args);
+                status = OpenStegoCmd.execute(args);
             }
         } catch (OpenStegoException osEx) {
             if (osEx.getErrorCode() == OpenStegoException.UNHANDLED_EXCEPTION) {
@@ -444,8 +682,16 @@ public class OpenStego {
             } else {
                 System.err.println(osEx.getMessage());
             }
+            status = 1;
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
+            status = 1;
+        }
+
+        // Let scripts know that the command failed. Successful runs are not forced to exit, as the GUI and the server
+        // keep running in their own threads
+        if (status != 0) {
+            System.exit(status);
         }
     }
 }
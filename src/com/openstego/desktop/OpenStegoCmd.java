@@ -7,7 +7,9 @@
 package com.openstego.desktop;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.openstego.desktop.util.CommonUtil;
 import com.openstego.desktop.util.LabelUtil;
@@ -30,8 +32,9 @@ public class OpenStegoCmd {
      * Main method for processing command line
      *
      * @param args Command line arguments
+     * @return Exit status for the process: 0 if the command succeeded, 1 if it failed or the usage was invalid
      */
-    public static void execute(String[] args) {
+    public static int execute(String[] args) {
         String msgFileName = null;
         String sigFileName = null;
         String coverFileName = null;
@@ -39,6 +42,10 @@ public class OpenStegoCmd {
         String extractDir = null;
         String extractFileName = null;
         String signatureFileName = null;
+        String watchDir = null;
+        String outputDir = null;
+        String httpPort = null;
+        int port = 0;
         String command = null;
         String pluginName = null;
         List<?> msgData = null;
@@ -50,13 +57,14 @@ public class OpenStegoCmd {
         CmdLineOption option = null;
         List<CmdLineOption> optionList = null;
         OpenStegoPlugin plugin = null;
+        OpenStegoServer server = null;
 
         try {
             // First parse of the command-line (without plugin specific options)
             parser = new CmdLineParser(getStdCmdLineOptions(null), args);
             if (!parser.isValid()) {
                 displayUsage();
-                return;
+                return 1;
             }
 
             pluginName = parser.getParsedOptions().getOptionValue("-a");
@@ -77,12 +85,14 @@ public class OpenStegoCmd {
                     optionList = parser.getParsedOptionsAsList();
                     if (optionList.size() > 0) {
                         command = (optionList.get(0)).getName();
-                        if (command.equals("embed") || command.equals("extract")) {
+                        if (command.equals("embed") || command.equals("extract")
+                                || (command.equals("watch") && parser.getParsedOptions().getOption("-gf") == null)) {
                             plugins = PluginManager.getDataHidingPlugins();
                             if (plugins.size() == 1) {
                                 plugin = plugins.get(0);
                             }
-                        } else if (command.equals("gensig") || command.equals("embedmark") || command.equals("checkmark")) {
+                        } else if (command.equals("gensig") || command.equals("embedmark") || command.equals("checkmark")
+                                || (command.equals("watch") && parser.getParsedOptions().getOption("-gf") != null)) {
                             plugins = PluginManager.getWatermarkingPlugins();
                             if (plugins.size() == 1) {
                                 plugin = plugins.get(0);
@@ -104,7 +114,7 @@ public class OpenStegoCmd {
                 option = optionList.get(i);
                 if (((i == 0) && (option.getType() != CmdLineOption.TYPE_COMMAND)) || ((i > 0) && (option.getType() == CmdLineOption.TYPE_COMMAND))) {
                     displayUsage();
-                    return;
+                    return 1;
                 }
 
                 if (i == 0) {
@@ -115,11 +125,11 @@ public class OpenStegoCmd {
             // Non-standard options are not allowed
             if (parser.getNonStdOptions().size() > 0) {
                 displayUsage();
-                return;
+                return 1;
             }
 
             // Check that algorithm is selected
-            if (!command.equals("help") && !command.equals("algorithms")) {
+            if (!command.equals("help") && !command.equals("algorithms") && !command.equals("serve")) {
                 if (plugin == null) {
                     throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.NO_PLUGIN_SPECIFIED);
                 } else {
@@ -143,7 +153,7 @@ public class OpenStegoCmd {
                 if (coverFileList.size() <= 1) {
                     if (coverFileList.size() == 0 && coverFileName != null && !coverFileName.equals("-")) {
                         System.err.println(labelUtil.getString("cmd.msg.coverFileNotFound", coverFileName));
-                        return;
+                        return 1;
                     }
 
                     CommonUtil.writeFile(
@@ -152,22 +162,58 @@ public class OpenStegoCmd {
                             (stegoFileName == null || stegoFileName.equals("-")) ? null : stegoFileName),
                         (stegoFileName == null || stegoFileName.equals("-")) ? null : stegoFileName);
                 }
-                // Else loop through all coverfiles and overwrite the same coverfiles with generated stegofiles
+                // Else embed into all coverfiles in parallel and overwrite the same coverfiles with generated stegofiles
                 else {
                     // If stego file name is provided, then warn user that it will be ignored
                     if (stegoFileName != null && !stegoFileName.equals("-")) {
                         System.err.println(labelUtil.getString("cmd.warn.stegoFileIgnored"));
                     }
 
-                    // Loop through all cover files
-                    for (int i = 0; i < coverFileList.size(); i++) {
-                        coverFileName = (coverFileList.get(i)).getName();
-                        CommonUtil.writeFile(stego.embedData((msgFileName == null || msgFileName.equals("-")) ? null : new File(msgFileName),
-                            coverFileList.get(i), coverFileName), coverFileName);
+                    embedBatch(stego, (msgFileName == null || msgFileName.equals("-")) ? null : new File(msgFileName), coverFileList);
+                }
+            } else if (command.equals("watch")) {
+                msgFileName = options.getOptionValue("-mf");
+                sigFileName = options.getOptionValue("-gf");
+                watchDir = options.getOptionValue("-wd");
+                outputDir = options.getOptionValue("-od");
 
-                        System.err.println(labelUtil.getString("cmd.msg.coverProcessed", coverFileName));
-                    }
+                if (watchDir == null || outputDir == null) {
+                    displayUsage();
+                    return 1;
+                }
+                if (!new File(watchDir).isDirectory()) {
+                    System.err.println(labelUtil.getString("cmd.msg.watchDirNotFound", watchDir));
+                    return 1;
+                }
+                new File(outputDir).mkdirs();
+                if (new File(watchDir).getCanonicalFile().equals(new File(outputDir).getCanonicalFile())) {
+                    System.err.println(labelUtil.getString("cmd.msg.outputDirSameAsWatchDir", outputDir));
+                    return 1;
                 }
+
+                // Check if we need to prompt for password
+                if (plugin.getPurposes().contains(OpenStegoPlugin.Purpose.DATA_HIDING) && stego.getConfig().isUseEncryption()
+                        && stego.getConfig().getPassword() == null) {
+                    stego.getConfig().setPassword(PasswordInput.readPassword(labelUtil.getString("cmd.msg.enterPassword") + " "));
+                }
+
+                System.err.println(labelUtil.getString("cmd.msg.watching", watchDir, outputDir));
+                new DirectoryWatcher(new File(watchDir), new File(outputDir), plugin.getReadableFileExtensions(), stego.getConfig().getBatchThreads())
+                        .watch(plugin.getPurposes().contains(OpenStegoPlugin.Purpose.WATERMARKING)
+                                ? createEmbedMarkTask(stego, (sigFileName == null || sigFileName.equals("-")) ? null : new File(sigFileName), outputDir)
+                                : createEmbedTask(stego, (msgFileName == null || msgFileName.equals("-")) ? null : new File(msgFileName), outputDir),
+                            new BatchExecutor.PrintListener<String>(System.err));
+            } else if (command.equals("serve")) {
+                httpPort = options.getOptionValue("-hp");
+                try {
+                    port = (httpPort == null) ? OpenStegoServer.DEFAULT_PORT : Integer.parseInt(httpPort.trim());
+                } catch (NumberFormatException nfEx) {
+                    displayUsage();
+                    return 1;
+                }
+                server = new OpenStegoServer(port, new OpenStegoConfig(options).getBatchThreads());
+                server.start();
+                System.err.println(labelUtil.getString("cmd.msg.serving", server.getAddress().getHostString(), server.getAddress().getPort()));
             } else if (command.equals("embedmark")) {
                 sigFileName = options.getOptionValue("-gf");
                 coverFileName = options.getOptionValue("-cf");
@@ -178,7 +224,7 @@ public class OpenStegoCmd {
                 if (coverFileList.size() <= 1) {
                     if (coverFileList.size() == 0 && coverFileName != null && !coverFileName.equals("-")) {
                         System.err.println(labelUtil.getString("cmd.msg.coverFileNotFound", coverFileName));
-                        return;
+                        return 1;
                     }
 
                     CommonUtil.writeFile(
@@ -194,6 +240,8 @@ public class OpenStegoCmd {
                         System.err.println(labelUtil.getString("cmd.warn.stegoFileIgnored"));
                     }
 
+                    checkOutputNames(coverFileList);
+
                     // Loop through all cover files
                     for (int i = 0; i < coverFileList.size(); i++) {
                         coverFileName = (coverFileList.get(i)).getName();
@@ -209,7 +257,7 @@ public class OpenStegoCmd {
 
                 if (stegoFileName == null) {
                     displayUsage();
-                    return;
+                    return 1;
                 }
 
                 try {
@@ -224,14 +272,14 @@ public class OpenStegoCmd {
                             } catch (OpenStegoException inEx) {
                                 if (inEx.getErrorCode() == OpenStegoException.INVALID_PASSWORD) {
                                     System.err.println(inEx.getMessage());
-                                    return;
+                                    return 1;
                                 } else {
                                     throw inEx;
                                 }
                             }
                         } else {
                             System.err.println(osEx.getMessage());
-                            return;
+                            return 1;
                         }
                     } else {
                         throw osEx;
@@ -256,7 +304,7 @@ public class OpenStegoCmd {
 
                 if (stegoFileName == null || sigFileName == null) {
                     displayUsage();
-                    return;
+                    return 1;
                 }
 
                 stegoFileList = CommonUtil.parseFileList(stegoFileName, ";");
@@ -264,11 +312,17 @@ public class OpenStegoCmd {
                 if (stegoFileList.size() == 1) {
                     System.out.println(stego.checkMark(stegoFileList.get(0), new File(sigFileName)));
                 }
-                // Else loop through all stegofiles and calculate correlation value for each
+                // Else calculate correlation value for all stegofiles in parallel, and print each as soon as it is known
                 else {
-                    for (int i = 0; i < stegoFileList.size(); i++) {
-                        stegoFileName = (stegoFileList.get(i)).getName();
-                        System.out.println(stegoFileName + "\t" + stego.checkMark(stegoFileList.get(i), new File(sigFileName)));
+                    int failed = stego.checkMark(stegoFileList, new File(sigFileName), new BatchExecutor.PrintListener<Double>(System.out) {
+                        @Override
+                        public void fileProcessed(File file, int index, Double result) {
+                            System.out.println(file.getName() + "\t" + result);
+                        }
+                    });
+                    if (failed > 0) {
+                        throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.BATCH_FILES_FAILED, String.valueOf(failed),
+                            String.valueOf(stegoFileList.size()));
                     }
                 }
             } else if (command.equals("gensig")) {
@@ -310,7 +364,7 @@ public class OpenStegoCmd {
             } else if (command.equals("help")) {
                 if (plugin == null) {
                     displayUsage();
-                    return;
+                    return 0;
                 } else
                 // Show plugin-specific help
                 {
@@ -318,7 +372,7 @@ public class OpenStegoCmd {
                 }
             } else {
                 displayUsage();
-                return;
+                return 1;
             }
         } catch (OpenStegoException osEx) {
             if (osEx.getErrorCode() == OpenStegoException.UNHANDLED_EXCEPTION) {
@@ -326,11 +380,112 @@ public class OpenStegoCmd {
             } else {
                 System.err.println(osEx.getMessage());
             }
+            return 1;
         } catch (Exception ex) {
             ex.printStackTrace();
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Method to embed the message into a list of cover files, overwriting each cover file with the generated stego
+     * file. The message is read, compressed and encrypted only once, and the cover files are then processed by a pool
+     * of worker threads, with the status of each file reported as soon as it is written
+     *
+     * @param stego OpenStego object to embed the message with
+     * @param msgFile File containing the message data (<code>null</code> to read the data from stdin)
+     * @param coverFileList List of cover files
+     * @throws OpenStegoException If two cover files have the same name, or if any of the cover files could not be
+     *         processed (after all the files are done)
+     */
+    private static void embedBatch(OpenStego stego, File msgFile, List<File> coverFileList) throws OpenStegoException {
+        // Reject the batch before anything is written, as the parallel tasks would race on the same output file
+        checkOutputNames(coverFileList);
+
+        int failed = new BatchExecutor(stego.getConfig().getBatchThreads()).execute(coverFileList, createEmbedTask(stego, msgFile, null),
+            System.err);
+
+        if (failed > 0) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.BATCH_FILES_FAILED, String.valueOf(failed),
+                String.valueOf(coverFileList.size()));
         }
     }
 
+    /**
+     * Method to check that no two files of a batch have the same name, as the output for each file is written to its
+     * name in the output directory
+     *
+     * @param fileList List of files
+     * @throws OpenStegoException If two files have the same name
+     */
+    private static void checkOutputNames(List<File> fileList) throws OpenStegoException {
+        Map<String, File> names = new HashMap<String, File>();
+        File other = null;
+
+        for (int i = 0; i < fileList.size(); i++) {
+            other = names.put(fileList.get(i).getName(), fileList.get(i));
+            if (other != null) {
+                throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.DUPLICATE_OUTPUT_FILE, other.getPath(),
+                    fileList.get(i).getPath(), fileList.get(i).getName());
+            }
+        }
+    }
+
+    /**
+     * Method to create the task which embeds the message into a cover file, for processing many cover files. The
+     * message is read, compressed and encrypted once when the task is created
+     *
+     * @param stego OpenStego object to embed the message with
+     * @param msgFile File containing the message data (<code>null</code> to read the data from stdin)
+     * @param outputDir Directory where the stego files are written (<code>null</code> for the current directory)
+     * @return Task which embeds the message into the given cover file and returns the status message
+     * @throws OpenStegoException
+     */
+    private static BatchExecutor.Task<String> createEmbedTask(final OpenStego stego, File msgFile, final String outputDir)
+            throws OpenStegoException {
+        final byte[] msg = stego.prepareMessage(msgFile == null ? CommonUtil.getStreamBytes(System.in) : CommonUtil.getFileBytes(msgFile));
+        final String msgFileName = (msgFile == null) ? null : msgFile.getName();
+
+        return new BatchExecutor.Task<String>() {
+            @Override
+            public String process(File coverFile) throws OpenStegoException {
+                String stegoFileName = (outputDir == null) ? coverFile.getName() : outputDir + File.separator + coverFile.getName();
+
+                CommonUtil.writeFile(stego.embedPreparedData(msg, msgFileName, CommonUtil.getFileBytes(coverFile), coverFile.getName(), stegoFileName),
+                    stegoFileName);
+                return labelUtil.getString("cmd.msg.coverProcessed", stegoFileName);
+            }
+        };
+    }
+
+    /**
+     * Method to create the task which embeds the watermark signature into a cover file, for processing many cover
+     * files. The signature is read once when the task is created
+     *
+     * @param stego OpenStego object to embed the signature with
+     * @param sigFile File containing the signature data (<code>null</code> to read the data from stdin)
+     * @param outputDir Directory where the stego files are written
+     * @return Task which embeds the signature into the given cover file and returns the status message
+     * @throws OpenStegoException
+     */
+    private static BatchExecutor.Task<String> createEmbedMarkTask(final OpenStego stego, File sigFile, final String outputDir)
+            throws OpenStegoException {
+        final byte[] sig = (sigFile == null) ? CommonUtil.getStreamBytes(System.in) : CommonUtil.getFileBytes(sigFile);
+        final String sigFileName = (sigFile == null) ? null : sigFile.getName();
+
+        return new BatchExecutor.Task<String>() {
+            @Override
+            public String process(File coverFile) throws OpenStegoException {
+                String stegoFileName = outputDir + File.separator + coverFile.getName();
+
+                CommonUtil.writeFile(stego.embedMark(sig, sigFileName, CommonUtil.getFileBytes(coverFile), coverFile.getName(), stegoFileName),
+                    stegoFileName);
+                return labelUtil.getString("cmd.msg.coverProcessed", stegoFileName);
+            }
+        };
+    }
+
     /**
      * Method to display usage for OpenStego
      *
@@ -364,6 +519,8 @@ public class OpenStegoCmd {
         options.add("readformats", "--readformats", CmdLineOption.TYPE_COMMAND, false);
         options.add("writeformats", "--writeformats", CmdLineOption.TYPE_COMMAND, false);
         options.add("algorithms", "--algorithms", CmdLineOption.TYPE_COMMAND, false);
+        options.add("watch", "--watch", CmdLineOption.TYPE_COMMAND, false);
+        options.add("serve", "--serve", CmdLineOption.TYPE_COMMAND, false);
         options.add("help", "--help", CmdLineOption.TYPE_COMMAND, false);
 
         // Plugin options
@@ -376,6 +533,9 @@ public class OpenStegoCmd {
         options.add("-xf", "--extractfile", CmdLineOption.TYPE_OPTION, true);
         options.add("-xd", "--extractdir", CmdLineOption.TYPE_OPTION, true);
         options.add("-gf", "--sigfile", CmdLineOption.TYPE_OPTION, true);
+        options.add("-wd", "--watchdir", CmdLineOption.TYPE_OPTION, true);
+        options.add("-od", "--outputdir", CmdLineOption.TYPE_OPTION, true);
+        options.add("-hp", "--httpport", CmdLineOption.TYPE_OPTION, true);
 
         // Command options
         options.add("-c", "--compress", CmdLineOption.TYPE_OPTION, false);
@@ -384,6 +544,11 @@ public class OpenStegoCmd {
         options.add("-E", "--noencrypt", CmdLineOption.TYPE_OPTION, false);
         options.add("-p", "--password", CmdLineOption.TYPE_OPTION, true);
         options.add("-A", "--cryptalgo", CmdLineOption.TYPE_OPTION, true);
+        options.add("-L", "--legacycolor", CmdLineOption.TYPE_OPTION, false);
+        options.add("-dt", "--dwtthreads", CmdLineOption.TYPE_OPTION, true);
+        options.add("-sp", "--singleprecision", CmdLineOption.TYPE_OPTION, false);
+        options.add("-ds", "--dwtstreaming", CmdLineOption.TYPE_OPTION, false);
+        options.add("-bt", "--batchthreads", CmdLineOption.TYPE_OPTION, true);
 
         // Plugin-specific options
         if (plugin != null) {
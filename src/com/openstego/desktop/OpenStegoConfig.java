@@ -44,6 +44,45 @@ public class OpenStegoConfig {
      */
     public static final String ENCRYPTION_ALGORITHM = "encryptionAlgorithm";
 
+    /**
+     * Key string for configuration item - legacyColorConversion
+     * <p>
+     * Flag to indicate whether the floating point RGB/YUV conversion of earlier versions should be used. This may be
+     * needed to read back data or watermarks created with earlier versions
+     */
+    public static final String LEGACY_COLOR_CONVERSION = "legacyColorConversion";
+
+    /**
+     * Key string for configuration item - dwtThreads
+     * <p>
+     * Number of threads to be used for wavelet transforms. Zero means one thread per available processor
+     */
+    public static final String DWT_THREADS = "dwtThreads";
+
+    /**
+     * Key string for configuration item - dwtSinglePrecision
+     * <p>
+     * Flag to indicate whether wavelet transforms should be done in single precision. This halves the memory used by
+     * the transforms of large images
+     */
+    public static final String DWT_SINGLE_PRECISION = "dwtSinglePrecision";
+
+    /**
+     * Key string for configuration item - dwtStreaming
+     * <p>
+     * Flag to indicate whether wavelet transforms should pass the image through all the decomposition levels line by
+     * line. This reduces the memory used by the transforms of large images, but the transforms are then done serially,
+     * irrespective of dwtThreads
+     */
+    public static final String DWT_STREAMING = "dwtStreaming";
+
+    /**
+     * Key string for configuration item - batchThreads
+     * <p>
+     * Number of threads to be used when processing a list of files. Zero means one thread per available processor
+     */
+    public static final String BATCH_THREADS = "batchThreads";
+
     /**
      * Flag to indicate whether compression should be used or not
      */
@@ -64,6 +103,31 @@ public class OpenStegoConfig {
      */
     private String encryptionAlgorithm = OpenStegoCrypto.ALGO_AES128;
 
+    /**
+     * Flag to indicate whether the floating point RGB/YUV conversion of earlier versions should be used
+     */
+    private boolean legacyColorConversion = false;
+
+    /**
+     * Number of threads to be used for wavelet transforms (zero for one thread per available processor)
+     */
+    private int dwtThreads = 0;
+
+    /**
+     * Flag to indicate whether wavelet transforms should be done in single precision
+     */
+    private boolean dwtSinglePrecision = false;
+
+    /**
+     * Flag to indicate whether wavelet transforms should be done line by line
+     */
+    private boolean dwtStreaming = false;
+
+    /**
+     * Number of threads to be used when processing a list of files (zero for one thread per available processor)
+     */
+    private int batchThreads = 0;
+
     /**
      * Default Constructor (with default values for configuration items)
      */
@@ -120,6 +184,31 @@ public class OpenStegoConfig {
             map.put(ENCRYPTION_ALGORITHM, options.getOptionValue("-A"));
         }
 
+        if (options.getOption("-L") != null) // legacycolor
+        {
+            map.put(LEGACY_COLOR_CONVERSION, "true");
+        }
+
+        if (options.getOption("-dt") != null) // dwtthreads
+        {
+            map.put(DWT_THREADS, options.getOptionValue("-dt"));
+        }
+
+        if (options.getOption("-sp") != null) // singleprecision
+        {
+            map.put(DWT_SINGLE_PRECISION, "true");
+        }
+
+        if (options.getOption("-ds") != null) // dwtstreaming
+        {
+            map.put(DWT_STREAMING, "true");
+        }
+
+        if (options.getOption("-bt") != null) // batchthreads
+        {
+            map.put(BATCH_THREADS, options.getOptionValue("-bt"));
+        }
+
         addProperties(map);
     }
 
@@ -159,6 +248,53 @@ public class OpenStegoConfig {
                 this.password = propMap.get(key).toString();
             } else if (key.equals(ENCRYPTION_ALGORITHM)) {
                 this.encryptionAlgorithm = propMap.get(key).toString();
+            } else if (key.equals(LEGACY_COLOR_CONVERSION)) {
+                value = propMap.get(key).toString().trim();
+                if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("y") || value.equals("1")) {
+                    this.legacyColorConversion = true;
+                } else if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("n") || value.equals("0")) {
+                    this.legacyColorConversion = false;
+                } else {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_LEGACY_COLOR_VALUE, value);
+                }
+            } else if (key.equals(DWT_THREADS)) {
+                value = propMap.get(key).toString().trim();
+                try {
+                    this.dwtThreads = Integer.parseInt(value);
+                } catch (NumberFormatException nfEx) {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_DWT_THREADS_VALUE, value);
+                }
+                if (this.dwtThreads < 0) {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_DWT_THREADS_VALUE, value);
+                }
+            } else if (key.equals(DWT_SINGLE_PRECISION)) {
+                value = propMap.get(key).toString().trim();
+                if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("y") || value.equals("1")) {
+                    this.dwtSinglePrecision = true;
+                } else if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("n") || value.equals("0")) {
+                    this.dwtSinglePrecision = false;
+                } else {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_DWT_SINGLE_PRECISION_VALUE, value);
+                }
+            } else if (key.equals(DWT_STREAMING)) {
+                value = propMap.get(key).toString().trim();
+                if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("y") || value.equals("1")) {
+                    this.dwtStreaming = true;
+                } else if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("n") || value.equals("0")) {
+                    this.dwtStreaming = false;
+                } else {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_DWT_STREAMING_VALUE, value);
+                }
+            } else if (key.equals(BATCH_THREADS)) {
+                value = propMap.get(key).toString().trim();
+                try {
+                    this.batchThreads = Integer.parseInt(value);
+                } catch (NumberFormatException nfEx) {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_BATCH_THREADS_VALUE, value);
+                }
+                if (this.batchThreads < 0) {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_BATCH_THREADS_VALUE, value);
+                }
             }
         }
     }
@@ -234,4 +370,94 @@ public class OpenStegoConfig {
     public void setEncryptionAlgorithm(String encryptionAlgorithm) {
         this.encryptionAlgorithm = encryptionAlgorithm;
     }
+
+    /**
+     * Get method for configuration item - legacyColorConversion
+     *
+     * @return legacyColorConversion
+     */
+    public boolean isLegacyColorConversion() {
+        return this.legacyColorConversion;
+    }
+
+    /**
+     * Set method for configuration item - legacyColorConversion
+     *
+     * @param legacyColorConversion
+     */
+    public void setLegacyColorConversion(boolean legacyColorConversion) {
+        this.legacyColorConversion = legacyColorConversion;
+    }
+
+    /**
+     * Get method for configuration item - dwtThreads
+     *
+     * @return dwtThreads
+     */
+    public int getDwtThreads() {
+        return this.dwtThreads;
+    }
+
+    /**
+     * Set method for configuration item - dwtThreads
+     *
+     * @param dwtThreads
+     */
+    public void setDwtThreads(int dwtThreads) {
+        this.dwtThreads = dwtThreads;
+    }
+
+    /**
+     * Get method for configuration item - dwtSinglePrecision
+     *
+     * @return dwtSinglePrecision
+     */
+    public boolean isDwtSinglePrecision() {
+        return this.dwtSinglePrecision;
+    }
+
+    /**
+     * Set method for configuration item - dwtSinglePrecision
+     *
+     * @param dwtSinglePrecision
+     */
+    public void setDwtSinglePrecision(boolean dwtSinglePrecision) {
+        this.dwtSinglePrecision = dwtSinglePrecision;
+    }
+
+    /**
+     * Get method for configuration item - dwtStreaming
+     *
+     * @return dwtStreaming
+     */
+    public boolean isDwtStreaming() {
+        return this.dwtStreaming;
+    }
+
+    /**
+     * Set method for configuration item - dwtStreaming
+     *
+     * @param dwtStreaming
+     */
+    public void setDwtStreaming(boolean dwtStreaming) {
+        this.dwtStreaming = dwtStreaming;
+    }
+
+    /**
+     * Get method for configuration item - batchThreads
+     *
+     * @return batchThreads
+     */
+    public int getBatchThreads() {
+        return this.batchThreads;
+    }
+
+    /**
+     * Set method for configuration item - batchThreads
+     *
+     * @param batchThreads
+     */
+    public void setBatchThreads(int batchThreads) {
+        this.batchThreads = batchThreads;
+    }
 }
@@ -6,12 +6,18 @@
 
 package com.openstego.desktop;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.KeySpec;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
@@ -91,9 +97,7 @@ public class OpenStegoCrypto {
      */
     public byte[] encrypt(byte[] input) throws OpenStegoException {
         try {
-            Cipher encryptCipher = Cipher.getInstance(this.secretKey.getAlgorithm());
-            AlgorithmParameterSpec algoParamSpec = new PBEParameterSpec(this.SALT, this.ITER_COUNT);
-            encryptCipher.init(Cipher.ENCRYPT_MODE, this.secretKey, algoParamSpec);
+            Cipher encryptCipher = getEncryptCipher();
 
             byte[] algoParams = encryptCipher.getParameters().getEncoded();
             byte[] msg = encryptCipher.doFinal(input);
@@ -113,6 +117,48 @@ public class OpenStegoCrypto {
         }
     }
 
+    /**
+     * Method to get a stream which encrypts the data written to it into the given stream. The output is the same as
+     * that of {@link #encrypt(byte[])} for the same data, and is complete only once the returned stream is closed
+     * (which closes the given stream too)
+     *
+     * @param out Stream to write the encrypted data to
+     * @return Stream to write the data to be encrypted
+     * @throws OpenStegoException
+     */
+    public OutputStream encrypt(OutputStream out) throws OpenStegoException {
+        try {
+            Cipher encryptCipher = getEncryptCipher();
+            byte[] algoParams = encryptCipher.getParameters().getEncoded();
+
+            // First byte = length of algo params, next is algorithm params
+            out.write(Byte.parseByte(Integer.toString(algoParams.length)));
+            out.write(algoParams);
+
+            return new CipherOutputStream(out, encryptCipher);
+        } catch (Exception ex) {
+            throw new OpenStegoException(ex);
+        }
+    }
+
+    /**
+     * Method to get the largest length of the encrypted data for data of the given length
+     *
+     * @param length Length of the data to be encrypted
+     * @return Maximum length of the encrypted data
+     * @throws OpenStegoException
+     */
+    public long getMaxEncryptedLength(long length) throws OpenStegoException {
+        try {
+            Cipher encryptCipher = getEncryptCipher();
+            int blockSize = encryptCipher.getBlockSize();
+
+            return 1 + encryptCipher.getParameters().getEncoded().length + length + (blockSize > 0 ? blockSize : 16);
+        } catch (Exception ex) {
+            throw new OpenStegoException(ex);
+        }
+    }
+
     /**
      * Method to decrypt the data
      *
@@ -142,4 +188,199 @@ public class OpenStegoCrypto {
             throw new OpenStegoException(ex);
         }
     }
+
+    /**
+     * Method to get a stream which decrypts the data read from the given stream. The data is expected in the format
+     * produced by {@link #encrypt(byte[])}. As the data is decrypted only as it is read, an invalid password shows up
+     * as invalid data, and at the latest at the end of the stream as an <code>IOException</code> whose cause is an
+     * {@link OpenStegoException} with error code {@link OpenStegoException#INVALID_PASSWORD}
+     *
+     * @param in Stream to read the encrypted data from
+     * @return Stream to read the decrypted data from
+     * @throws OpenStegoException
+     */
+    public InputStream decrypt(InputStream in) throws OpenStegoException {
+        try {
+            // First byte is algo params length, next is algorithm params
+            int paramLen = in.read();
+            if (paramLen < 0) {
+                throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.CORRUPT_DATA);
+            }
+            byte[] algoParamData = new byte[paramLen];
+            for (int i = 0, n = 0; i < paramLen; i += n) {
+                n = in.read(algoParamData, i, paramLen - i);
+                if (n < 0) {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.CORRUPT_DATA);
+                }
+            }
+
+            AlgorithmParameters algoParams = AlgorithmParameters.getInstance(this.secretKey.getAlgorithm());
+            algoParams.init(algoParamData);
+            Cipher decryptCipher = Cipher.getInstance(this.secretKey.getAlgorithm());
+            decryptCipher.init(Cipher.DECRYPT_MODE, this.secretKey, algoParams);
+            return new DecryptInputStream(in, decryptCipher);
+        } catch (OpenStegoException osEx) {
+            throw osEx;
+        } catch (Exception ex) {
+            throw new OpenStegoException(ex);
+        }
+    }
+
+    /**
+     * Method to get a cipher initialized for encryption
+     *
+     * @return Cipher
+     * @throws GeneralSecurityException
+     */
+    private Cipher getEncryptCipher() throws GeneralSecurityException {
+        Cipher encryptCipher = Cipher.getInstance(this.secretKey.getAlgorithm());
+        AlgorithmParameterSpec algoParamSpec = new PBEParameterSpec(this.SALT, this.ITER_COUNT);
+        encryptCipher.init(Cipher.ENCRYPT_MODE, this.secretKey, algoParamSpec);
+        return encryptCipher;
+    }
+
+    /**
+     * Stream which decrypts the data read from the underlying stream. Unlike <code>CipherInputStream</code>, this
+     * reports an invalid padding at the end of the data (i.e. an invalid password) instead of ignoring it
+     */
+    private static class DecryptInputStream extends FilterInputStream {
+        /**
+         * Cipher initialized for decryption
+         */
+        private Cipher cipher = null;
+
+        /**
+         * Buffer for the encrypted data
+         */
+        private byte[] inBuf = new byte[4096];
+
+        /**
+         * Buffer for the decrypted data
+         */
+        private byte[] outBuf = null;
+
+        /**
+         * Position of the next byte to be returned from the decrypted data
+         */
+        private int outPos = 0;
+
+        /**
+         * Flag to indicate whether the end of the encrypted data has been reached
+         */
+        private boolean done = false;
+
+        /**
+         * Default constructor
+         *
+         * @param in Stream to read the encrypted data from
+         * @param cipher Cipher initialized for decryption
+         */
+        public DecryptInputStream(InputStream in, Cipher cipher) {
+            super(in);
+            this.cipher = cipher;
+        }
+
+        /**
+         * Implementation of <code>InputStream.read()</code> method
+         *
+         * @return Byte read from the stream, or -1 if the end of the stream is reached
+         * @throws IOException
+         */
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+        }
+
+        /**
+         * Implementation of <code>InputStream.read(byte[], int, int)</code> method
+         *
+         * @param data Buffer into which the data is read
+         * @param off Start offset in the buffer
+         * @param len Maximum number of bytes to read
+         * @return Number of bytes read, or -1 if the end of the stream is reached
+         * @throws IOException
+         */
+        @Override
+        public int read(byte[] data, int off, int len) throws IOException {
+            int bytesRead = 0;
+
+            if (len == 0) {
+                return 0;
+            }
+            while (this.outBuf == null || this.outPos >= this.outBuf.length) {
+                if (this.done) {
+                    return -1;
+                }
+                fill();
+            }
+            bytesRead = Math.min(len, this.outBuf.length - this.outPos);
+            System.arraycopy(this.outBuf, this.outPos, data, off, bytesRead);
+            this.outPos += bytesRead;
+            return bytesRead;
+        }
+
+        /**
+         * Implementation of <code>InputStream.skip(long)</code> method. The skipped data still needs to be decrypted
+         *
+         * @param n Number of bytes to skip
+         * @return Number of bytes skipped
+         * @throws IOException
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buf = new byte[(int) Math.min(n, this.inBuf.length)];
+            long skipped = 0;
+            int bytesRead = 0;
+
+            while (skipped < n && (bytesRead = read(buf, 0, (int) Math.min(n - skipped, buf.length))) >= 0) {
+                skipped += bytesRead;
+            }
+            return skipped;
+        }
+
+        /**
+         * Implementation of <code>InputStream.available()</code> method
+         *
+         * @return Number of decrypted bytes which can be read without blocking
+         */
+        @Override
+        public int available() {
+            return (this.outBuf == null) ? 0 : this.outBuf.length - this.outPos;
+        }
+
+        /**
+         * Marks are not supported by this stream
+         *
+         * @return false
+         */
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Method to decrypt the next block of data from the underlying stream
+         *
+         * @throws IOException
+         */
+        private void fill() throws IOException {
+            int bytesRead = this.in.read(this.inBuf);
+
+            try {
+                if (bytesRead < 0) {
+                    this.done = true;
+                    this.outBuf = this.cipher.doFinal();
+                } else {
+                    this.outBuf = this.cipher.update(this.inBuf, 0, bytesRead);
+                }
+                this.outPos = 0;
+            } catch (BadPaddingException bpEx) {
+                OpenStegoException osEx = new OpenStegoException(bpEx, OpenStego.NAMESPACE, OpenStegoException.INVALID_PASSWORD);
+                throw new IOException(osEx.getMessage(), osEx);
+            } catch (GeneralSecurityException gsEx) {
+                throw new IOException(gsEx);
+            }
+        }
+    }
 }
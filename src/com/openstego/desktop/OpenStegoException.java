@@ -117,6 +117,51 @@ public class OpenStegoException extends Exception {
      */
     public static final int USERPREF_INVALID_BOOL = 19;
 
+    /**
+     * Error Code - Invalid value for legacyColorConversion
+     */
+    public static final int INVALID_LEGACY_COLOR_VALUE = 20;
+
+    /**
+     * Error Code - Invalid value for dwtThreads
+     */
+    public static final int INVALID_DWT_THREADS_VALUE = 21;
+
+    /**
+     * Error Code - Invalid value for dwtSinglePrecision
+     */
+    public static final int INVALID_DWT_SINGLE_PRECISION_VALUE = 22;
+
+    /**
+     * Error Code - Invalid value for batchThreads
+     */
+    public static final int INVALID_BATCH_THREADS_VALUE = 23;
+
+    /**
+     * Error Code - Invalid value for a request parameter
+     */
+    public static final int INVALID_REQUEST_PARAM = 24;
+
+    /**
+     * Error Code - Invalid value for dwtStreaming
+     */
+    public static final int INVALID_DWT_STREAMING_VALUE = 25;
+
+    /**
+     * Error Code - Some files of a batch could not be processed
+     */
+    public static final int BATCH_FILES_FAILED = 26;
+
+    /**
+     * Error Code - Password provided in the query of a request
+     */
+    public static final int PASSWORD_IN_QUERY = 27;
+
+    /**
+     * Error Code - Two files of a batch would be written to the same output file
+     */
+    public static final int DUPLICATE_OUTPUT_FILE = 28;
+
     /**
      * Map to store error code to message key mapping
      */
@@ -139,6 +184,15 @@ public class OpenStegoException extends Exception {
         addErrorCode(OpenStego.NAMESPACE, INVALID_PASSWORD, "err.config.password.invalid");
         addErrorCode(OpenStego.NAMESPACE, INVALID_USE_COMPR_VALUE, "err.config.useCompression.invalid");
         addErrorCode(OpenStego.NAMESPACE, INVALID_USE_ENCRYPT_VALUE, "err.config.useEncryption.invalid");
+        addErrorCode(OpenStego.NAMESPACE, INVALID_LEGACY_COLOR_VALUE, "err.config.legacyColorConversion.invalid");
+        addErrorCode(OpenStego.NAMESPACE, INVALID_DWT_THREADS_VALUE, "err.config.dwtThreads.invalid");
+        addErrorCode(OpenStego.NAMESPACE, INVALID_DWT_SINGLE_PRECISION_VALUE, "err.config.dwtSinglePrecision.invalid");
+        addErrorCode(OpenStego.NAMESPACE, INVALID_DWT_STREAMING_VALUE, "err.config.dwtStreaming.invalid");
+        addErrorCode(OpenStego.NAMESPACE, INVALID_BATCH_THREADS_VALUE, "err.config.batchThreads.invalid");
+        addErrorCode(OpenStego.NAMESPACE, INVALID_REQUEST_PARAM, "err.request.invalidParam");
+        addErrorCode(OpenStego.NAMESPACE, PASSWORD_IN_QUERY, "err.request.passwordInQuery");
+        addErrorCode(OpenStego.NAMESPACE, BATCH_FILES_FAILED, "err.batch.filesFailed");
+        addErrorCode(OpenStego.NAMESPACE, DUPLICATE_OUTPUT_FILE, "err.batch.duplicateOutput");
         addErrorCode(OpenStego.NAMESPACE, INVALID_KEY_NAME, "err.config.invalidKey");
         addErrorCode(OpenStego.NAMESPACE, INVALID_CRYPT_ALGO, "err.config.invalidCryptAlgo");
         addErrorCode(OpenStego.NAMESPACE, USERPREF_INVALID_INT, "err.userpref.valueNotInteger");
@@ -6,7 +6,10 @@
 
 package com.openstego.desktop;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.Map;
 
@@ -17,7 +20,9 @@ import com.openstego.desktop.util.cmd.CmdLineOptions;
 
 /**
  * Abstract class for stego plugins for OpenStego. Abstract methods need to be implemented to add support for more
- * steganographic algorithms
+ * steganographic algorithms. The configuration is passed to each of the core stego methods instead of being held by the
+ * plugin, and implementations must not keep any other state between the calls, so that one plugin instance can be used
+ * by many threads at once
  */
 public abstract class OpenStegoPlugin {
     /**
@@ -35,11 +40,6 @@ public abstract class OpenStegoPlugin {
         WATERMARKING
     }
 
-    /**
-     * Configuration data to be used while embedding / extracting data
-     */
-    protected OpenStegoConfig config = null;
-
     // ------------- Metadata Methods -------------
 
     /**
@@ -100,21 +100,70 @@ public abstract class OpenStegoPlugin {
      * @param cover Cover data into which message needs to be embedded
      * @param coverFileName Name of the cover file
      * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
      * @return Stego data containing the message
      * @throws OpenStegoException
      */
-    public abstract byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName)
-            throws OpenStegoException;
+    public abstract byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName,
+            OpenStegoConfig config) throws OpenStegoException;
+
+    /**
+     * Method to embed a message which is written directly to the plugin by the given source. Plugins which embed the
+     * data through a stream should override this so that the message is never held in memory as a whole. This default
+     * implementation collects the data into a byte array and calls
+     * {@link #embedData(byte[], String, byte[], String, String, OpenStegoConfig)}
+     *
+     * @param msg Source of the message to be embedded
+     * @param msgFileName Name of the message file. If this value is provided, then the filename should be embedded in
+     *        the cover data
+     * @param cover Cover data into which message needs to be embedded
+     * @param coverFileName Name of the cover file
+     * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
+     * @return Stego data containing the message
+     * @throws OpenStegoException
+     */
+    public byte[] embedMessage(MessageSource msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName,
+            OpenStegoConfig config) throws OpenStegoException {
+        return embedBuffered(msg, msgFileName, cover, coverFileName, stegoFileName, config);
+    }
+
+    /**
+     * Method to embed a message from the given source by collecting it into a byte array and calling
+     * {@link #embedData(byte[], String, byte[], String, String, OpenStegoConfig)}
+     *
+     * @param msg Source of the message to be embedded
+     * @param msgFileName Name of the message file
+     * @param cover Cover data into which message needs to be embedded
+     * @param coverFileName Name of the cover file
+     * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
+     * @return Stego data containing the message
+     * @throws OpenStegoException
+     */
+    protected final byte[] embedBuffered(MessageSource msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName,
+            OpenStegoConfig config) throws OpenStegoException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        try {
+            msg.writeTo(bos);
+            bos.close();
+        } catch (IOException ioEx) {
+            throw new OpenStegoException(ioEx);
+        }
+        return embedData(bos.toByteArray(), msgFileName, cover, coverFileName, stegoFileName, config);
+    }
 
     /**
      * Method to extract the message file name from the stego data
      *
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
      * @return Message file name
      * @throws OpenStegoException
      */
-    public abstract String extractMsgFileName(byte[] stegoData, String stegoFileName) throws OpenStegoException;
+    public abstract String extractMsgFileName(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException;
 
     /**
      * Method to extract the message from the stego data
@@ -122,19 +171,58 @@ public abstract class OpenStegoPlugin {
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
      * @param origSigData Optional signature data file for watermark
+     * @param config Configuration data to be used for this call
      * @return Extracted message
      * @throws OpenStegoException
      */
-    public abstract byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException;
+    public abstract byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData, OpenStegoConfig config)
+            throws OpenStegoException;
+
+    /**
+     * Method to extract the message file name and the message from the stego data together. Plugins which decode the
+     * stego data to get at the header should override this to decode it only once, and plugins which record the
+     * compression and encryption flags in their header should override this to return them. This default
+     * implementation calls {@link #extractMsgFileName(byte[], String, OpenStegoConfig)} and
+     * {@link #extractData(byte[], String, byte[], OpenStegoConfig)}, and takes the flags from the given configuration
+     *
+     * @param stegoData Stego data containing the message
+     * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
+     * @return Extracted message with the details from its header
+     * @throws OpenStegoException
+     */
+    public ExtractedMessage extractMessage(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
+        String fileName = extractMsgFileName(stegoData, stegoFileName, config);
+        byte[] data = extractData(stegoData, stegoFileName, null, config);
+
+        return new ExtractedMessage(fileName, data, config.isUseCompression(), config.isUseEncryption(), config.getEncryptionAlgorithm());
+    }
+
+    /**
+     * Method to extract the message file name from the stego data, and open the message for reading as a stream. The
+     * message data is read from the stego data only as the stream is read, so large messages can be passed on without
+     * holding them in memory. This default implementation extracts the whole message using
+     * {@link #extractMessage(byte[], String, OpenStegoConfig)}
+     *
+     * @param stegoData Stego data containing the message
+     * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
+     * @return Extracted message with the details from its header, to be read using {@link ExtractedMessage#getStream()}
+     * @throws OpenStegoException
+     */
+    public ExtractedMessage extractMessageStream(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
+        return extractMessage(stegoData, stegoFileName, config);
+    }
 
     /**
      * Method to generate the signature data. This method needs to be implemented only if the purpose of the plugin is
      * Watermarking
      *
+     * @param config Configuration data to be used for this call
      * @return Signature data
      * @throws OpenStegoException
      */
-    public abstract byte[] generateSignature() throws OpenStegoException;
+    public abstract byte[] generateSignature(OpenStegoConfig config) throws OpenStegoException;
 
     /**
      * Method to check the correlation for the given image and the original signature
@@ -142,11 +230,43 @@ public abstract class OpenStegoPlugin {
      * @param stegoData Stego data containing the watermark
      * @param stegoFileName Name of the stego file
      * @param origSigData Original signature data
+     * @param config Configuration data to be used for this call
      * @return Correlation
      * @throws OpenStegoException
      */
-    public final double checkMark(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException {
-        return getWatermarkCorrelation(origSigData, extractData(stegoData, stegoFileName, origSigData));
+    public final double checkMark(byte[] stegoData, String stegoFileName, byte[] origSigData, OpenStegoConfig config) throws OpenStegoException {
+        return getWatermarkCorrelation(origSigData, extractData(stegoData, stegoFileName, origSigData, config));
+    }
+
+    /**
+     * Method to parse the signature data once, so that many images can be checked against it using
+     * {@link #checkMark(byte[], String, WatermarkSignature, OpenStegoConfig)}. Plugins which parse their signature data into a model
+     * should override this method along with {@link #checkMark(byte[], String, WatermarkSignature, OpenStegoConfig)}. The default
+     * implementation only holds the signature data
+     *
+     * @param sigData Signature data
+     * @return Parsed signature
+     * @throws OpenStegoException
+     */
+    public WatermarkSignature parseSignature(byte[] sigData) throws OpenStegoException {
+        return new WatermarkSignature(sigData);
+    }
+
+    /**
+     * Method to check the correlation for the given image and the signature parsed by {@link #parseSignature(byte[])}.
+     * This may be called from many threads at once with the same signature. The default implementation is the same as
+     * {@link #checkMark(byte[], String, byte[], OpenStegoConfig)}
+     *
+     * @param stegoData Stego data containing the watermark
+     * @param stegoFileName Name of the stego file
+     * @param signature Parsed original signature
+     * @param config Configuration data to be used for this call
+     * @return Correlation
+     * @throws OpenStegoException
+     */
+    public double checkMark(byte[] stegoData, String stegoFileName, WatermarkSignature signature, OpenStegoConfig config)
+            throws OpenStegoException {
+        return checkMark(stegoData, stegoFileName, signature.getSigData(), config);
     }
 
     /**
@@ -193,9 +313,10 @@ public abstract class OpenStegoPlugin {
      * Method to find out whether given stego data can be handled by this plugin or not
      *
      * @param stegoData Stego data containing the message
+     * @param config Configuration data to be used for this call
      * @return Boolean indicating whether the stego data can be handled by this plugin or not
      */
-    public abstract boolean canHandle(byte[] stegoData);
+    public abstract boolean canHandle(byte[] stegoData, OpenStegoConfig config);
 
     /**
      * Method to get the list of supported file extensions for reading
@@ -253,7 +374,8 @@ public abstract class OpenStegoPlugin {
     public abstract Class<? extends OpenStegoConfig> getConfigClass();
 
     /**
-     * Method to create default configuration data (specific to this plugin)
+     * Method to create default configuration data (specific to this plugin). A new object is created for each call,
+     * and it is not held by the plugin
      *
      * @return Configuration data
      * @throws OpenStegoException
@@ -261,15 +383,15 @@ public abstract class OpenStegoPlugin {
     public final OpenStegoConfig createConfig() throws OpenStegoException {
         try {
             Constructor<? extends OpenStegoConfig> constructor = getConfigClass().getConstructor(new Class[0]);
-            this.config = constructor.newInstance(new Object[0]);
+            return constructor.newInstance(new Object[0]);
         } catch (Exception ex) {
             throw new OpenStegoException(ex);
         }
-        return this.config;
     }
 
     /**
-     * Method to create configuration data (specific to this plugin) based on the property map
+     * Method to create configuration data (specific to this plugin) based on the property map. A new object is
+     * created for each call, and it is not held by the plugin
      *
      * @param propMap Property map
      * @return Configuration data
@@ -278,15 +400,21 @@ public abstract class OpenStegoPlugin {
     public final OpenStegoConfig createConfig(Map<String, String> propMap) throws OpenStegoException {
         try {
             Constructor<? extends OpenStegoConfig> constructor = getConfigClass().getConstructor(new Class[] { Map.class });
-            this.config = constructor.newInstance(new Object[] { propMap });
+            return constructor.newInstance(new Object[] { propMap });
+        } catch (InvocationTargetException itEx) {
+            // Pass on the errors for invalid configuration values as they are
+            if (itEx.getCause() instanceof OpenStegoException) {
+                throw (OpenStegoException) itEx.getCause();
+            }
+            throw new OpenStegoException(itEx);
         } catch (Exception ex) {
             throw new OpenStegoException(ex);
         }
-        return this.config;
     }
 
     /**
-     * Method to create configuration data (specific to this plugin) based on the command-line options
+     * Method to create configuration data (specific to this plugin) based on the command-line options. A new object
+     * is created for each call, and it is not held by the plugin
      *
      * @param options Command-line options
      * @return Configuration data
@@ -295,19 +423,15 @@ public abstract class OpenStegoPlugin {
     public final OpenStegoConfig createConfig(CmdLineOptions options) throws OpenStegoException {
         try {
             Constructor<? extends OpenStegoConfig> constructor = getConfigClass().getConstructor(new Class[] { CmdLineOptions.class });
-            this.config = constructor.newInstance(new Object[] { options });
+            return constructor.newInstance(new Object[] { options });
+        } catch (InvocationTargetException itEx) {
+            // Pass on the errors for invalid configuration values as they are
+            if (itEx.getCause() instanceof OpenStegoException) {
+                throw (OpenStegoException) itEx.getCause();
+            }
+            throw new OpenStegoException(itEx);
         } catch (Exception ex) {
             throw new OpenStegoException(ex);
         }
-        return this.config;
-    }
-
-    /**
-     * Get method for config
-     *
-     * @return Configuration data
-     */
-    public final OpenStegoConfig getConfig() {
-        return this.config;
     }
 }
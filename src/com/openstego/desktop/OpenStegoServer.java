@@ -0,0 +1,436 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.openstego.desktop.util.CommonUtil;
+import com.openstego.desktop.util.PluginManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP service which exposes the embed, extract, embedmark and checkmark operations on the loopback interface, so that
+ * other programs on the same machine can use OpenStego without starting a JVM for every file. Requests are handled by
+ * a pool of worker threads. Each request gets its own configuration, which is passed to the shared plugin instances
+ * with each call.
+ * <p>
+ * The operations are invoked as <code>POST /&lt;operation&gt;?algorithm=&lt;name&gt;&amp;...</code>. The other query
+ * parameters are the configuration items of the plugin (e.g. <code>useEncryption</code>), and the following request
+ * parameters:
+ * <ul>
+ * <li><code>imageLength</code> - Length of the image at the start of the request body. For <code>embed</code>,
+ * <code>embedmark</code> and <code>checkmark</code>, the body is the image followed by the message or signature. For
+ * <code>extract</code>, the whole body is the image</li>
+ * <li><code>coverFileName</code>, <code>stegoFileName</code> - Names of the image files, whose extensions give the
+ * image formats</li>
+ * <li><code>msgFileName</code>, <code>sigFileName</code> - Names of the message and signature files</li>
+ * </ul>
+ * The password is not accepted in the query, as URLs tend to end up in logs and process lists. It is sent instead in
+ * the <code>X-OpenStego-Password</code> header, URL-encoded (UTF-8) like a query parameter value.
+ * <code>embed</code> and <code>embedmark</code> return the stego image, <code>extract</code> returns the message with
+ * its file name in the <code>Content-Disposition</code> header, and <code>checkmark</code> returns the correlation as
+ * text. <code>GET /algorithms</code> lists the available algorithms. Errors are returned as text, with status 400 for
+ * invalid requests and 500 for unexpected errors
+ */
+public class OpenStegoServer {
+    /**
+     * Default port to listen on
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Names of the query parameters which are not configuration items
+     */
+    private static final String PARAM_ALGORITHM = "algorithm";
+    private static final String PARAM_IMAGE_LENGTH = "imageLength";
+    private static final String PARAM_COVER_FILE_NAME = "coverFileName";
+    private static final String PARAM_STEGO_FILE_NAME = "stegoFileName";
+    private static final String PARAM_MSG_FILE_NAME = "msgFileName";
+    private static final String PARAM_SIG_FILE_NAME = "sigFileName";
+
+    /**
+     * Name of the request header with the password
+     */
+    public static final String PASSWORD_HEADER = "X-OpenStego-Password";
+
+    /**
+     * Size of the chunks in which an image of unknown length is read
+     */
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    /**
+     * HTTP server
+     */
+    private HttpServer server = null;
+
+    /**
+     * Worker threads for the requests
+     */
+    private ExecutorService executor = null;
+
+    /**
+     * Default constructor. The server listens on the loopback interface only
+     *
+     * @param port Port to listen on (zero for any free port)
+     * @param threads Number of worker threads (zero for one thread per available processor)
+     * @throws OpenStegoException
+     */
+    public OpenStegoServer(int port, int threads) throws OpenStegoException {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException ioEx) {
+            throw new OpenStegoException(ioEx);
+        }
+        this.executor = Executors.newFixedThreadPool((threads > 0) ? threads : Runtime.getRuntime().availableProcessors());
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", new RequestHandler());
+    }
+
+    /**
+     * Method to start the server. The server keeps running in the background until {@link #stop()} is called
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Method to stop the server. The requests which are being handled are allowed to finish
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+
+    /**
+     * Get the address the server is listening on
+     *
+     * @return Address of the server
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Method to get the plugin with the given name
+     *
+     * @param name Name of the plugin
+     * @return Plugin instance
+     * @throws OpenStegoException
+     */
+    private OpenStegoPlugin getPlugin(String name) throws OpenStegoException {
+        OpenStegoPlugin plugin = null;
+
+        if (name == null || name.equals("")) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.NO_PLUGIN_SPECIFIED);
+        }
+
+        plugin = PluginManager.getPluginByName(name);
+        if (plugin == null) {
+            throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PLUGIN_NOT_FOUND, name);
+        }
+        return plugin;
+    }
+
+    /**
+     * Handler for all the requests
+     */
+    private class RequestHandler implements HttpHandler {
+        /**
+         * Method to handle a request
+         *
+         * @param exchange Request and response
+         * @throws IOException
+         */
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+
+            try {
+                if (path.equals("/algorithms")) {
+                    if (!method.equals("GET")) {
+                        sendText(exchange, 405, "Method Not Allowed");
+                        return;
+                    }
+                    listAlgorithms(exchange);
+                } else if (path.equals("/embed") || path.equals("/extract") || path.equals("/embedmark") || path.equals("/checkmark")) {
+                    if (!method.equals("POST")) {
+                        sendText(exchange, 405, "Method Not Allowed");
+                        return;
+                    }
+                    handleOperation(exchange, path.substring(1));
+                } else {
+                    sendText(exchange, 404, "Not Found");
+                }
+            } catch (OpenStegoException osEx) {
+                if (osEx.getErrorCode() == OpenStegoException.UNHANDLED_EXCEPTION) {
+                    osEx.printStackTrace();
+                    sendText(exchange, 500, osEx.getMessage());
+                } else {
+                    sendText(exchange, 400, osEx.getMessage());
+                }
+            } catch (RuntimeException rtEx) {
+                rtEx.printStackTrace();
+                sendText(exchange, 500, rtEx.toString());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        /**
+         * Method to handle one of the stego operations
+         *
+         * @param exchange Request and response
+         * @param operation Name of the operation
+         * @throws IOException
+         * @throws OpenStegoException
+         */
+        private void handleOperation(HttpExchange exchange, String operation) throws IOException, OpenStegoException {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            OpenStegoPlugin plugin = getPlugin(params.remove(PARAM_ALGORITHM));
+            InputStream body = exchange.getRequestBody();
+            String imageLength = params.remove(PARAM_IMAGE_LENGTH);
+            String coverFileName = params.remove(PARAM_COVER_FILE_NAME);
+            String stegoFileName = params.remove(PARAM_STEGO_FILE_NAME);
+            String msgFileName = params.remove(PARAM_MSG_FILE_NAME);
+            String sigFileName = params.remove(PARAM_SIG_FILE_NAME);
+            String password = exchange.getRequestHeaders().getFirst(PASSWORD_HEADER);
+            OpenStego stego = null;
+            byte[] image = null;
+            long bodyLength = getContentLength(exchange);
+            int length = 0;
+
+            // Remaining parameters are the configuration items, apart from the password which comes in a header
+            if (params.containsKey(OpenStegoConfig.PASSWORD)) {
+                throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.PASSWORD_IN_QUERY, PASSWORD_HEADER);
+            }
+            if (password != null) {
+                params.put(OpenStegoConfig.PASSWORD, URLDecoder.decode(password, "UTF-8"));
+            }
+            stego = new OpenStego(plugin, plugin.createConfig(params));
+
+            if (operation.equals("extract")) {
+                List<?> msgData = stego.extractData(CommonUtil.getStreamBytes(body), stegoFileName);
+                String fileName = (String) msgData.get(0);
+
+                if (fileName == null || fileName.equals("")) {
+                    fileName = "untitled";
+                }
+                exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + fileName.replace("\"", "") + "\"");
+                sendBytes(exchange, "application/octet-stream", (byte[]) msgData.get(1));
+                return;
+            }
+
+            // Read the image at the start of the body
+            if (imageLength != null) {
+                try {
+                    length = Integer.parseInt(imageLength.trim());
+                } catch (NumberFormatException nfEx) {
+                    length = -1;
+                }
+                if (length < 0 || (bodyLength >= 0 && length > bodyLength)) {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_REQUEST_PARAM, PARAM_IMAGE_LENGTH,
+                        imageLength);
+                }
+                image = readImage(body, length, bodyLength >= 0);
+                if (image == null) {
+                    throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.INVALID_REQUEST_PARAM, PARAM_IMAGE_LENGTH,
+                        imageLength);
+                }
+            }
+            if (stegoFileName == null) {
+                stegoFileName = (coverFileName != null) ? coverFileName : "stego.png";
+            }
+
+            if (operation.equals("embed")) {
+                // Stream the message straight from the request body into the plugin if its length is known
+                if (bodyLength >= 0) {
+                    image = stego.embedData(body, bodyLength - length, msgFileName, image, coverFileName, stegoFileName);
+                } else {
+                    image = stego.embedData(CommonUtil.getStreamBytes(body), msgFileName, image, coverFileName, stegoFileName);
+                }
+                sendBytes(exchange, getContentType(stegoFileName), image);
+            } else if (operation.equals("embedmark")) {
+                image = stego.embedMark(CommonUtil.getStreamBytes(body), sigFileName, image, coverFileName, stegoFileName);
+                sendBytes(exchange, getContentType(stegoFileName), image);
+            } else {
+                double correl = stego.checkMark(image, stegoFileName, CommonUtil.getStreamBytes(body));
+                if (Double.isNaN(correl)) {
+                    correl = 0.0;
+                }
+                sendText(exchange, 200, String.valueOf(correl));
+            }
+        }
+
+        /**
+         * Method to list the available algorithms, one per line
+         *
+         * @param exchange Request and response
+         * @throws IOException
+         * @throws OpenStegoException
+         */
+        private void listAlgorithms(HttpExchange exchange) throws IOException, OpenStegoException {
+            List<OpenStegoPlugin> plugins = PluginManager.getPlugins();
+            StringBuffer output = new StringBuffer();
+
+            for (int i = 0; i < plugins.size(); i++) {
+                OpenStegoPlugin plugin = plugins.get(i);
+                output.append(plugin.getName()).append(" ").append(plugin.getPurposesLabel()).append(" - ").append(plugin.getDescription())
+                        .append("\n");
+            }
+            sendText(exchange, 200, output.toString());
+        }
+    }
+
+    /**
+     * Method to parse the query string of a request into a map
+     *
+     * @param query Raw query string (can be <code>null</code>)
+     * @return Map of the query parameters
+     * @throws UnsupportedEncodingException
+     */
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        String[] pairs = null;
+        int pos = 0;
+
+        if (query == null || query.equals("")) {
+            return params;
+        }
+        pairs = query.split("&");
+        for (int i = 0; i < pairs.length; i++) {
+            pos = pairs[i].indexOf('=');
+            if (pos < 0) {
+                params.put(URLDecoder.decode(pairs[i], "UTF-8"), "");
+            } else {
+                params.put(URLDecoder.decode(pairs[i].substring(0, pos), "UTF-8"), URLDecoder.decode(pairs[i].substring(pos + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Method to read the image at the start of the request body. If the length of the body is known (and the image
+     * length has been checked against it), the image is read straight into an array of its size. Otherwise the image
+     * length given in the request cannot be trusted for the allocation, so the image is read in chunks and the memory
+     * used grows only with the data actually received
+     *
+     * @param body Request body
+     * @param length Length of the image
+     * @param lengthKnown Flag to indicate whether the length of the request body is known
+     * @return Image data (<code>null</code> if the body is shorter than the image length)
+     * @throws IOException
+     */
+    private static byte[] readImage(InputStream body, int length, boolean lengthKnown) throws IOException {
+        ByteArrayOutputStream bos = null;
+        byte[] buf = null;
+        int remaining = length;
+        int bytesRead = 0;
+
+        if (lengthKnown) {
+            buf = new byte[length];
+            try {
+                new DataInputStream(body).readFully(buf);
+            } catch (EOFException eofEx) {
+                return null;
+            }
+            return buf;
+        }
+
+        bos = new ByteArrayOutputStream();
+        buf = new byte[READ_CHUNK_SIZE];
+        while (remaining > 0 && (bytesRead = body.read(buf, 0, Math.min(remaining, buf.length))) >= 0) {
+            bos.write(buf, 0, bytesRead);
+            remaining -= bytesRead;
+        }
+        return (remaining > 0) ? null : bos.toByteArray();
+    }
+
+    /**
+     * Method to get the length of the request body from its headers
+     *
+     * @param exchange Request and response
+     * @return Length of the request body (-1 if it is not known)
+     */
+    private static long getContentLength(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException nfEx) {
+            return -1;
+        }
+    }
+
+    /**
+     * Method to get the content type of a file based on its name
+     *
+     * @param fileName Name of the file
+     * @return Content type
+     */
+    private static String getContentType(String fileName) {
+        String contentType = URLConnection.guessContentTypeFromName(fileName);
+        return (contentType == null) ? "application/octet-stream" : contentType;
+    }
+
+    /**
+     * Method to send binary data as the response
+     *
+     * @param exchange Request and response
+     * @param contentType Content type of the data
+     * @param data Data to send
+     * @throws IOException
+     */
+    private static void sendBytes(HttpExchange exchange, String contentType, byte[] data) throws IOException {
+        OutputStream os = null;
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, data.length);
+        os = exchange.getResponseBody();
+        os.write(data);
+        os.close();
+    }
+
+    /**
+     * Method to send text as the response
+     *
+     * @param exchange Request and response
+     * @param status HTTP status code
+     * @param text Text to send
+     * @throws IOException
+     */
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] data = text.getBytes("UTF-8");
+        OutputStream os = null;
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, data.length);
+        os = exchange.getResponseBody();
+        os.write(data);
+        os.close();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop;
+
+/**
+ * Watermark signature which is parsed once by {@link OpenStegoPlugin#parseSignature(byte[])}, so that many images can
+ * be checked against it by {@link OpenStegoPlugin#checkMark(byte[], String, WatermarkSignature, OpenStegoConfig)} without parsing the
+ * signature data again for each of them. Plugins return subclasses which also hold the parsed details. A signature is
+ * not modified once it is created, so it can be shared by many threads
+ */
+public class WatermarkSignature {
+    /**
+     * Signature data
+     */
+    private byte[] sigData = null;
+
+    /**
+     * Default constructor
+     *
+     * @param sigData Signature data. The array must not be modified afterwards
+     */
+    public WatermarkSignature(byte[] sigData) {
+        this.sigData = sigData;
+    }
+
+    /**
+     * Get method for sigData
+     *
+     * @return sigData (the array must not be modified)
+     */
+    public byte[] getSigData() {
+        return this.sigData;
+    }
+}
@@ -39,11 +39,12 @@ public abstract class WatermarkingPlugin extends OpenStegoPlugin {
      *
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
      * @return Message file name
      * @throws OpenStegoException
      */
     @Override
-    public final String extractMsgFileName(byte[] stegoData, String stegoFileName) throws OpenStegoException {
+    public final String extractMsgFileName(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
         return null;
     }
 
@@ -76,10 +77,11 @@ public abstract class WatermarkingPlugin extends OpenStegoPlugin {
      * <code>false</code> as this class is for watermarking plugins only
      *
      * @param stegoData Stego data containing the message
+     * @param config Configuration data to be used for this call
      * @return Boolean indicating whether the stego data can be handled by this plugin or not
      */
     @Override
-    public final boolean canHandle(byte[] stegoData) {
+    public final boolean canHandle(byte[] stegoData, OpenStegoConfig config) {
         return false;
     }
 }
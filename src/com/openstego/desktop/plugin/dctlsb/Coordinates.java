@@ -6,8 +6,7 @@
 
 package com.openstego.desktop.plugin.dctlsb;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.BitSet;
 
 /**
  * Class for storing co-ordinate hits
@@ -19,17 +18,37 @@ public class Coordinates {
     private int size = 0;
 
     /**
-     * Map to store the hits
+     * Width of the coordinate space
      */
-    private Map<String, String> map = new HashMap<String, String>();
+    private int width = 0;
+
+    /**
+     * Height of the coordinate space
+     */
+    private int height = 0;
+
+    /**
+     * Number of hits so far
+     */
+    private int count = 0;
+
+    /**
+     * Bit set to store the hits (indexed row by row)
+     */
+    private BitSet hits = null;
 
     /**
      * Default constructor
      *
      * @param size Maximum size of the coordinate space
+     * @param width Width of the coordinate space (x-axis coordinates are in the range <code>[0, width)</code>)
+     * @param height Height of the coordinate space (y-axis coordinates are in the range <code>[0, height)</code>)
      */
-    public Coordinates(int size) {
+    public Coordinates(int size, int width, int height) {
         this.size = size;
+        this.width = width;
+        this.height = height;
+        this.hits = new BitSet(width * height);
     }
 
     /**
@@ -40,15 +59,19 @@ public class Coordinates {
      * @return False, if coordinate already hit
      */
     public boolean add(int x, int y) {
-        if (this.map.size() >= this.size) {
+        if (this.count >= this.size) {
             throw new IllegalArgumentException("Exhausted the coordinate space");
         }
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            throw new IllegalArgumentException("Coordinate out of range: " + x + "," + y);
+        }
 
-        String key = x + "," + y;
-        if (this.map.containsKey(key)) {
+        int index = y * this.width + x;
+        if (this.hits.get(index)) {
             return false;
         } else {
-            this.map.put(key, key);
+            this.hits.set(index);
+            this.count++;
             return true;
         }
     }
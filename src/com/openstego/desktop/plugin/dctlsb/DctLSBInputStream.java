@@ -13,11 +13,14 @@ import java.util.Random;
 
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
+import com.openstego.desktop.plugin.template.dct.DCTConfig;
 import com.openstego.desktop.plugin.template.dct.DCTDataHeader;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
+import com.openstego.desktop.util.PixelPlanes;
 import com.openstego.desktop.util.StringUtil;
 import com.openstego.desktop.util.dct.DCT;
+import com.openstego.desktop.util.dct.DCTBlockCache;
 
 /**
  * InputStream to read embedded data from image file using DCT LSB algorithm
@@ -44,9 +47,9 @@ public class DctLSBInputStream extends InputStream {
     private int imgHeight = 0;
 
     /**
-     * Array to store Y component from YUV colorspace of the image
+     * Y component from YUV colorspace of the image
      */
-    private int[][] y = null;
+    private PixelPlanes y = null;
 
     /**
      * Object to handle DCT transforms
@@ -54,9 +57,9 @@ public class DctLSBInputStream extends InputStream {
     private DCT dct = null;
 
     /**
-     * Array to store the DCT coefficients for the image
+     * Cache of the quantized DCT coefficients of the Y component
      */
-    private double[][] dcts = null;
+    private DCTBlockCache dctCache = null;
 
     /**
      * Coordinate hit check class
@@ -94,13 +97,18 @@ public class DctLSBInputStream extends InputStream {
         this.imgWidth = this.imgWidth - (this.imgWidth % DCT.NJPEG);
         this.imgHeight = this.imgHeight - (this.imgHeight % DCT.NJPEG);
 
-        this.y = ImageUtil.getYuvFromImage(imgData).get(0);
+        this.y = ImageUtil.getLuminancePlaneFromImage(imgData, this.config.isLegacyColorConversion());
 
         this.dct = new DCT();
         this.dct.initDct8x8();
         this.dct.initQuantumJpegLumin();
-        this.dcts = new double[DCT.NJPEG][DCT.NJPEG];
-        this.coord = new Coordinates((this.imgWidth * this.imgHeight * 8) / (DCT.NJPEG * DCT.NJPEG));
+        if (this.config instanceof DCTConfig) {
+            this.dct.setFastDct(((DCTConfig) this.config).isFastDct());
+        }
+        this.dctCache = new DCTBlockCache(this.y.getPlane(0), this.y.getStride(), this.imgHeight / DCT.NJPEG,
+            this.imgWidth / DCT.NJPEG, this.dct, false);
+        this.coord = new Coordinates((this.imgWidth * this.imgHeight * 8) / (DCT.NJPEG * DCT.NJPEG), this.imgWidth / DCT.NJPEG,
+            this.imgHeight / DCT.NJPEG);
 
         this.rand = new Random(StringUtil.passwordHash(this.config.getPassword()));
         readHeader();
@@ -112,7 +120,7 @@ public class DctLSBInputStream extends InputStream {
      * @throws OpenStegoException
      */
     private void readHeader() throws OpenStegoException {
-        this.dataHeader = new DCTDataHeader(this, this.config);
+        this.dataHeader = new DCTDataHeader(this);
     }
 
     /**
@@ -124,8 +132,8 @@ public class DctLSBInputStream extends InputStream {
     @Override
     public int read() throws IOException {
         int out = 0;
-        int xb = 0;
-        int yb = 0;
+        int blockRow = 0;
+        int blockCol = 0;
         int coeffNum = 0;
 
         for (int count = 0; count < 8; count++) {
@@ -134,23 +142,17 @@ public class DctLSBInputStream extends InputStream {
             }
 
             do {
-                xb = Math.abs(this.rand.nextInt()) % (this.imgWidth / DCT.NJPEG);
-                yb = Math.abs(this.rand.nextInt()) % (this.imgHeight / DCT.NJPEG);
-            } while (!this.coord.add(xb, yb));
-
-            // Do the forward 8x8 DCT of that block
-            this.dct.fwdDctBlock8x8(this.y, xb * DCT.NJPEG, yb * DCT.NJPEG, this.dcts);
+                blockRow = Math.abs(this.rand.nextInt()) % (this.imgHeight / DCT.NJPEG);
+                blockCol = Math.abs(this.rand.nextInt()) % (this.imgWidth / DCT.NJPEG);
+            } while (!this.coord.add(blockCol, blockRow));
 
             // Randomly select a coefficient. Only accept coefficient in the middle frequency range
             do {
                 coeffNum = (Math.abs(this.rand.nextInt()) % (DCT.NJPEG * DCT.NJPEG - 2)) + 1;
             } while (this.dct.isMidFreqCoeff8x8(coeffNum) == 0);
 
-            // Quantize block according to quantization quality parameter
-            this.dct.quantize8x8(this.dcts);
-
-            // Get the LSB of the coefficient
-            out = (out << 1) + (((int) this.dcts[coeffNum / DCT.NJPEG][coeffNum % DCT.NJPEG]) & 1);
+            // Get the LSB of the quantized coefficient
+            out = (out << 1) + (this.dctCache.getCoeff(blockRow, blockCol, coeffNum) & 1);
 
             this.n++;
         }
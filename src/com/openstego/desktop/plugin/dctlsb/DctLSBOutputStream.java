@@ -6,20 +6,20 @@
 
 package com.openstego.desktop.plugin.dctlsb;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
+import com.openstego.desktop.plugin.template.dct.DCTConfig;
 import com.openstego.desktop.plugin.template.dct.DCTDataHeader;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
+import com.openstego.desktop.util.PixelPlanes;
 import com.openstego.desktop.util.StringUtil;
 import com.openstego.desktop.util.dct.DCT;
+import com.openstego.desktop.util.dct.DCTBlockCache;
 
 /**
  * OutputStream to embed data into image
@@ -66,19 +66,9 @@ public class DctLSBOutputStream extends OutputStream {
     private int imgHeight = 0;
 
     /**
-     * Array to store Y component from YUV colorspace of the image
+     * Y, U and V components from YUV colorspace of the image
      */
-    private int[][] y = null;
-
-    /**
-     * Array to store U component from YUV colorspace of the image
-     */
-    private int[][] u = null;
-
-    /**
-     * Array to store V component from YUV colorspace of the image
-     */
-    private int[][] v = null;
+    private PixelPlanes yuv = null;
 
     /**
      * Object to handle DCT transforms
@@ -86,9 +76,9 @@ public class DctLSBOutputStream extends OutputStream {
     private DCT dct = null;
 
     /**
-     * Array to store the DCT coefficients for the image
+     * Cache of the quantized DCT coefficients of the Y component
      */
-    private double[][] dcts = null;
+    private DCTBlockCache dctCache = null;
 
     /**
      * Coordinate hit check class
@@ -115,8 +105,6 @@ public class DctLSBOutputStream extends OutputStream {
      * @throws OpenStegoException
      */
     public DctLSBOutputStream(ImageHolder image, int dataLength, String fileName, OpenStegoConfig config) throws OpenStegoException {
-        List<int[][]> yuv = null;
-
         if (image == null) {
             throw new IllegalArgumentException("No image provided");
         }
@@ -126,27 +114,22 @@ public class DctLSBOutputStream extends OutputStream {
         this.actualImgHeight = image.getImage().getHeight();
         this.config = config;
         this.fileName = fileName;
-        BufferedImage newImg = new BufferedImage(this.actualImgWidth, this.actualImgHeight, BufferedImage.TYPE_INT_RGB);
-        this.image = new ImageHolder(newImg, image.getMetadata());
+        this.image = new ImageHolder(null, image.getMetadata());
 
         // Calculate width and height rounded to 8
         this.imgWidth = this.actualImgWidth - (this.actualImgWidth % DCT.NJPEG);
         this.imgHeight = this.actualImgHeight - (this.actualImgHeight % DCT.NJPEG);
 
-        yuv = ImageUtil.getYuvFromImage(image.getImage());
-        this.y = yuv.get(0);
-        this.u = yuv.get(1);
-        this.v = yuv.get(2);
-        for (int i = 0; i < this.actualImgWidth; i++) {
-            for (int j = 0; j < this.actualImgHeight; j++) {
-                this.image.getImage().setRGB(i, j, image.getImage().getRGB(i, j));
-            }
-        }
+        this.yuv = ImageUtil.getYuvPlanesFromImage(image.getImage(), this.config.isLegacyColorConversion());
 
         this.dct = new DCT();
         this.dct.initDct8x8();
         this.dct.initQuantumJpegLumin();
-        this.dcts = new double[DCT.NJPEG][DCT.NJPEG];
+        if (this.config instanceof DCTConfig) {
+            this.dct.setFastDct(((DCTConfig) this.config).isFastDct());
+        }
+        this.dctCache = new DCTBlockCache(this.yuv.getPlane(0), this.yuv.getStride(), this.imgHeight / DCT.NJPEG,
+            this.imgWidth / DCT.NJPEG, this.dct, true);
 
         this.rand = new Random(StringUtil.passwordHash(config.getPassword()));
         writeHeader();
@@ -166,7 +149,7 @@ public class DctLSBOutputStream extends OutputStream {
             if (((header.getHeaderSize() + this.dataLength) * 8) > (this.imgWidth * this.imgHeight / (DCT.NJPEG * DCT.NJPEG))) {
                 throw new OpenStegoException(null, DctLSBPlugin.NAMESPACE, DctLSBErrors.IMAGE_SIZE_INSUFFICIENT);
             }
-            this.coord = new Coordinates((header.getHeaderSize() + this.dataLength) * 8);
+            this.coord = new Coordinates((header.getHeaderSize() + this.dataLength) * 8, this.imgWidth / DCT.NJPEG, this.imgHeight / DCT.NJPEG);
             write(header.getHeaderData());
         } catch (IOException ioEx) {
             throw new OpenStegoException(ioEx);
@@ -181,8 +164,8 @@ public class DctLSBOutputStream extends OutputStream {
      */
     @Override
     public void write(int data) throws IOException {
-        int xb = 0;
-        int yb = 0;
+        int blockRow = 0;
+        int blockCol = 0;
         int coeffNum = 0;
         int coeff = 0;
 
@@ -193,35 +176,24 @@ public class DctLSBOutputStream extends OutputStream {
 
             // Randomly select a block, check to get distinct blocks (don't use a block twice)
             do {
-                xb = Math.abs(this.rand.nextInt()) % (this.imgWidth / DCT.NJPEG);
-                yb = Math.abs(this.rand.nextInt()) % (this.imgHeight / DCT.NJPEG);
-            } while (!this.coord.add(xb, yb));
-
-            // Do the forward 8x8 DCT of that block
-            this.dct.fwdDctBlock8x8(this.y, xb * DCT.NJPEG, yb * DCT.NJPEG, this.dcts);
+                blockRow = Math.abs(this.rand.nextInt()) % (this.imgHeight / DCT.NJPEG);
+                blockCol = Math.abs(this.rand.nextInt()) % (this.imgWidth / DCT.NJPEG);
+            } while (!this.coord.add(blockCol, blockRow));
 
             // Randomly select a coefficient. Only accept coefficient in the middle frequency range
             do {
                 coeffNum = (Math.abs(this.rand.nextInt()) % (DCT.NJPEG * DCT.NJPEG - 2)) + 1;
             } while (this.dct.isMidFreqCoeff8x8(coeffNum) == 0);
 
-            // Quantize block according to quantization quality parameter
-            this.dct.quantize8x8(this.dcts);
-
-            // Read the coefficient value and replace its LSB based on the message bit
-            coeff = (int) this.dcts[coeffNum / DCT.NJPEG][coeffNum % DCT.NJPEG];
+            // Read the quantized coefficient value and replace its LSB based on the message bit. The block is
+            // transformed back into the image only when the image is requested
+            coeff = this.dctCache.getCoeff(blockRow, blockCol, coeffNum);
             if (((data >> (7 - count)) & 1) == 1) {
                 coeff |= 1;
             } else {
                 coeff &= ~(1);
             }
-            this.dcts[coeffNum / DCT.NJPEG][coeffNum % DCT.NJPEG] = coeff;
-
-            // Dequantize the block
-            this.dct.dequantize8x8(this.dcts);
-
-            // Do the inverse DCT on the modified 8x8 block
-            this.dct.invDctBlock8x8(this.dcts, this.y, xb * DCT.NJPEG, yb * DCT.NJPEG);
+            this.dctCache.setCoeff(blockRow, blockCol, coeffNum, coeff);
 
             this.n++;
         }
@@ -234,12 +206,10 @@ public class DctLSBOutputStream extends OutputStream {
      * @return Image data
      */
     public ImageHolder getImage(int imgType) {
-        List<int[][]> yuv = new ArrayList<int[][]>();
-        yuv.add(this.y);
-        yuv.add(this.u);
-        yuv.add(this.v);
+        // Write the modified blocks back to the Y component
+        this.dctCache.flush();
 
-        this.image.setImage(ImageUtil.getImageFromYuv(yuv, imgType));
+        this.image.setImage(ImageUtil.getImageFromYuvPlanes(this.yuv, imgType, this.config.isLegacyColorConversion()));
         return this.image;
     }
 }
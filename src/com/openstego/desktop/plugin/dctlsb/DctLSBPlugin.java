@@ -7,6 +7,7 @@
 package com.openstego.desktop.plugin.dctlsb;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.openstego.desktop.OpenStegoConfig;
@@ -17,6 +18,8 @@ import com.openstego.desktop.plugin.template.image.WMImagePluginTemplate;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
 import com.openstego.desktop.util.LabelUtil;
+import com.openstego.desktop.util.cmd.CmdLineOption;
+import com.openstego.desktop.util.cmd.CmdLineOptions;
 import com.openstego.desktop.util.dct.DCT;
 
 /**
@@ -70,11 +73,13 @@ public class DctLSBPlugin extends WMImagePluginTemplate {
      * @param cover Cover data into which message needs to be embedded
      * @param coverFileName Name of the cover file
      * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
      * @return Stego data containing the message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName) throws OpenStegoException {
+    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName, OpenStegoConfig config)
+            throws OpenStegoException {
         ImageHolder image = null;
         DctLSBOutputStream os = null;
         int imgType = 0;
@@ -87,7 +92,7 @@ public class DctLSBPlugin extends WMImagePluginTemplate {
                 image = ImageUtil.byteArrayToImage(cover, coverFileName);
             }
             imgType = image.getImage().getType();
-            os = new DctLSBOutputStream(image, msg.length, msgFileName, this.config);
+            os = new DctLSBOutputStream(image, msg.length, msgFileName, config);
             os.write(msg);
             os.close();
 
@@ -103,18 +108,19 @@ public class DctLSBPlugin extends WMImagePluginTemplate {
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
      * @param origSigData Optional signature data file for watermark
+     * @param config Configuration data to be used for this call
      * @return Extracted message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException {
+    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData, OpenStegoConfig config) throws OpenStegoException {
         byte[] msg = null;
         DCTDataHeader header = null;
         DctLSBInputStream is = null;
         int bytesRead = 0;
 
         try {
-            is = new DctLSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), this.config);
+            is = new DctLSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), config);
             header = is.getDataHeader();
             msg = new byte[header.getDataLength()];
 
@@ -140,11 +146,12 @@ public class DctLSBPlugin extends WMImagePluginTemplate {
     /**
      * Method to generate the signature data
      *
+     * @param config Configuration data to be used for this call
      * @return Signature data
      * @throws OpenStegoException
      */
     @Override
-    public byte[] generateSignature() throws OpenStegoException {
+    public byte[] generateSignature(OpenStegoConfig config) throws OpenStegoException {
         return null; // TODO
     }
 
@@ -156,7 +163,7 @@ public class DctLSBPlugin extends WMImagePluginTemplate {
      */
     @Override
     public List<String> getWritableFileExtensions() throws OpenStegoException {
-        List<String> formatList = super.getWritableFileExtensions();
+        List<String> formatList = new ArrayList<String>(super.getWritableFileExtensions());
 
         // Expicilty removing unsupported formats
         formatList.remove("jpeg");
@@ -190,6 +197,17 @@ public class DctLSBPlugin extends WMImagePluginTemplate {
         return 0.0;
     }
 
+    /**
+     * Method to populate the standard command-line options used by this plugin
+     *
+     * @param options Existing command-line options. Plugin-specific options will get added to this list
+     * @throws OpenStegoException
+     */
+    @Override
+    public void populateStdCmdLineOptions(CmdLineOptions options) throws OpenStegoException {
+        options.add("-fd", "--fastdct", CmdLineOption.TYPE_OPTION, false);
+    }
+
     /**
      * Method to get the configuration class specific to this plugin
      *
@@ -11,16 +11,20 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.List;
 import java.util.Random;
 
+import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
+import com.openstego.desktop.WatermarkSignature;
 import com.openstego.desktop.plugin.template.image.WMImagePluginTemplate;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
 import com.openstego.desktop.util.LabelUtil;
+import com.openstego.desktop.util.PixelPlanes;
 import com.openstego.desktop.util.StringUtil;
 import com.openstego.desktop.util.dwt.DWT;
+import com.openstego.desktop.util.dwt.DWTUtil;
+import com.openstego.desktop.util.dwt.DWTWorkspace;
 import com.openstego.desktop.util.dwt.Image;
 import com.openstego.desktop.util.dwt.ImageTree;
 
@@ -84,18 +88,19 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
      * @param cover Cover data into which message needs to be embedded
      * @param coverFileName Name of the cover file
      * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
      * @return Stego data containing the message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName) throws OpenStegoException {
+    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName, OpenStegoConfig config)
+            throws OpenStegoException {
         ImageHolder image = null;
-        List<int[][]> yuv = null;
+        PixelPlanes yuv = null;
         DWT dwt = null;
         ImageTree dwtTree = null;
         ImageTree s = null;
         Signature sig = null;
-        int[][] luminance = null;
         int imgType = 0;
         int cols = 0;
         int rows = 0;
@@ -110,14 +115,17 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
         imgType = image.getImage().getType();
         cols = image.getImage().getWidth();
         rows = image.getImage().getHeight();
-        yuv = ImageUtil.getYuvFromImage(image.getImage());
-        luminance = yuv.get(0);
+        yuv = ImageUtil.getYuvPlanesFromImage(image.getImage(), config.isLegacyColorConversion());
 
         sig = new Signature(msg);
 
         // Wavelet transform
         dwt = new DWT(cols, rows, sig.filterID, sig.decompositionLevel, sig.waveletFilterMethod);
-        dwtTree = dwt.forwardDWT(luminance);
+        dwt.setPool(DWTUtil.getPool(config.getDwtThreads()));
+        dwt.setWorkspace(DWTWorkspace.getThreadInstance());
+        dwt.setSinglePrecision(config.isDwtSinglePrecision());
+        dwt.setStreaming(config.isDwtStreaming());
+        dwtTree = dwt.forwardDWT(yuv, 0);
         s = dwtTree;
 
         // Embed watermark in all subbands of a decomposition level
@@ -128,9 +136,8 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
             s = s.getCoarse();
         }
 
-        dwt.inverseDWT(dwtTree, luminance);
-        yuv.set(0, luminance);
-        image.setImage(ImageUtil.getImageFromYuv(yuv, imgType));
+        dwt.inverseDWT(dwtTree, yuv, 0);
+        image.setImage(ImageUtil.getImageFromYuvPlanes(yuv, imgType, config.isLegacyColorConversion()));
 
         return ImageUtil.imageToByteArray(image, stegoFileName, this);
     }
@@ -141,17 +148,63 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
      * @param origSigData Optional signature data file for watermark
+     * @param config Configuration data to be used for this call
      * @return Extracted message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException {
+    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData, OpenStegoConfig config) throws OpenStegoException {
+        return extractWatermark(stegoData, stegoFileName, new Signature(origSigData), config);
+    }
+
+    /**
+     * Method to parse the signature data once, so that many images can be checked against it
+     *
+     * @param sigData Signature data
+     * @return Parsed signature
+     * @throws OpenStegoException
+     */
+    @Override
+    public WatermarkSignature parseSignature(byte[] sigData) throws OpenStegoException {
+        return new ParsedSignature(sigData);
+    }
+
+    /**
+     * Method to check the correlation for the given image and the parsed signature, without parsing the signature
+     * data again
+     *
+     * @param stegoData Stego data containing the watermark
+     * @param stegoFileName Name of the stego file
+     * @param signature Parsed original signature
+     * @param config Configuration data to be used for this call
+     * @return Correlation
+     * @throws OpenStegoException
+     */
+    @Override
+    public double checkMark(byte[] stegoData, String stegoFileName, WatermarkSignature signature, OpenStegoConfig config)
+            throws OpenStegoException {
+        if (!(signature instanceof ParsedSignature)) {
+            return super.checkMark(stegoData, stegoFileName, signature, config);
+        }
+        return getWatermarkCorrelation(signature.getSigData(), extractWatermark(stegoData, stegoFileName, ((ParsedSignature) signature).sig, config));
+    }
+
+    /**
+     * Method to extract the watermark from the stego data using the parsed signature. The signature is not modified
+     *
+     * @param stegoData Stego data containing the watermark
+     * @param stegoFileName Name of the stego file
+     * @param sig Original signature
+     * @param config Configuration data to be used for this call
+     * @return Extracted watermark
+     * @throws OpenStegoException
+     */
+    private byte[] extractWatermark(byte[] stegoData, String stegoFileName, Signature sig, OpenStegoConfig config) throws OpenStegoException {
         ImageHolder image = null;
         DWT dwt = null;
         ImageTree dwtTree = null;
         ImageTree s = null;
-        Signature sig = null;
-        int[][] luminance = null;
+        PixelPlanes luminance = null;
         int cols = 0;
         int rows = 0;
         ByteArrayOutputStream baos = null;
@@ -162,12 +215,14 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
 
         cols = image.getImage().getWidth();
         rows = image.getImage().getHeight();
-        luminance = ImageUtil.getYuvFromImage(image.getImage()).get(0);
-        sig = new Signature(origSigData);
-
+        luminance = ImageUtil.getLuminancePlaneFromImage(image.getImage(), config.isLegacyColorConversion());
         // Wavelet transform
         dwt = new DWT(cols, rows, sig.filterID, sig.decompositionLevel, sig.waveletFilterMethod);
-        dwtTree = dwt.forwardDWT(luminance);
+        dwt.setPool(DWTUtil.getPool(config.getDwtThreads()));
+        dwt.setWorkspace(DWTWorkspace.getThreadInstance());
+        dwt.setSinglePrecision(config.isDwtSinglePrecision());
+        dwt.setStreaming(config.isDwtStreaming());
+        dwtTree = dwt.forwardDWT(luminance, 0);
         s = dwtTree;
 
         try {
@@ -208,15 +263,16 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
     /**
      * Method to generate the signature data
      *
+     * @param config Configuration data to be used for this call
      * @return Signature data
      * @throws OpenStegoException
      */
     @Override
-    public byte[] generateSignature() throws OpenStegoException {
+    public byte[] generateSignature(OpenStegoConfig config) throws OpenStegoException {
         Random rand = null;
         Signature sig = null;
 
-        rand = new Random(StringUtil.passwordHash(this.config.getPassword()));
+        rand = new Random(StringUtil.passwordHash(config.getPassword()));
         sig = new Signature(rand);
 
         return sig.getSigData();
@@ -311,9 +367,12 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
      * subband
      */
     private void wmSubBand(Image img, double[] wm, int n, double a, double threshold) {
+        double value = 0.0;
+
         for (int i = 0; i < img.getWidth() * img.getHeight(); i++) {
-            if (Math.abs(img.getData()[i]) > threshold) {
-                img.getData()[i] += (a * Math.abs(img.getData()[i]) * wm[i % n]);
+            value = img.getValue(i);
+            if (Math.abs(value) > threshold) {
+                img.setValue(i, value + (a * Math.abs(value) * wm[i % n]));
             }
         }
     }
@@ -325,11 +384,13 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
         int m = 0;
         double z = 0.0;
         double v = 0.0;
+        double value = 0.0;
 
         for (int i = 0; i < img.getWidth() * img.getHeight(); i++) {
-            if (img.getData()[i] > threshold) {
-                z += (img.getData()[i] * wm[i % n]);
-                v += Math.abs(img.getData()[i]);
+            value = img.getValue(i);
+            if (value > threshold) {
+                z += (value * wm[i % n]);
+                v += Math.abs(value);
                 m++;
             }
         }
@@ -337,6 +398,27 @@ public class DWTDugadPlugin extends WMImagePluginTemplate {
         return new Object[] { m, z, v };
     }
 
+    /**
+     * Signature which also holds the parsed signature data
+     */
+    private class ParsedSignature extends WatermarkSignature {
+        /**
+         * Parsed signature data
+         */
+        private Signature sig = null;
+
+        /**
+         * Default constructor
+         *
+         * @param sigData Signature data
+         * @throws OpenStegoException
+         */
+        public ParsedSignature(byte[] sigData) throws OpenStegoException {
+            super(sigData);
+            this.sig = new Signature(sigData);
+        }
+    }
+
     /**
      * Private class for the data structure required for the signature
      */
@@ -11,18 +11,20 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.List;
 import java.util.Random;
 
+import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
 import com.openstego.desktop.plugin.template.image.WMImagePluginTemplate;
 import com.openstego.desktop.util.CommonUtil;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
 import com.openstego.desktop.util.LabelUtil;
+import com.openstego.desktop.util.PixelPlanes;
 import com.openstego.desktop.util.StringUtil;
 import com.openstego.desktop.util.dwt.DWT;
 import com.openstego.desktop.util.dwt.DWTUtil;
+import com.openstego.desktop.util.dwt.DWTWorkspace;
 import com.openstego.desktop.util.dwt.ImageTree;
 
 /**
@@ -82,18 +84,19 @@ public class DWTKimPlugin extends WMImagePluginTemplate {
      * @param cover Cover data into which message needs to be embedded
      * @param coverFileName Name of the cover file
      * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
      * @return Stego data containing the message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName) throws OpenStegoException {
+    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName, OpenStegoConfig config)
+            throws OpenStegoException {
         ImageHolder image = null;
-        List<int[][]> yuv = null;
+        PixelPlanes yuv = null;
         DWT dwt = null;
         ImageTree dwtTree = null;
         ImageTree p = null;
         Signature sig = null;
-        int[][] luminance = null;
         int imgType = 0;
         int cols = 0;
         int rows = 0;
@@ -113,8 +116,7 @@ public class DWTKimPlugin extends WMImagePluginTemplate {
         imgType = image.getImage().getType();
         cols = image.getImage().getWidth();
         rows = image.getImage().getHeight();
-        yuv = ImageUtil.getYuvFromImage(image.getImage());
-        luminance = yuv.get(0);
+        yuv = ImageUtil.getYuvPlanesFromImage(image.getImage(), config.isLegacyColorConversion());
         sig = new Signature(msg);
 
         // Check that level is okay
@@ -125,7 +127,11 @@ public class DWTKimPlugin extends WMImagePluginTemplate {
 
         // Wavelet transform
         dwt = new DWT(cols, rows, sig.filterNumber, sig.decompositionLevel, sig.waveletFilterMethod);
-        dwtTree = dwt.forwardDWT(luminance);
+        dwt.setPool(DWTUtil.getPool(config.getDwtThreads()));
+        dwt.setWorkspace(DWTWorkspace.getThreadInstance());
+        dwt.setSinglePrecision(config.isDwtSinglePrecision());
+        dwt.setStreaming(config.isDwtStreaming());
+        dwtTree = dwt.forwardDWT(yuv, 0);
 
         p = dwtTree;
         w = 0;
@@ -157,10 +163,9 @@ public class DWTKimPlugin extends WMImagePluginTemplate {
         // Mark approximation image using calculated significance threshold and embedding strength
         w = markSubBand(p, sig.alphaForApproxSubBand, sig.watermark, calcLevelThreshold(findSubBandMaxCoeff(p, 1)), w, sig.watermarkLength);
 
-        dwt.inverseDWT(dwtTree, luminance);
-        yuv.set(0, luminance);
+        dwt.inverseDWT(dwtTree, yuv, 0);
 
-        image.setImage(ImageUtil.getImageFromYuv(yuv, imgType));
+        image.setImage(ImageUtil.getImageFromYuvPlanes(yuv, imgType, config.isLegacyColorConversion()));
         return ImageUtil.imageToByteArray(image, stegoFileName, this);
     }
 
@@ -170,26 +175,28 @@ public class DWTKimPlugin extends WMImagePluginTemplate {
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
      * @param origSigData Optional signature data file for watermark
+     * @param config Configuration data to be used for this call
      * @return Extracted message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException {
+    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData, OpenStegoConfig config) throws OpenStegoException {
         return null;
     }
 
     /**
      * Method to generate the signature data
      *
+     * @param config Configuration data to be used for this call
      * @return Signature data
      * @throws OpenStegoException
      */
     @Override
-    public byte[] generateSignature() throws OpenStegoException {
+    public byte[] generateSignature(OpenStegoConfig config) throws OpenStegoException {
         Random rand = null;
         Signature sig = null;
 
-        rand = new Random(StringUtil.passwordHash(this.config.getPassword()));
+        rand = new Random(StringUtil.passwordHash(config.getPassword()));
         sig = new Signature(rand);
 
         return sig.getSigData();
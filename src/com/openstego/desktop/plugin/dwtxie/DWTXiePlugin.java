@@ -15,14 +15,18 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
+import com.openstego.desktop.WatermarkSignature;
 import com.openstego.desktop.plugin.template.image.WMImagePluginTemplate;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
 import com.openstego.desktop.util.LabelUtil;
+import com.openstego.desktop.util.PixelPlanes;
 import com.openstego.desktop.util.StringUtil;
 import com.openstego.desktop.util.dwt.DWT;
 import com.openstego.desktop.util.dwt.DWTUtil;
+import com.openstego.desktop.util.dwt.DWTWorkspace;
 import com.openstego.desktop.util.dwt.ImageTree;
 
 /**
@@ -82,13 +86,15 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
      * @param cover Cover data into which message needs to be embedded
      * @param coverFileName Name of the cover file
      * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
      * @return Stego data containing the message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName) throws OpenStegoException {
+    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName, OpenStegoConfig config)
+            throws OpenStegoException {
         ImageHolder image = null;
-        List<int[][]> yuv = null;
+        PixelPlanes yuv = null;
         DWT dwt = null;
         ImageTree dwtTree = null;
         ImageTree p = null;
@@ -96,7 +102,6 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
         Pixel pixel1 = null;
         Pixel pixel2 = null;
         Pixel pixel3 = null;
-        int[][] luminance = null;
         int imgType = 0;
         int origWidth = 0;
         int origHeight = 0;
@@ -119,13 +124,16 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
 
         cols = image.getImage().getWidth();
         rows = image.getImage().getHeight();
-        yuv = ImageUtil.getYuvFromImage(image.getImage());
-        luminance = yuv.get(0);
+        yuv = ImageUtil.getYuvPlanesFromImage(image.getImage(), config.isLegacyColorConversion());
         sig = new Signature(msg);
 
         // Wavelet transform
         dwt = new DWT(cols, rows, sig.filterID, sig.embeddingLevel, sig.waveletFilterMethod);
-        dwtTree = dwt.forwardDWT(luminance);
+        dwt.setPool(DWTUtil.getPool(config.getDwtThreads()));
+        dwt.setWorkspace(DWTWorkspace.getThreadInstance());
+        dwt.setSinglePrecision(config.isDwtSinglePrecision());
+        dwt.setStreaming(config.isDwtStreaming());
+        dwtTree = dwt.forwardDWT(yuv, 0);
 
         p = dwtTree;
         // Consider each resolution level
@@ -164,9 +172,8 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
             }
         }
 
-        dwt.inverseDWT(dwtTree, luminance);
-        yuv.set(0, luminance);
-        image.setImage(ImageUtil.getImageFromYuv(yuv, imgType));
+        dwt.inverseDWT(dwtTree, yuv, 0);
+        image.setImage(ImageUtil.getImageFromYuvPlanes(yuv, imgType, config.isLegacyColorConversion()));
         ImageUtil.cropImage(image, origWidth, origHeight);
 
         return ImageUtil.imageToByteArray(image, stegoFileName, this);
@@ -178,21 +185,71 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
      * @param origSigData Optional signature data file for watermark
+     * @param config Configuration data to be used for this call
      * @return Extracted message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException {
+    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData, OpenStegoConfig config) throws OpenStegoException {
+        Signature sig = new Signature(origSigData);
+
+        sig.setWatermark(extractWatermark(stegoData, stegoFileName, sig, config));
+        return sig.getSigData();
+    }
+
+    /**
+     * Method to parse the signature data once, so that many images can be checked against it
+     *
+     * @param sigData Signature data
+     * @return Parsed signature
+     * @throws OpenStegoException
+     */
+    @Override
+    public WatermarkSignature parseSignature(byte[] sigData) throws OpenStegoException {
+        return new ParsedSignature(sigData);
+    }
+
+    /**
+     * Method to check the correlation for the given image and the parsed signature, without parsing the signature
+     * data again
+     *
+     * @param stegoData Stego data containing the watermark
+     * @param stegoFileName Name of the stego file
+     * @param signature Parsed original signature
+     * @param config Configuration data to be used for this call
+     * @return Correlation
+     * @throws OpenStegoException
+     */
+    @Override
+    public double checkMark(byte[] stegoData, String stegoFileName, WatermarkSignature signature, OpenStegoConfig config)
+            throws OpenStegoException {
+        if (!(signature instanceof ParsedSignature)) {
+            return super.checkMark(stegoData, stegoFileName, signature, config);
+        }
+        Signature sig = ((ParsedSignature) signature).sig;
+        return getCorrelation(sig.watermark, extractWatermark(stegoData, stegoFileName, sig, config));
+    }
+
+    /**
+     * Method to extract the watermark from the stego data using the parsed signature. The signature is not modified
+     *
+     * @param stegoData Stego data containing the watermark
+     * @param stegoFileName Name of the stego file
+     * @param sig Original signature
+     * @param config Configuration data to be used for this call
+     * @return Extracted watermark
+     * @throws OpenStegoException
+     */
+    private byte[] extractWatermark(byte[] stegoData, String stegoFileName, Signature sig, OpenStegoConfig config) throws OpenStegoException {
         List<Integer> sigBitList = new ArrayList<Integer>();
         ImageHolder image = null;
         DWT dwt = null;
         ImageTree dwtTree = null;
         ImageTree p = null;
-        Signature sig = null;
         Pixel pixel1 = null;
         Pixel pixel2 = null;
         Pixel pixel3 = null;
-        int[][] luminance = null;
+        PixelPlanes luminance = null;
         int cols = 0;
         int rows = 0;
         // int n = 0;
@@ -202,12 +259,14 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
 
         cols = image.getImage().getWidth();
         rows = image.getImage().getHeight();
-        luminance = ImageUtil.getYuvFromImage(image.getImage()).get(0);
-        sig = new Signature(origSigData);
-
+        luminance = ImageUtil.getLuminancePlaneFromImage(image.getImage(), config.isLegacyColorConversion());
         // Wavelet transform
         dwt = new DWT(cols, rows, sig.filterID, sig.embeddingLevel, sig.waveletFilterMethod);
-        dwtTree = dwt.forwardDWT(luminance);
+        dwt.setPool(DWTUtil.getPool(config.getDwtThreads()));
+        dwt.setWorkspace(DWTWorkspace.getThreadInstance());
+        dwt.setSinglePrecision(config.isDwtSinglePrecision());
+        dwt.setStreaming(config.isDwtStreaming());
+        dwtTree = dwt.forwardDWT(luminance, 0);
 
         p = dwtTree;
         // Consider each resolution level
@@ -240,23 +299,22 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
                 // n++;
             }
         }
-        sig.setWatermark(convertBitListToByteArray(sigBitList));
-
-        return sig.getSigData();
+        return convertBitListToByteArray(sigBitList);
     }
 
     /**
      * Method to generate the signature data
      *
+     * @param config Configuration data to be used for this call
      * @return Signature data
      * @throws OpenStegoException
      */
     @Override
-    public byte[] generateSignature() throws OpenStegoException {
+    public byte[] generateSignature(OpenStegoConfig config) throws OpenStegoException {
         Random rand = null;
         Signature sig = null;
 
-        rand = new Random(StringUtil.passwordHash(this.config.getPassword()));
+        rand = new Random(StringUtil.passwordHash(config.getPassword()));
         sig = new Signature(rand);
 
         return sig.getSigData();
@@ -272,19 +330,28 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
      */
     @Override
     public double getWatermarkCorrelation(byte[] origSigData, byte[] watermarkData) throws OpenStegoException {
+        return getCorrelation(new Signature(origSigData).watermark, new Signature(watermarkData).watermark);
+    }
+
+    /**
+     * Method to get the correlation between the original watermark and the extracted watermark
+     *
+     * @param origWatermark Original watermark
+     * @param watermark Extracted watermark
+     * @return Correlation
+     */
+    private double getCorrelation(byte[] origWatermark, byte[] watermark) {
         int corr = 0;
-        Signature orig = new Signature(origSigData);
-        Signature wm = new Signature(watermarkData);
 
-        for (int i = 0; i < (wm.watermarkLength * 8); i++) {
-            if (getWatermarkBit(orig.watermark, i % (orig.watermarkLength * 8)) == getWatermarkBit(wm.watermark, i)) {
+        for (int i = 0; i < (watermark.length * 8); i++) {
+            if (getWatermarkBit(origWatermark, i % (origWatermark.length * 8)) == getWatermarkBit(watermark, i)) {
                 corr++;
             } else {
                 corr--;
             }
         }
 
-        return 0.5 + ((double) corr / (double) (wm.watermarkLength * 8)) / 2;
+        return 0.5 + ((double) corr / (double) (watermark.length * 8)) / 2;
     }
 
     /**
@@ -394,6 +461,27 @@ public class DWTXiePlugin extends WMImagePluginTemplate {
         pixel2.value = tmpPixVal;
     }
 
+    /**
+     * Signature which also holds the parsed signature data
+     */
+    private class ParsedSignature extends WatermarkSignature {
+        /**
+         * Parsed signature data
+         */
+        private Signature sig = null;
+
+        /**
+         * Default constructor
+         *
+         * @param sigData Signature data
+         * @throws OpenStegoException
+         */
+        public ParsedSignature(byte[] sigData) throws OpenStegoException {
+            super(sigData);
+            this.sig = new Signature(sigData);
+        }
+    }
+
     /**
      * Private class for the data structure required for the signature
      */
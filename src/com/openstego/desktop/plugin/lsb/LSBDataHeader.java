@@ -29,6 +29,12 @@ public class LSBDataHeader {
      */
     public static final byte[] HEADER_VERSION = new byte[] { (byte) 2 };
 
+    /**
+     * Header version for data which is embedded at positions given by a keyed permutation of the bit positions of the
+     * image (used by RandomLSB plugin)
+     */
+    public static final byte[] HEADER_VERSION_PERMUTED = new byte[] { (byte) 3 };
+
     /**
      * Length of the fixed portion of the header
      */
@@ -55,9 +61,24 @@ public class LSBDataHeader {
     private byte[] fileName = null;
 
     /**
-     * OpenStegoConfig instance to hold the configuration data
+     * Version of the header
+     */
+    private byte[] version = HEADER_VERSION;
+
+    /**
+     * Flag to indicate whether the data is compressed or not
      */
-    private OpenStegoConfig config = null;
+    private boolean useCompression = false;
+
+    /**
+     * Flag to indicate whether the data is encrypted or not
+     */
+    private boolean useEncryption = false;
+
+    /**
+     * Algorithm used to encrypt the data
+     */
+    private String encryptionAlgorithm = null;
 
     /**
      * This constructor should normally be used when writing the data.
@@ -65,12 +86,28 @@ public class LSBDataHeader {
      * @param dataLength Length of the data embedded in the image (excluding the header data)
      * @param channelBitsUsed Number of bits used per color channel for embedding the data
      * @param fileName Name of the file of data being embedded
-     * @param config OpenStegoConfig instance to hold the configuration data
+     * @param config Configuration data which gives the compression and encryption details of the data
      */
     public LSBDataHeader(int dataLength, int channelBitsUsed, String fileName, OpenStegoConfig config) {
+        this(dataLength, channelBitsUsed, fileName, config, HEADER_VERSION);
+    }
+
+    /**
+     * This constructor should be used when writing the data with a specific header version.
+     *
+     * @param dataLength Length of the data embedded in the image (excluding the header data)
+     * @param channelBitsUsed Number of bits used per color channel for embedding the data
+     * @param fileName Name of the file of data being embedded
+     * @param config Configuration data which gives the compression and encryption details of the data
+     * @param version Header version ({@link #HEADER_VERSION} or {@link #HEADER_VERSION_PERMUTED})
+     */
+    public LSBDataHeader(int dataLength, int channelBitsUsed, String fileName, OpenStegoConfig config, byte[] version) {
+        this.version = version;
         this.dataLength = dataLength;
         this.channelBitsUsed = channelBitsUsed;
-        this.config = config;
+        this.useCompression = config.isUseCompression();
+        this.useEncryption = config.isUseEncryption();
+        this.encryptionAlgorithm = config.getEncryptionAlgorithm();
 
         if (fileName == null) {
             this.fileName = new byte[0];
@@ -84,13 +121,14 @@ public class LSBDataHeader {
     }
 
     /**
-     * This constructor should be used when reading embedded data from an InputStream.
+     * This constructor should be used when reading embedded data from an InputStream. The compression and encryption
+     * details are read into the header itself, and can be got using {@link #isUseCompression()},
+     * {@link #isUseEncryption()} and {@link #getEncryptionAlgorithm()}
      *
      * @param dataInStream Data input stream containing the embedded data
-     * @param config OpenStegoConfig instance to hold the configuration data
      * @throws OpenStegoException
      */
-    public LSBDataHeader(InputStream dataInStream, OpenStegoConfig config) throws OpenStegoException {
+    public LSBDataHeader(InputStream dataInStream) throws OpenStegoException {
         int stampLen = 0;
         int versionLen = 0;
         int fileNameLen = 0;
@@ -114,7 +152,11 @@ public class LSBDataHeader {
             }
 
             dataInStream.read(version, 0, versionLen);
-            if (!(new String(version)).equals(new String(HEADER_VERSION))) {
+            if ((new String(version)).equals(new String(HEADER_VERSION))) {
+                this.version = HEADER_VERSION;
+            } else if ((new String(version)).equals(new String(HEADER_VERSION_PERMUTED))) {
+                this.version = HEADER_VERSION_PERMUTED;
+            } else {
                 throw new OpenStegoException(null, LSBPlugin.NAMESPACE, LSBErrors.INVALID_HEADER_VERSION);
             }
 
@@ -123,11 +165,11 @@ public class LSBDataHeader {
                     + (CommonUtil.byteToInt(header[3]) << 32));
             channelBits = header[4];
             fileNameLen = header[5];
-            config.setUseCompression(header[6] == 1);
-            config.setUseEncryption(header[7] == 1);
+            this.useCompression = (header[6] == 1);
+            this.useEncryption = (header[7] == 1);
 
             dataInStream.read(cryptAlgo, 0, CRYPT_ALGO_LENGTH);
-            config.setEncryptionAlgorithm(new String(cryptAlgo).trim());
+            this.encryptionAlgorithm = new String(cryptAlgo).trim();
 
             if (fileNameLen == 0) {
                 this.fileName = new byte[0];
@@ -142,7 +184,6 @@ public class LSBDataHeader {
         }
 
         this.channelBitsUsed = channelBits;
-        this.config = config;
     }
 
     /**
@@ -163,7 +204,7 @@ public class LSBDataHeader {
         System.arraycopy(DATA_STAMP, 0, out, currIndex, stampLen);
         currIndex += stampLen;
 
-        System.arraycopy(HEADER_VERSION, 0, out, currIndex, versionLen);
+        System.arraycopy(this.version, 0, out, currIndex, versionLen);
         currIndex += versionLen;
 
         out[currIndex++] = (byte) ((this.dataLength & 0x000000FF));
@@ -172,12 +213,11 @@ public class LSBDataHeader {
         out[currIndex++] = (byte) ((this.dataLength & 0xFF000000) >> 32);
         out[currIndex++] = (byte) this.channelBitsUsed;
         out[currIndex++] = (byte) this.fileName.length;
-        out[currIndex++] = (byte) (this.config.isUseCompression() ? 1 : 0);
-        out[currIndex++] = (byte) (this.config.isUseEncryption() ? 1 : 0);
+        out[currIndex++] = (byte) (this.useCompression ? 1 : 0);
+        out[currIndex++] = (byte) (this.useEncryption ? 1 : 0);
 
-        if (this.config.getEncryptionAlgorithm() != null) {
-            System.arraycopy(this.config.getEncryptionAlgorithm().getBytes(), 0, out, currIndex,
-                this.config.getEncryptionAlgorithm().getBytes().length);
+        if (this.encryptionAlgorithm != null) {
+            System.arraycopy(this.encryptionAlgorithm.getBytes(), 0, out, currIndex, this.encryptionAlgorithm.getBytes().length);
         }
         currIndex += CRYPT_ALGO_LENGTH;
 
@@ -207,6 +247,15 @@ public class LSBDataHeader {
         this.channelBitsUsed = channelBitsUsed;
     }
 
+    /**
+     * Get Method for version
+     *
+     * @return version
+     */
+    public byte[] getVersion() {
+        return this.version;
+    }
+
     /**
      * Get Method for dataLength
      *
@@ -232,6 +281,33 @@ public class LSBDataHeader {
         return name;
     }
 
+    /**
+     * Get Method for useCompression
+     *
+     * @return useCompression
+     */
+    public boolean isUseCompression() {
+        return this.useCompression;
+    }
+
+    /**
+     * Get Method for useEncryption
+     *
+     * @return useEncryption
+     */
+    public boolean isUseEncryption() {
+        return this.useEncryption;
+    }
+
+    /**
+     * Get Method for encryptionAlgorithm
+     *
+     * @return encryptionAlgorithm
+     */
+    public String getEncryptionAlgorithm() {
+        return this.encryptionAlgorithm;
+    }
+
     /**
      * Method to get size of the current header
      *
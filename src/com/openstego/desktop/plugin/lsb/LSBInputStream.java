@@ -8,10 +8,12 @@ package com.openstego.desktop.plugin.lsb;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
 import com.openstego.desktop.util.ImageHolder;
+import com.openstego.desktop.util.ImageUtil;
 
 /**
  * InputStream to read embedded data from image file using LSB algorithm
@@ -43,9 +45,30 @@ public class LSBInputStream extends InputStream {
     private int y = 0;
 
     /**
-     * Current bit number to be read
+     * Bits of the current pixel which are yet to be read. Bits are held in the order in which they need to be read,
+     * i.e. the next bit to be read is at position <code>(bitsLeft - 1)</code>
      */
-    private int currBit = 0;
+    private int bitSet = 0;
+
+    /**
+     * Number of bits of the current pixel which are yet to be read
+     */
+    private int bitsLeft = 0;
+
+    /**
+     * Mask for the bits used in a single color channel
+     */
+    private int channelMask = 1;
+
+    /**
+     * Buffer holding the RGB values of the current row of the image
+     */
+    private int[] rowBuffer = null;
+
+    /**
+     * Row of the image which is currently loaded in the row buffer
+     */
+    private int bufferedRow = -1;
 
     /**
      * Width of the image
@@ -75,11 +98,12 @@ public class LSBInputStream extends InputStream {
         }
 
         this.image = image;
-        this.channelBitsUsed = 1;
         this.config = config;
 
         this.imgWidth = image.getImage().getWidth();
         this.imgHeight = image.getImage().getHeight();
+        this.rowBuffer = new int[this.imgWidth];
+        setChannelBitsUsed(1);
         readHeader();
     }
 
@@ -89,11 +113,17 @@ public class LSBInputStream extends InputStream {
      * @throws OpenStegoException
      */
     private void readHeader() throws OpenStegoException {
-        this.dataHeader = new LSBDataHeader(this, this.config);
-        this.channelBitsUsed = this.dataHeader.getChannelBitsUsed();
+        this.dataHeader = new LSBDataHeader(this);
+        if (!Arrays.equals(this.dataHeader.getVersion(), LSBDataHeader.HEADER_VERSION)) {
+            throw new OpenStegoException(null, LSBPlugin.NAMESPACE, LSBErrors.INVALID_HEADER_VERSION);
+        }
+        if (this.dataHeader.getChannelBitsUsed() < 1 || this.dataHeader.getChannelBitsUsed() > 8) {
+            throw new OpenStegoException(null, LSBPlugin.NAMESPACE, LSBErrors.INVALID_STEGO_HEADER);
+        }
+        setChannelBitsUsed(this.dataHeader.getChannelBitsUsed());
 
-        if (this.currBit != 0) {
-            this.currBit = 0;
+        if (this.bitsLeft != 0) {
+            this.bitsLeft = 0;
             this.x++;
             if (this.x == this.imgWidth) {
                 this.x = 0;
@@ -110,20 +140,75 @@ public class LSBInputStream extends InputStream {
      */
     @Override
     public int read() throws IOException {
-        int pixel = 0;
-        byte[] bitSet = new byte[8];
-
         if (this.y == this.imgHeight) {
             return -1;
         }
+        return readByte();
+    }
 
-        for (int i = 0; i < bitSet.length; i++) {
-            pixel = this.image.getImage().getRGB(this.x, this.y);
-            bitSet[i] = getCurrBitFromPixel(pixel);
+    /**
+     * Implementation of <code>InputStream.read(byte[], int, int)</code> method. Reads the bytes in bulk from the image
+     * rows, without going through {@link #read()} for every byte
+     *
+     * @param data Buffer into which the data is read
+     * @param off Start offset in the buffer
+     * @param len Maximum number of bytes to read
+     * @return Number of bytes read, or -1 if end of the stream is reached
+     * @throws IOException
+     */
+    @Override
+    public int read(byte[] data, int off, int len) throws IOException {
+        int value = 0;
+        int count = 0;
+
+        if (off < 0 || len < 0 || off + len > data.length) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+
+        while (count < len && this.y != this.imgHeight) {
+            value = readByte();
+            if (value == -1) {
+                break;
+            }
+            data[off + count] = (byte) value;
+            count++;
+        }
+        return (count == 0) ? -1 : count;
+    }
 
-            this.currBit++;
-            if (this.currBit == (3 * this.channelBitsUsed)) {
-                this.currBit = 0;
+    /**
+     * Get method for dataHeader
+     *
+     * @return Data header
+     */
+    public LSBDataHeader getDataHeader() {
+        return this.dataHeader;
+    }
+
+    /**
+     * Method to read the next byte from the image. The bits are taken in chunks from the current pixel instead of one
+     * at a time. Returns -1 if the image gets exhausted while reading the byte
+     *
+     * @return Byte read from the image
+     */
+    private int readByte() {
+        int value = 0;
+        int needed = 8;
+        int take = 0;
+
+        while (needed > 0) {
+            if (this.bitsLeft == 0) {
+                loadPixel();
+            }
+
+            take = (needed < this.bitsLeft) ? needed : this.bitsLeft;
+            value = (value << take) | ((this.bitSet >> (this.bitsLeft - take)) & ((1 << take) - 1));
+            this.bitsLeft -= take;
+            needed -= take;
+
+            if (this.bitsLeft == 0) {
                 this.x++;
                 if (this.x == this.imgWidth) {
                     this.x = 0;
@@ -134,32 +219,33 @@ public class LSBInputStream extends InputStream {
                 }
             }
         }
-        return ((bitSet[0] << 7) + (bitSet[1] << 6) + (bitSet[2] << 5) + (bitSet[3] << 4) + (bitSet[4] << 3) + (bitSet[5] << 2) + (bitSet[6] << 1)
-                + (bitSet[7] << 0));
+        return value;
     }
 
     /**
-     * Get method for dataHeader
-     *
-     * @return Data header
+     * Method to load the bits of the current pixel into the bit set. The image is read a row at a time
      */
-    public LSBDataHeader getDataHeader() {
-        return this.dataHeader;
+    private void loadPixel() {
+        int pixel = 0;
+
+        if (this.bufferedRow != this.y) {
+            ImageUtil.getRgbRows(this.image.getImage(), this.y, 1, this.rowBuffer, 0);
+            this.bufferedRow = this.y;
+        }
+
+        pixel = this.rowBuffer[this.x];
+        this.bitSet = (((pixel >> 16) & this.channelMask) << (2 * this.channelBitsUsed)) | (((pixel >> 8) & this.channelMask) << this.channelBitsUsed)
+                | (pixel & this.channelMask);
+        this.bitsLeft = 3 * this.channelBitsUsed;
     }
 
     /**
-     * Gets the bit from pixel based on the current bit
+     * Method to set the number of bits used per color channel, and precompute the mask based on it
      *
-     * @param pixel
-     * @return Bit
+     * @param channelBitsUsed Number of bits used per color channel
      */
-    private byte getCurrBitFromPixel(int pixel) {
-        int group = 0;
-        int groupBit = 0;
-
-        group = this.currBit / this.channelBitsUsed;
-        groupBit = this.currBit % this.channelBitsUsed;
-
-        return (byte) (((pixel >> (16 - (group * 8))) >> (this.channelBitsUsed - groupBit - 1)) & 1);
+    private void setChannelBitsUsed(int channelBitsUsed) {
+        this.channelBitsUsed = channelBitsUsed;
+        this.channelMask = (1 << channelBitsUsed) - 1;
     }
 }
@@ -13,6 +13,7 @@ import java.io.OutputStream;
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
 import com.openstego.desktop.util.ImageHolder;
+import com.openstego.desktop.util.ImageUtil;
 import com.openstego.desktop.util.LabelUtil;
 
 /**
@@ -45,14 +46,24 @@ public class LSBOutputStream extends OutputStream {
     private String fileName = null;
 
     /**
-     * Current x co-ordinate
+     * Data header written to the image
      */
-    private int x = 0;
+    private LSBDataHeader header = null;
 
     /**
-     * Current y co-ordinate
+     * Number of data bytes written so far (excluding the header)
      */
-    private int y = 0;
+    private int bytesWritten = 0;
+
+    /**
+     * Backing pixel array of the output image (row by row)
+     */
+    private int[] pixels = null;
+
+    /**
+     * Index of the current pixel in the pixel array
+     */
+    private int pixelIndex = 0;
 
     /**
      * Current bit number to be read
@@ -60,9 +71,30 @@ public class LSBOutputStream extends OutputStream {
     private int currBit = 0;
 
     /**
-     * Bit set to store three bits per pixel
+     * Bit set to store three bits per pixel. Bit number <code>i</code> of the set is held at position
+     * <code>(bitSetSize - 1 - i)</code>, so that the set can be split directly into R, G and B channel bits
+     */
+    private int bitSet = 0;
+
+    /**
+     * Number of bits in the bit set (three times the number of bits used per channel)
+     */
+    private int bitSetSize = 3;
+
+    /**
+     * Mask for the bits used in a single color channel
+     */
+    private int channelMask = 1;
+
+    /**
+     * Mask for the bits used across all the color channels of a pixel
      */
-    private byte[] bitSet = null;
+    private int pixelMask = 0x010101;
+
+    /**
+     * Total number of pixels in the image
+     */
+    private int noOfPixels = 0;
 
     /**
      * Width of the image
@@ -83,7 +115,9 @@ public class LSBOutputStream extends OutputStream {
      * Default constructor
      *
      * @param image Source image into which data will be embedded
-     * @param dataLength Length of the data that would be written to the image
+     * @param dataLength Length of the data that would be written to the image. If the length is not known in advance,
+     *        an upper limit can be given instead: the header is then rewritten with the actual length when the stream
+     *        is closed
      * @param fileName Name of the source data file
      * @param config Configuration data to use while writing
      * @throws OpenStegoException
@@ -97,17 +131,13 @@ public class LSBOutputStream extends OutputStream {
         this.imgWidth = image.getImage().getWidth();
         this.imgHeight = image.getImage().getHeight();
         this.config = config;
-        BufferedImage newImg = new BufferedImage(this.imgWidth, this.imgHeight, BufferedImage.TYPE_INT_RGB);
+        this.noOfPixels = this.imgWidth * this.imgHeight;
+        BufferedImage newImg = ImageUtil.copyToIntRgb(image.getImage());
         this.image = new ImageHolder(newImg, image.getMetadata());
-        for (int x = 0; x < this.imgWidth; x++) {
-            for (int y = 0; y < this.imgHeight; y++) {
-                newImg.setRGB(x, y, image.getImage().getRGB(x, y));
-            }
-        }
+        this.pixels = ImageUtil.getIntRgbData(newImg);
 
-        this.channelBitsUsed = 1;
         this.fileName = fileName;
-        this.bitSet = new byte[3];
+        setChannelBitsUsed(1);
         writeHeader();
     }
 
@@ -118,17 +148,14 @@ public class LSBOutputStream extends OutputStream {
      */
     private void writeHeader() throws OpenStegoException {
         int channelBits = 1;
-        int noOfPixels = 0;
         int headerSize = 0;
-        LSBDataHeader header = null;
 
         try {
-            noOfPixels = this.imgWidth * this.imgHeight;
-            header = new LSBDataHeader(this.dataLength, channelBits, this.fileName, this.config);
-            headerSize = header.getHeaderSize();
+            this.header = new LSBDataHeader(this.dataLength, channelBits, this.fileName, this.config);
+            headerSize = this.header.getHeaderSize();
 
             while (true) {
-                if ((noOfPixels * 3 * channelBits) / 8.0 < (headerSize + this.dataLength)) {
+                if ((this.noOfPixels * 3 * channelBits) / 8.0 < (headerSize + this.dataLength)) {
                     channelBits++;
                     if (channelBits > ((LSBConfig) this.config).getMaxBitsUsedPerChannel()) {
                         throw new OpenStegoException(null, LSBPlugin.NAMESPACE, LSBErrors.IMAGE_SIZE_INSUFFICIENT);
@@ -139,17 +166,12 @@ public class LSBOutputStream extends OutputStream {
             }
 
             // Update channelBitsUsed in the header, and write to image
-            header.setChannelBitsUsed(channelBits);
-            write(header.getHeaderData());
+            this.header.setChannelBitsUsed(channelBits);
+            writeHeaderData();
 
-            if (this.currBit != 0) {
-                this.currBit = 0;
-                writeCurrentBitSet();
-                nextPixel();
-            }
-
-            this.channelBitsUsed = channelBits;
-            this.bitSet = new byte[3 * channelBits];
+            setChannelBitsUsed(channelBits);
+            this.bitSet = 0;
+            this.bytesWritten = 0;
         } catch (OpenStegoException osEx) {
             throw osEx;
         } catch (Exception ex) {
@@ -157,6 +179,47 @@ public class LSBOutputStream extends OutputStream {
         }
     }
 
+    /**
+     * Method to write the header data to the image, starting at the current pixel with one bit used per channel
+     *
+     * @throws IOException
+     */
+    private void writeHeaderData() throws IOException {
+        write(this.header.getHeaderData());
+
+        if (this.currBit != 0) {
+            this.currBit = 0;
+            writeCurrentBitSet();
+            nextPixel();
+        }
+    }
+
+    /**
+     * Method to rewrite the header with a new data length, once all the data is written. The number of bits used per
+     * channel stays the same, so the header takes the same pixels as before
+     *
+     * @param dataLength New length of the data
+     * @throws IOException
+     */
+    private void rewriteHeader(int dataLength) throws IOException {
+        int pixelIndex = this.pixelIndex;
+        int channelBits = this.channelBitsUsed;
+
+        this.dataLength = dataLength;
+        this.header = new LSBDataHeader(dataLength, channelBits, this.fileName, this.config);
+
+        this.pixelIndex = 0;
+        this.currBit = 0;
+        this.bitSet = 0;
+        setChannelBitsUsed(1);
+        writeHeaderData();
+
+        setChannelBitsUsed(channelBits);
+        this.pixelIndex = pixelIndex;
+        this.bitSet = 0;
+        this.bytesWritten = dataLength;
+    }
+
     /**
      * Implementation of <code>OutputStream.write(int)</code> method
      *
@@ -165,10 +228,56 @@ public class LSBOutputStream extends OutputStream {
      */
     @Override
     public void write(int data) throws IOException {
-        for (int bit = 0; bit < 8; bit++) {
-            this.bitSet[this.currBit] = (byte) ((data >> (7 - bit)) & 1);
-            this.currBit++;
-            if (this.currBit == this.bitSet.length) {
+        writeByte(data);
+        this.bytesWritten++;
+    }
+
+    /**
+     * Implementation of <code>OutputStream.write(byte[], int, int)</code> method. Writes the bytes in bulk directly
+     * into the pixel array
+     *
+     * @param data Bytes to be written
+     * @param off Start offset in the data
+     * @param len Number of bytes to write
+     * @throws IOException
+     */
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        for (int i = off; i < off + len; i++) {
+            writeByte(data[i]);
+        }
+        this.bytesWritten += len;
+    }
+
+    /**
+     * Method to write one byte into the bit set, writing the bit set into the image whenever it gets full. The byte
+     * is split into as few chunks as possible instead of being written bit by bit
+     *
+     * @param data Byte to be written
+     * @throws IOException
+     */
+    private void writeByte(int data) throws IOException {
+        int remaining = 8;
+        int take = 0;
+        int shift = 0;
+        int mask = 0;
+
+        while (remaining > 0) {
+            take = this.bitSetSize - this.currBit;
+            if (take > remaining) {
+                take = remaining;
+            }
+            shift = this.bitSetSize - this.currBit - take;
+            mask = ((1 << take) - 1) << shift;
+            this.bitSet = (this.bitSet & ~mask) | ((((data >> (remaining - take)) & ((1 << take) - 1)) << shift));
+
+            remaining -= take;
+            this.currBit += take;
+            if (this.currBit == this.bitSetSize) {
                 this.currBit = 0;
                 writeCurrentBitSet();
                 nextPixel();
@@ -187,20 +296,22 @@ public class LSBOutputStream extends OutputStream {
     }
 
     /**
-     * Closes the stream
+     * Closes the stream. If the number of bytes written differs from the data length given to the constructor, then
+     * the header is rewritten with the actual length
      *
      * @throws IOException
      */
     @Override
     public void close() throws IOException {
         if (this.currBit != 0) {
-            for (int i = this.currBit; i < this.bitSet.length; i++) {
-                this.bitSet[i] = 0;
-            }
+            this.bitSet &= ~((1 << (this.bitSetSize - this.currBit)) - 1);
             this.currBit = 0;
             writeCurrentBitSet();
             nextPixel();
         }
+        if (this.bytesWritten != this.dataLength) {
+            rewriteHeader(this.bytesWritten);
+        }
         super.close();
     }
 
@@ -225,38 +336,33 @@ public class LSBOutputStream extends OutputStream {
      * @throws IOException
      */
     private void writeCurrentBitSet() throws IOException {
-        int pixel = 0;
         int offset = 0;
-        int mask = 0;
-        int maskPerByte = 0;
-        int bitOffset = 0;
 
-        if (this.y == this.imgHeight) {
+        if (this.pixelIndex == this.noOfPixels) {
             throw new IOException(labelUtil.getString("err.image.insufficientSize"));
         }
 
-        maskPerByte = (int) (Math.pow(2, this.channelBitsUsed) - 1);
-        mask = (maskPerByte << 16) + (maskPerByte << 8) + maskPerByte;
-        pixel = this.image.getImage().getRGB(this.x, this.y) & (0xFFFFFFFF - mask);
-
-        for (int bit = 0; bit < 3; bit++) {
-            bitOffset = 0;
-            for (int i = 0; i < this.channelBitsUsed; i++) {
-                bitOffset = (bitOffset << 1) + this.bitSet[(bit * this.channelBitsUsed) + i];
-            }
-            offset = (offset << 8) + bitOffset;
-        }
-        this.image.getImage().setRGB(this.x, this.y, pixel + offset);
+        offset = (((this.bitSet >> (2 * this.channelBitsUsed)) & this.channelMask) << 16)
+                | (((this.bitSet >> this.channelBitsUsed) & this.channelMask) << 8) | (this.bitSet & this.channelMask);
+        this.pixels[this.pixelIndex] = (this.pixels[this.pixelIndex] & ~this.pixelMask) | offset;
     }
 
     /**
      * Method to move on to next pixel
      */
     private void nextPixel() {
-        this.x++;
-        if (this.x == this.imgWidth) {
-            this.x = 0;
-            this.y++;
-        }
+        this.pixelIndex++;
+    }
+
+    /**
+     * Method to set the number of bits used per color channel, and precompute the masks based on it
+     *
+     * @param channelBitsUsed Number of bits used per color channel
+     */
+    private void setChannelBitsUsed(int channelBitsUsed) {
+        this.channelBitsUsed = channelBitsUsed;
+        this.bitSetSize = 3 * channelBitsUsed;
+        this.channelMask = (1 << channelBitsUsed) - 1;
+        this.pixelMask = (this.channelMask << 16) | (this.channelMask << 8) | this.channelMask;
     }
 }
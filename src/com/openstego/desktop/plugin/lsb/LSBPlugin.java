@@ -14,6 +14,8 @@ import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 
+import com.openstego.desktop.ExtractedMessage;
+import com.openstego.desktop.MessageSource;
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
 import com.openstego.desktop.plugin.template.image.DHImagePluginTemplate;
@@ -22,6 +24,7 @@ import com.openstego.desktop.ui.PluginEmbedOptionsUI;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
 import com.openstego.desktop.util.LabelUtil;
+import com.openstego.desktop.util.LimitedInputStream;
 import com.openstego.desktop.util.cmd.CmdLineOption;
 import com.openstego.desktop.util.cmd.CmdLineOptions;
 
@@ -76,11 +79,13 @@ public class LSBPlugin extends DHImagePluginTemplate {
      * @param cover Cover data into which message needs to be embedded
      * @param coverFileName Name of the cover file
      * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
      * @return Stego data containing the message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName) throws OpenStegoException {
+    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName, OpenStegoConfig config)
+            throws OpenStegoException {
         int numOfPixels = 0;
         ImageHolder image = null;
         LSBOutputStream lsbOS = null;
@@ -89,12 +94,12 @@ public class LSBPlugin extends DHImagePluginTemplate {
             // Generate random image, if input image is not provided
             if (cover == null) {
                 numOfPixels = (int) (LSBDataHeader.getMaxHeaderSize() * 8 / 3.0);
-                numOfPixels += (int) (msg.length * 8 / (3.0 * ((LSBConfig) this.config).getMaxBitsUsedPerChannel()));
+                numOfPixels += (int) (msg.length * 8 / (3.0 * ((LSBConfig) config).getMaxBitsUsedPerChannel()));
                 image = ImageUtil.generateRandomImage(numOfPixels);
             } else {
                 image = ImageUtil.byteArrayToImage(cover, coverFileName);
             }
-            lsbOS = new LSBOutputStream(image, msg.length, msgFileName, this.config);
+            lsbOS = new LSBOutputStream(image, msg.length, msgFileName, config);
             lsbOS.write(msg);
             lsbOS.close();
 
@@ -104,20 +109,71 @@ public class LSBPlugin extends DHImagePluginTemplate {
         }
     }
 
+    /**
+     * Method to embed a message which is written directly to the image by the given source. The header is written
+     * with the maximum length of the message, and rewritten with the actual length once the message is written. If
+     * the maximum length does not fit in the image, then the message is collected into a byte array first, as it may
+     * still fit once compressed
+     *
+     * @param msg Source of the message to be embedded
+     * @param msgFileName Name of the message file. If this value is provided, then the filename should be
+     *        embedded in the cover data
+     * @param cover Cover data into which message needs to be embedded
+     * @param coverFileName Name of the cover file
+     * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
+     * @return Stego data containing the message
+     * @throws OpenStegoException
+     */
+    @Override
+    public byte[] embedMessage(MessageSource msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName,
+            OpenStegoConfig config) throws OpenStegoException {
+        int numOfPixels = 0;
+        ImageHolder image = null;
+        LSBOutputStream lsbOS = null;
+
+        try {
+            // Generate random image, if input image is not provided
+            if (cover == null) {
+                numOfPixels = (int) (LSBDataHeader.getMaxHeaderSize() * 8 / 3.0);
+                numOfPixels += (int) (msg.getMaxLength() * 8 / (3.0 * ((LSBConfig) config).getMaxBitsUsedPerChannel()));
+                image = ImageUtil.generateRandomImage(numOfPixels);
+            } else {
+                image = ImageUtil.byteArrayToImage(cover, coverFileName);
+            }
+
+            try {
+                lsbOS = new LSBOutputStream(image, msg.getMaxLength(), msgFileName, config);
+            } catch (OpenStegoException osEx) {
+                if (LSBPlugin.NAMESPACE.equals(osEx.getNamespace()) && osEx.getErrorCode() == LSBErrors.IMAGE_SIZE_INSUFFICIENT) {
+                    return embedBuffered(msg, msgFileName, cover, coverFileName, stegoFileName, config);
+                }
+                throw osEx;
+            }
+            msg.writeTo(lsbOS);
+            lsbOS.close();
+
+            return ImageUtil.imageToByteArray(lsbOS.getImage(), stegoFileName, this);
+        } catch (IOException ioEx) {
+            throw new OpenStegoException(ioEx);
+        }
+    }
+
     /**
      * Method to extract the message file name from the stego data
      *
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
      * @return Message file name
      * @throws OpenStegoException
      */
     @Override
-    public String extractMsgFileName(byte[] stegoData, String stegoFileName) throws OpenStegoException {
+    public String extractMsgFileName(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
         LSBInputStream lsbIS = null;
 
         try {
-            lsbIS = new LSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), this.config);
+            lsbIS = new LSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), config);
             return lsbIS.getDataHeader().getFileName();
         } finally {
             if (lsbIS != null) {
@@ -136,18 +192,34 @@ public class LSBPlugin extends DHImagePluginTemplate {
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
      * @param origSigData Optional signature data file for watermark
+     * @param config Configuration data to be used for this call
      * @return Extracted message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException {
+    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData, OpenStegoConfig config) throws OpenStegoException {
+        return extractMessage(stegoData, stegoFileName, config).getData();
+    }
+
+    /**
+     * Method to extract the message file name and the message from the stego data together. The stego image is
+     * decoded only once, and the header is read only once
+     *
+     * @param stegoData Stego data containing the message
+     * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
+     * @return Extracted message with the details from its header
+     * @throws OpenStegoException
+     */
+    @Override
+    public ExtractedMessage extractMessage(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
         int bytesRead = 0;
         byte[] data = null;
         LSBDataHeader header = null;
         LSBInputStream lsbIS = null;
 
         try {
-            lsbIS = new LSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), this.config);
+            lsbIS = new LSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), config);
             header = lsbIS.getDataHeader();
             data = new byte[header.getDataLength()];
 
@@ -156,7 +228,8 @@ public class LSBPlugin extends DHImagePluginTemplate {
                 throw new OpenStegoException(null, NAMESPACE, LSBErrors.ERR_IMAGE_DATA_READ);
             }
 
-            return data;
+            return new ExtractedMessage(header.getFileName(), data, header.isUseCompression(), header.isUseEncryption(),
+                    header.getEncryptionAlgorithm());
         } catch (OpenStegoException osEx) {
             throw osEx;
         } catch (Exception ex) {
@@ -172,6 +245,29 @@ public class LSBPlugin extends DHImagePluginTemplate {
         }
     }
 
+    /**
+     * Method to extract the message file name from the stego data, and open the message for reading as a stream. The
+     * stego image is decoded and the header is read, but the message bits are read from the image only as the stream
+     * is read
+     *
+     * @param stegoData Stego data containing the message
+     * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
+     * @return Extracted message with the details from its header, to be read using {@link ExtractedMessage#getStream()}
+     * @throws OpenStegoException
+     */
+    @Override
+    public ExtractedMessage extractMessageStream(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
+        LSBDataHeader header = null;
+        LSBInputStream lsbIS = null;
+
+        lsbIS = new LSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), config);
+        header = lsbIS.getDataHeader();
+
+        return new ExtractedMessage(header.getFileName(), new LimitedInputStream(lsbIS, header.getDataLength()), header.getDataLength(),
+                header.isUseCompression(), header.isUseEncryption(), header.getEncryptionAlgorithm());
+    }
+
     /**
      * Method to get the list of supported file extensions for writing
      *
@@ -184,14 +280,14 @@ public class LSBPlugin extends DHImagePluginTemplate {
             return writeFormats;
         }
 
-        super.getWritableFileExtensions();
         String format = null;
         String[] compTypes = null;
         Iterator<ImageWriter> iter = null;
         ImageWriteParam writeParam = null;
+        List<String> formatList = getFormatList(ImageIO.getWriterFormatNames());
 
-        for (int i = writeFormats.size() - 1; i >= 0; i--) {
-            format = writeFormats.get(i);
+        for (int i = formatList.size() - 1; i >= 0; i--) {
+            format = formatList.get(i);
             iter = ImageIO.getImageWritersBySuffix(format);
             while (iter.hasNext()) {
                 writeParam = (iter.next()).getDefaultWriteParam();
@@ -210,17 +306,18 @@ public class LSBPlugin extends DHImagePluginTemplate {
                 if (writeParam.isCompressionLossless()) {
                     break;
                 }
-                writeFormats.remove(i);
+                formatList.remove(i);
             }
         }
 
         // Expicilty removing GIF and WBMP formats, as they use unsupported color models
-        writeFormats.remove("gif");
-        writeFormats.remove("wbmp");
+        formatList.remove("gif");
+        formatList.remove("wbmp");
         // Expicilty removing TIF(F) formats, as they are not working correctly - TODO check why
-        writeFormats.remove("tif");
-        writeFormats.remove("tiff");
+        formatList.remove("tif");
+        formatList.remove("tiff");
 
+        writeFormats = formatList;
         return writeFormats;
     }
 
@@ -0,0 +1,127 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.plugin.randlsb;
+
+import java.util.Random;
+
+/**
+ * Keyed pseudo-random permutation of the range <code>[0, size)</code>. It is implemented as a balanced Feistel network
+ * over the smallest even power of two covering the range, with cycle-walking to bring values back into the range.
+ * This allows the permuted value of any index to be computed in constant (expected) time, without storing the
+ * permutation
+ */
+public class KeyedPermutation {
+    /**
+     * Number of Feistel rounds
+     */
+    private static final int ROUNDS = 4;
+
+    /**
+     * Size of the range being permuted
+     */
+    private long size = 0;
+
+    /**
+     * Number of bits in each half of the Feistel block
+     */
+    private int halfBits = 0;
+
+    /**
+     * Mask for one half of the Feistel block
+     */
+    private long halfMask = 0;
+
+    /**
+     * Round keys
+     */
+    private long[] roundKeys = null;
+
+    /**
+     * Default constructor
+     *
+     * @param size Size of the range to be permuted
+     * @param seed Key for the permutation
+     */
+    public KeyedPermutation(long size, long seed) {
+        Random rand = new Random(seed);
+        int bits = 2;
+
+        this.size = size;
+        while ((1L << bits) < size) {
+            bits += 2;
+        }
+        this.halfBits = bits / 2;
+        this.halfMask = (1L << this.halfBits) - 1;
+
+        this.roundKeys = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            this.roundKeys[i] = rand.nextLong();
+        }
+    }
+
+    /**
+     * Get the permuted value for the given index
+     *
+     * @param index Index in the range <code>[0, size)</code>
+     * @return Permuted value in the range <code>[0, size)</code>
+     */
+    public long get(long index) {
+        long value = index;
+
+        do {
+            value = encrypt(value);
+        } while (value >= this.size);
+
+        return value;
+    }
+
+    /**
+     * Get method for size
+     *
+     * @return size
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Runs one pass of the Feistel network over the given value
+     *
+     * @param value Input value
+     * @return Encrypted value
+     */
+    private long encrypt(long value) {
+        long left = value >>> this.halfBits;
+        long right = value & this.halfMask;
+        long temp = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            temp = right;
+            right = left ^ (mix(right ^ this.roundKeys[i]) & this.halfMask);
+            left = temp;
+        }
+
+        return (left << this.halfBits) | right;
+    }
+
+    /**
+     * Round function for the Feistel network (64-bit finalizer of MurmurHash3)
+     *
+     * @param value Input value
+     * @return Mixed value
+     */
+    private static long mix(long value) {
+        long h = value;
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -8,6 +8,8 @@ package com.openstego.desktop.plugin.randlsb;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Random;
 
 import com.openstego.desktop.OpenStegoConfig;
@@ -53,15 +55,36 @@ public class RandomLSBInputStream extends InputStream {
     private OpenStegoConfig config = null;
 
     /**
-     * Array for bits in the image
+     * Bits in the image which are already read. Index of a bit is given by {@link #getBitIndex(int, int, int, int)}
      */
-    private boolean bitRead[][][][] = null;
+    private BitSet bitRead = null;
 
     /**
-     * Random number generator
+     * Flag to indicate whether the data is embedded using keyed permutation of bit positions (header version
+     * {@link LSBDataHeader#HEADER_VERSION_PERMUTED}) or using the older random sampling of bit positions
+     */
+    private boolean permuted = true;
+
+    /**
+     * Seed for the random number generator and bit permutations, generated using password
+     */
+    private long seed = 0;
+
+    /**
+     * Random number generator (used only for older stego data)
      */
     private Random rand = null;
 
+    /**
+     * Permutation of the bit positions to be used for reading
+     */
+    private KeyedPermutation permutation = null;
+
+    /**
+     * Index of the next position to be taken from the permutation
+     */
+    private long permutationIndex = 0;
+
     /**
      * Default constructor
      *
@@ -80,17 +103,9 @@ public class RandomLSBInputStream extends InputStream {
 
         this.imgWidth = image.getImage().getWidth();
         this.imgHeight = image.getImage().getHeight();
-        this.bitRead = new boolean[this.imgWidth][this.imgHeight][3][1];
-        for (int i = 0; i < this.imgWidth; i++) {
-            for (int j = 0; j < this.imgHeight; j++) {
-                this.bitRead[i][j][0][0] = false;
-                this.bitRead[i][j][1][0] = false;
-                this.bitRead[i][j][2][0] = false;
-            }
-        }
 
-        // Initialize random number generator with seed generated using password
-        this.rand = new Random(StringUtil.passwordHash(config.getPassword()));
+        // Initialize seed for random number generator and bit permutations using password
+        this.seed = StringUtil.passwordHash(config.getPassword());
         readHeader();
     }
 
@@ -100,30 +115,49 @@ public class RandomLSBInputStream extends InputStream {
      * @throws OpenStegoException
      */
     private void readHeader() throws OpenStegoException {
-        boolean[][][][] oldBitRead = null;
-        this.dataHeader = new LSBDataHeader(this, this.config);
-        this.channelBitsUsed = this.dataHeader.getChannelBitsUsed();
+        int noOfPixels = this.imgWidth * this.imgHeight;
 
-        // Re-initialize hit-check array based on read channelBitsUsed
-        if (this.channelBitsUsed > 1) {
-            oldBitRead = this.bitRead;
-            this.bitRead = new boolean[this.imgWidth][this.imgHeight][3][this.channelBitsUsed];
-
-            for (int i = 0; i < this.imgWidth; i++) {
-                for (int j = 0; j < this.imgHeight; j++) {
-                    // Maintain the current bit hits
-                    this.bitRead[i][j][0][0] = oldBitRead[i][j][0][0];
-                    this.bitRead[i][j][1][0] = oldBitRead[i][j][1][0];
-                    this.bitRead[i][j][2][0] = oldBitRead[i][j][2][0];
-
-                    for (int k = 1; k < this.channelBitsUsed; k++) {
-                        this.bitRead[i][j][0][k] = false;
-                        this.bitRead[i][j][1][k] = false;
-                        this.bitRead[i][j][2][k] = false;
-                    }
-                }
+        // Header is read using only the first bit of each channel. First try reading it as embedded using keyed
+        // permutation, and then fall back to random sampling used by older versions
+        try {
+            initReader(true, new KeyedPermutation(noOfPixels * 3L, this.seed));
+            this.dataHeader = new LSBDataHeader(this);
+        } catch (OpenStegoException osEx) {
+            if (osEx.getErrorCode() != LSBErrors.INVALID_STEGO_HEADER || !LSBPlugin.NAMESPACE.equals(osEx.getNamespace())) {
+                throw osEx;
             }
+            initReader(false, null);
+            this.dataHeader = new LSBDataHeader(this);
         }
+
+        if (!Arrays.equals(this.dataHeader.getVersion(), this.permuted ? LSBDataHeader.HEADER_VERSION_PERMUTED : LSBDataHeader.HEADER_VERSION)) {
+            throw new OpenStegoException(null, LSBPlugin.NAMESPACE, LSBErrors.INVALID_HEADER_VERSION);
+        }
+        this.channelBitsUsed = this.dataHeader.getChannelBitsUsed();
+
+        if (this.permuted) {
+            // Data is read using a different permutation over all the bits in use, skipping the bits used by the
+            // header
+            this.permutation = new KeyedPermutation(noOfPixels * 3L * this.channelBitsUsed, ~this.seed);
+            this.permutationIndex = 0;
+        }
+        // For random sampling, the hit-check bit set is laid out plane by plane, so the bits already read stay at the
+        // same index when more bits per channel come into use, and the set grows as needed
+    }
+
+    /**
+     * Method to initialize the reader state for reading the header
+     *
+     * @param permuted Flag to indicate whether data is embedded using keyed permutation of bit positions
+     * @param permutation Permutation to be used for reading the header
+     */
+    private void initReader(boolean permuted, KeyedPermutation permutation) {
+        this.permuted = permuted;
+        this.permutation = permutation;
+        this.permutationIndex = 0;
+        this.channelBitsUsed = 1;
+        this.bitRead = new BitSet(this.imgWidth * this.imgHeight * 3);
+        this.rand = permuted ? null : new Random(this.seed);
     }
 
     /**
@@ -135,27 +169,67 @@ public class RandomLSBInputStream extends InputStream {
     @Override
     public int read() throws IOException {
         byte[] bitSet = new byte[8];
-        int x = 0;
-        int y = 0;
-        int channel = 0;
-        int bit = 0;
+        long index = 0;
 
         for (int i = 0; i < 8; i++) {
-            do {
-                x = this.rand.nextInt(this.imgWidth);
-                y = this.rand.nextInt(this.imgHeight);
-                channel = this.rand.nextInt(3);
-                bit = this.rand.nextInt(this.channelBitsUsed);
-            } while (this.bitRead[x][y][channel][bit]);
-            this.bitRead[x][y][channel][bit] = true;
-
-            bitSet[i] = (byte) getPixelBit(x, y, channel, bit);
+            index = this.permuted ? nextPermutedBitIndex() : nextRandomBitIndex();
+            if (index < 0) {
+                return -1;
+            }
+            bitSet[i] = (byte) getPixelBit(index);
         }
 
         return ((bitSet[0] << 7) + (bitSet[1] << 6) + (bitSet[2] << 5) + (bitSet[3] << 4) + (bitSet[4] << 3) + (bitSet[5] << 2) + (bitSet[6] << 1)
                 + (bitSet[7] << 0));
     }
 
+    /**
+     * Gets the index of the next bit to be read using keyed permutation of bit positions
+     *
+     * @return Index of the bit (as per {@link #getBitIndex(int, int, int, int)}), or -1 if all the bits are read
+     */
+    private long nextPermutedBitIndex() {
+        long index = 0;
+        long headerBits = this.imgWidth * this.imgHeight * 3L;
+
+        do {
+            if (this.permutationIndex == this.permutation.getSize()) {
+                return -1;
+            }
+            index = this.permutation.get(this.permutationIndex++);
+        } while (index < headerBits && this.bitRead.get((int) index));
+
+        // Only the bits used by the header need to be tracked, as the permutation never repeats a position
+        if (this.dataHeader == null) {
+            this.bitRead.set((int) index);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the index of the next bit to be read using random sampling of bit positions (used by older versions)
+     *
+     * @return Index of the bit (as per {@link #getBitIndex(int, int, int, int)})
+     */
+    private long nextRandomBitIndex() {
+        int x = 0;
+        int y = 0;
+        int channel = 0;
+        int bit = 0;
+        int index = 0;
+
+        do {
+            x = this.rand.nextInt(this.imgWidth);
+            y = this.rand.nextInt(this.imgHeight);
+            channel = this.rand.nextInt(3);
+            bit = this.rand.nextInt(this.channelBitsUsed);
+            index = getBitIndex(x, y, channel, bit);
+        } while (this.bitRead.get(index));
+        this.bitRead.set(index);
+
+        return index;
+    }
+
     /**
      * Get method for dataHeader
      *
@@ -165,6 +239,34 @@ public class RandomLSBInputStream extends InputStream {
         return this.dataHeader;
     }
 
+    /**
+     * Gets the index of the given bit in the hit-check bit set. Bits are laid out plane by plane (bit position, then
+     * color channel), with pixels in row order within a plane
+     *
+     * @param x The x position of the pixel
+     * @param y The y position of the pixel
+     * @param channel The color channel of the bit
+     * @param bit The position of the bit
+     * @return Index of the bit in the bit set
+     */
+    private int getBitIndex(int x, int y, int channel, int bit) {
+        return (((bit * 3) + channel) * this.imgHeight + y) * this.imgWidth + x;
+    }
+
+    /**
+     * Gets the bit at the given index in the image, and puts it into the LSB of an integer.
+     *
+     * @param index Index of the bit (as per {@link #getBitIndex(int, int, int, int)})
+     * @return The bit at the given index, as the LSB of an integer
+     */
+    private int getPixelBit(long index) {
+        int noOfPixels = this.imgWidth * this.imgHeight;
+        int pixel = (int) (index % noOfPixels);
+        int plane = (int) (index / noOfPixels);
+
+        return getPixelBit(pixel % this.imgWidth, pixel / this.imgWidth, plane % 3, plane / 3);
+    }
+
     /**
      * Gets a particular bit in the image, and puts it into the LSB of an integer.
      *
@@ -9,7 +9,7 @@ package com.openstego.desktop.plugin.randlsb;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Random;
+import java.util.BitSet;
 
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
@@ -18,12 +18,18 @@ import com.openstego.desktop.plugin.lsb.LSBDataHeader;
 import com.openstego.desktop.plugin.lsb.LSBErrors;
 import com.openstego.desktop.plugin.lsb.LSBPlugin;
 import com.openstego.desktop.util.ImageHolder;
+import com.openstego.desktop.util.LabelUtil;
 import com.openstego.desktop.util.StringUtil;
 
 /**
  * OutputStream to embed data into image
  */
 public class RandomLSBOutputStream extends OutputStream {
+    /**
+     * LabelUtil instance to retrieve labels
+     */
+    private static LabelUtil labelUtil = LabelUtil.getInstance(LSBPlugin.NAMESPACE);
+
     /**
      * Output Image data
      */
@@ -60,20 +66,48 @@ public class RandomLSBOutputStream extends OutputStream {
     private OpenStegoConfig config = null;
 
     /**
-     * Array for bits in the image
+     * Bits in the image which are used by the header. Bits are indexed plane by plane (bit position, then color
+     * channel), with pixels in row order within a plane
+     */
+    private BitSet bitWritten = null;
+
+    /**
+     * Data header written to the image
+     */
+    private LSBDataHeader header = null;
+
+    /**
+     * Number of data bytes written so far (excluding the header)
+     */
+    private int bytesWritten = 0;
+
+    /**
+     * Flag to indicate whether the header is written or not
+     */
+    private boolean headerWritten = false;
+
+    /**
+     * Seed for the bit permutations, generated using password
      */
-    private boolean bitWritten[][][][] = null;
+    private long seed = 0;
 
     /**
-     * Random number generator
+     * Permutation of the bit positions to be used for writing
      */
-    private Random rand = null;
+    private KeyedPermutation permutation = null;
+
+    /**
+     * Index of the next position to be taken from the permutation
+     */
+    private long permutationIndex = 0;
 
     /**
      * Default constructor
      *
      * @param image Source image into which data will be embedded
-     * @param dataLength Length of the data that would be written to the image
+     * @param dataLength Length of the data that would be written to the image. If the length is not known in advance,
+     *        an upper limit can be given instead: the header is then rewritten with the actual length when the stream
+     *        is closed
      * @param fileName Name of the source data file
      * @param config Configuration data to use while writing
      * @throws OpenStegoException
@@ -106,8 +140,8 @@ public class RandomLSBOutputStream extends OutputStream {
         this.channelBitsUsed = 1;
         this.fileName = fileName;
 
-        // Initialize random number generator with seed generated using password
-        this.rand = new Random(StringUtil.passwordHash(config.getPassword()));
+        // Initialize seed for the bit permutations using password
+        this.seed = StringUtil.passwordHash(config.getPassword());
         writeHeader();
     }
 
@@ -120,12 +154,11 @@ public class RandomLSBOutputStream extends OutputStream {
         int channelBits = 1;
         int noOfPixels = 0;
         int headerSize = 0;
-        LSBDataHeader header = null;
 
         try {
             noOfPixels = this.imgWidth * this.imgHeight;
-            header = new LSBDataHeader(this.dataLength, channelBits, this.fileName, this.config);
-            headerSize = header.getHeaderSize();
+            this.header = new LSBDataHeader(this.dataLength, channelBits, this.fileName, this.config, LSBDataHeader.HEADER_VERSION_PERMUTED);
+            headerSize = this.header.getHeaderSize();
 
             while (true) {
                 if ((noOfPixels * 3 * channelBits) / 8.0 < (headerSize + this.dataLength)) {
@@ -139,22 +172,20 @@ public class RandomLSBOutputStream extends OutputStream {
             }
 
             // Update channelBitsUsed in the header, and write to image
-            header.setChannelBitsUsed(channelBits);
-
-            // Initialize hit-check array
-            this.bitWritten = new boolean[this.imgWidth][this.imgHeight][3][channelBits];
-            for (int i = 0; i < this.imgWidth; i++) {
-                for (int j = 0; j < this.imgHeight; j++) {
-                    for (int k = 0; k < channelBits; k++) {
-                        this.bitWritten[i][j][0][k] = false;
-                        this.bitWritten[i][j][1][k] = false;
-                        this.bitWritten[i][j][2][k] = false;
-                    }
-                }
-            }
+            this.header.setChannelBitsUsed(channelBits);
+
+            // Header is written using only the first bit of each channel, as the number of bits used per channel is
+            // not known while reading the header
+            this.bitWritten = new BitSet(noOfPixels * 3);
+            this.permutation = new KeyedPermutation(noOfPixels * 3L, this.seed);
+            write(this.header.getHeaderData());
+            this.headerWritten = true;
 
-            write(header.getHeaderData());
+            // Data is written using a different permutation over all the bits in use, skipping the bits used by the
+            // header
             this.channelBitsUsed = channelBits;
+            this.permutation = new KeyedPermutation(noOfPixels * 3L * channelBits, ~this.seed);
+            this.permutationIndex = 0;
         } catch (OpenStegoException osEx) {
             throw osEx;
         } catch (Exception ex) {
@@ -171,24 +202,74 @@ public class RandomLSBOutputStream extends OutputStream {
     @Override
     public void write(int data) throws IOException {
         boolean bitValue = false;
-        int x = 0;
-        int y = 0;
-        int channel = 0;
-        int bit = 0;
+        long index = 0;
+        int noOfPixels = this.imgWidth * this.imgHeight;
+        int pixel = 0;
+        int plane = 0;
 
         for (int i = 0; i < 8; i++) {
             bitValue = ((data >> (7 - i)) & 0x1) == 0x1;
 
             do {
-                x = this.rand.nextInt(this.imgWidth);
-                y = this.rand.nextInt(this.imgHeight);
-                channel = this.rand.nextInt(3);
-                bit = this.rand.nextInt(this.channelBitsUsed);
-            } while (this.bitWritten[x][y][channel][bit]);
-            this.bitWritten[x][y][channel][bit] = true;
-
-            setPixelBit(x, y, channel, bit, bitValue);
+                if (this.permutationIndex == this.permutation.getSize()) {
+                    throw new IOException(labelUtil.getString("err.image.insufficientSize"));
+                }
+                index = this.permutation.get(this.permutationIndex++);
+            } while (index < noOfPixels * 3L && this.bitWritten.get((int) index));
+            if (!this.headerWritten) {
+                this.bitWritten.set((int) index);
+            }
+
+            pixel = (int) (index % noOfPixels);
+            plane = (int) (index / noOfPixels);
+            setPixelBit(pixel % this.imgWidth, pixel / this.imgWidth, plane % 3, plane / 3, bitValue);
+        }
+
+        if (this.headerWritten) {
+            this.bytesWritten++;
+        }
+    }
+
+    /**
+     * Closes the stream. If the number of bytes written differs from the data length given to the constructor, then
+     * the header is rewritten with the actual length
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.bytesWritten != this.dataLength) {
+            rewriteHeader(this.bytesWritten);
         }
+        super.close();
+    }
+
+    /**
+     * Method to rewrite the header with a new data length, once all the data is written. The header permutation is
+     * replayed from the start, so the header takes the same bits as before
+     *
+     * @param dataLength New length of the data
+     * @throws IOException
+     */
+    private void rewriteHeader(int dataLength) throws IOException {
+        int noOfPixels = this.imgWidth * this.imgHeight;
+        KeyedPermutation dataPermutation = this.permutation;
+        long dataPermutationIndex = this.permutationIndex;
+
+        this.dataLength = dataLength;
+        this.header = new LSBDataHeader(dataLength, this.channelBitsUsed, this.fileName, this.config, LSBDataHeader.HEADER_VERSION_PERMUTED);
+
+        // The header bits are marked again as they are written, so start with none marked
+        this.headerWritten = false;
+        this.bitWritten = new BitSet(noOfPixels * 3);
+        this.permutation = new KeyedPermutation(noOfPixels * 3L, this.seed);
+        this.permutationIndex = 0;
+        write(this.header.getHeaderData());
+
+        this.headerWritten = true;
+        this.permutation = dataPermutation;
+        this.permutationIndex = dataPermutationIndex;
+        this.bytesWritten = dataLength;
     }
 
     /**
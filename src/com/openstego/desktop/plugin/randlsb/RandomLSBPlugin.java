@@ -8,6 +8,9 @@ package com.openstego.desktop.plugin.randlsb;
 
 import java.io.IOException;
 
+import com.openstego.desktop.ExtractedMessage;
+import com.openstego.desktop.MessageSource;
+import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
 import com.openstego.desktop.plugin.lsb.LSBConfig;
 import com.openstego.desktop.plugin.lsb.LSBDataHeader;
@@ -16,6 +19,7 @@ import com.openstego.desktop.plugin.lsb.LSBPlugin;
 import com.openstego.desktop.util.ImageHolder;
 import com.openstego.desktop.util.ImageUtil;
 import com.openstego.desktop.util.LabelUtil;
+import com.openstego.desktop.util.LimitedInputStream;
 
 /**
  * Plugin for OpenStego which implements the Random LSB algorithm of steganography
@@ -67,11 +71,13 @@ public class RandomLSBPlugin extends LSBPlugin {
      * @param cover Cover data into which message needs to be embedded
      * @param coverFileName Name of the cover file
      * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
      * @return Stego data containing the message
      * @throws OpenStegoException
      */
     @Override
-    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName) throws OpenStegoException {
+    public byte[] embedData(byte[] msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName, OpenStegoConfig config)
+            throws OpenStegoException {
         int numOfPixels = 0;
         ImageHolder image = null;
         RandomLSBOutputStream lsbOS = null;
@@ -80,12 +86,12 @@ public class RandomLSBPlugin extends LSBPlugin {
             // Generate random image, if input image is not provided
             if (cover == null) {
                 numOfPixels = (int) (LSBDataHeader.getMaxHeaderSize() * 8 / 3.0);
-                numOfPixels += (int) (msg.length * 8 / (3.0 * ((LSBConfig) this.config).getMaxBitsUsedPerChannel()));
+                numOfPixels += (int) (msg.length * 8 / (3.0 * ((LSBConfig) config).getMaxBitsUsedPerChannel()));
                 image = ImageUtil.generateRandomImage(numOfPixels);
             } else {
                 image = ImageUtil.byteArrayToImage(cover, coverFileName);
             }
-            lsbOS = new RandomLSBOutputStream(image, msg.length, msgFileName, this.config);
+            lsbOS = new RandomLSBOutputStream(image, msg.length, msgFileName, config);
             lsbOS.write(msg);
             lsbOS.close();
 
@@ -95,20 +101,71 @@ public class RandomLSBPlugin extends LSBPlugin {
         }
     }
 
+    /**
+     * Method to embed a message which is written directly to the image by the given source. The header is written
+     * with the maximum length of the message, and rewritten with the actual length once the message is written. If
+     * the maximum length does not fit in the image, then the message is collected into a byte array first, as it may
+     * still fit once compressed
+     *
+     * @param msg Source of the message to be embedded
+     * @param msgFileName Name of the message file. If this value is provided, then the filename should be
+     *        embedded in the cover data
+     * @param cover Cover data into which message needs to be embedded
+     * @param coverFileName Name of the cover file
+     * @param stegoFileName Name of the output stego file
+     * @param config Configuration data to be used for this call
+     * @return Stego data containing the message
+     * @throws OpenStegoException
+     */
+    @Override
+    public byte[] embedMessage(MessageSource msg, String msgFileName, byte[] cover, String coverFileName, String stegoFileName,
+            OpenStegoConfig config) throws OpenStegoException {
+        int numOfPixels = 0;
+        ImageHolder image = null;
+        RandomLSBOutputStream lsbOS = null;
+
+        try {
+            // Generate random image, if input image is not provided
+            if (cover == null) {
+                numOfPixels = (int) (LSBDataHeader.getMaxHeaderSize() * 8 / 3.0);
+                numOfPixels += (int) (msg.getMaxLength() * 8 / (3.0 * ((LSBConfig) config).getMaxBitsUsedPerChannel()));
+                image = ImageUtil.generateRandomImage(numOfPixels);
+            } else {
+                image = ImageUtil.byteArrayToImage(cover, coverFileName);
+            }
+
+            try {
+                lsbOS = new RandomLSBOutputStream(image, msg.getMaxLength(), msgFileName, config);
+            } catch (OpenStegoException osEx) {
+                if (LSBPlugin.NAMESPACE.equals(osEx.getNamespace()) && osEx.getErrorCode() == LSBErrors.IMAGE_SIZE_INSUFFICIENT) {
+                    return embedBuffered(msg, msgFileName, cover, coverFileName, stegoFileName, config);
+                }
+                throw osEx;
+            }
+            msg.writeTo(lsbOS);
+            lsbOS.close();
+
+            return ImageUtil.imageToByteArray(lsbOS.getImage(), stegoFileName, this);
+        } catch (IOException ioEx) {
+            throw new OpenStegoException(ioEx);
+        }
+    }
+
     /**
      * Method to extract the message file name from the stego data
      *
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
      * @return Message file name
      * @throws OpenStegoException
      */
     @Override
-    public String extractMsgFileName(byte[] stegoData, String stegoFileName) throws OpenStegoException {
+    public String extractMsgFileName(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
         RandomLSBInputStream lsbIS = null;
 
         try {
-            lsbIS = new RandomLSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), this.config);
+            lsbIS = new RandomLSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), config);
             return lsbIS.getDataHeader().getFileName();
         } finally {
             if (lsbIS != null) {
@@ -122,23 +179,24 @@ public class RandomLSBPlugin extends LSBPlugin {
     }
 
     /**
-     * Method to extract the message from the stego data
+     * Method to extract the message file name and the message from the stego data together. The stego image is
+     * decoded only once, and the header is read only once
      *
      * @param stegoData Stego data containing the message
      * @param stegoFileName Name of the stego file
-     * @param origSigData Optional signature data file for watermark
-     * @return Extracted message
+     * @param config Configuration data to be used for this call
+     * @return Extracted message with the details from its header
      * @throws OpenStegoException
      */
     @Override
-    public byte[] extractData(byte[] stegoData, String stegoFileName, byte[] origSigData) throws OpenStegoException {
+    public ExtractedMessage extractMessage(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
         int bytesRead = 0;
         byte[] data = null;
         LSBDataHeader header = null;
         RandomLSBInputStream lsbIS = null;
 
         try {
-            lsbIS = new RandomLSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), this.config);
+            lsbIS = new RandomLSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), config);
             header = lsbIS.getDataHeader();
             data = new byte[header.getDataLength()];
 
@@ -147,7 +205,8 @@ public class RandomLSBPlugin extends LSBPlugin {
                 throw new OpenStegoException(null, LSBPlugin.NAMESPACE, LSBErrors.ERR_IMAGE_DATA_READ);
             }
 
-            return data;
+            return new ExtractedMessage(header.getFileName(), data, header.isUseCompression(), header.isUseEncryption(),
+                    header.getEncryptionAlgorithm());
         } catch (OpenStegoException osEx) {
             throw osEx;
         } catch (Exception ex) {
@@ -163,6 +222,29 @@ public class RandomLSBPlugin extends LSBPlugin {
         }
     }
 
+    /**
+     * Method to extract the message file name from the stego data, and open the message for reading as a stream. The
+     * stego image is decoded and the header is read, but the message bits are read from the image only as the stream
+     * is read
+     *
+     * @param stegoData Stego data containing the message
+     * @param stegoFileName Name of the stego file
+     * @param config Configuration data to be used for this call
+     * @return Extracted message with the details from its header, to be read using {@link ExtractedMessage#getStream()}
+     * @throws OpenStegoException
+     */
+    @Override
+    public ExtractedMessage extractMessageStream(byte[] stegoData, String stegoFileName, OpenStegoConfig config) throws OpenStegoException {
+        LSBDataHeader header = null;
+        RandomLSBInputStream lsbIS = null;
+
+        lsbIS = new RandomLSBInputStream(ImageUtil.byteArrayToImage(stegoData, stegoFileName), config);
+        header = lsbIS.getDataHeader();
+
+        return new ExtractedMessage(header.getFileName(), new LimitedInputStream(lsbIS, header.getDataLength()), header.getDataLength(),
+                header.isUseCompression(), header.isUseEncryption(), header.getEncryptionAlgorithm());
+    }
+
     /**
      * Method to get the usage details of the plugin
      *
@@ -6,21 +6,43 @@
 
 package com.openstego.desktop.plugin.template.dct;
 
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
+import com.openstego.desktop.util.LabelUtil;
 import com.openstego.desktop.util.cmd.CmdLineOptions;
 
 /**
  * Class to store configuration data for DCT plugin template
  */
 public class DCTConfig extends OpenStegoConfig {
+    /**
+     * Key string for configuration item - fastDct.
+     * <p>
+     * Flag to indicate whether the AAN algorithm should be used for the 8x8 DCT instead of the reference matrix
+     * implementation. Both produce the same quantized coefficients except for values lying exactly on a rounding
+     * boundary, so the same setting should be used for embedding and extracting.
+     */
+    public static final String FAST_DCT = "fastDct";
+
     /**
      * Image file extension to use for writing
      */
     private String imageFileExtension = "png";
 
+    /**
+     * Flag to indicate whether the AAN algorithm should be used for the 8x8 DCT
+     */
+    private boolean fastDct = false;
+
+    static {
+        LabelUtil.addNamespace(DCTPluginTemplate.NAMESPACE, "com.openstego.desktop.resource.DCTPluginTemplateLabels");
+        new DCTErrors(); // Initialize error codes
+    }
+
     /**
      * Default Constructor (with default values for configuration items)
      */
@@ -46,6 +68,14 @@ public class DCTConfig extends OpenStegoConfig {
      */
     public DCTConfig(CmdLineOptions options) throws OpenStegoException {
         super(options);
+
+        Map<String, String> map = new HashMap<String, String>();
+        if (options.getOption("-fd") != null) // fastdct
+        {
+            map.put(FAST_DCT, "true");
+        }
+
+        addProperties(map);
     }
 
     /**
@@ -57,6 +87,25 @@ public class DCTConfig extends OpenStegoConfig {
     @Override
     protected void addProperties(Map<String, String> propMap) throws OpenStegoException {
         super.addProperties(propMap);
+
+        Iterator<String> keys = null;
+        String key = null;
+        String value = null;
+
+        keys = propMap.keySet().iterator();
+        while (keys.hasNext()) {
+            key = keys.next();
+            if (key.equals(FAST_DCT)) {
+                value = propMap.get(key).toString().trim();
+                if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("y") || value.equals("1")) {
+                    this.fastDct = true;
+                } else if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("n") || value.equals("0")) {
+                    this.fastDct = false;
+                } else {
+                    throw new OpenStegoException(null, DCTPluginTemplate.NAMESPACE, DCTErrors.INVALID_FAST_DCT_VALUE, value);
+                }
+            }
+        }
     }
 
     /**
@@ -76,4 +125,22 @@ public class DCTConfig extends OpenStegoConfig {
     public void setImageFileExtension(String imageFileExtension) {
         this.imageFileExtension = imageFileExtension;
     }
+
+    /**
+     * Get method for configuration item - fastDct
+     *
+     * @return fastDct
+     */
+    public boolean isFastDct() {
+        return this.fastDct;
+    }
+
+    /**
+     * Set method for configuration item - fastDct
+     *
+     * @param fastDct
+     */
+    public void setFastDct(boolean fastDct) {
+        this.fastDct = fastDct;
+    }
 }
@@ -45,20 +45,26 @@ public class DCTDataHeader {
     private byte[] fileName = null;
 
     /**
-     * OpenStegoConfig instance to hold the configuration data
+     * Flag to indicate whether the data is compressed or not
      */
-    private OpenStegoConfig config = null;
+    private boolean useCompression = false;
+
+    /**
+     * Flag to indicate whether the data is encrypted or not
+     */
+    private boolean useEncryption = false;
 
     /**
      * This constructor should normally be used when writing the data.
      *
      * @param dataLength Length of the data embedded in the image (excluding the header data)
      * @param fileName Name of the file of data being embedded
-     * @param config OpenStegoConfig instance to hold the configuration data
+     * @param config Configuration data which gives the compression and encryption flags of the data
      */
     public DCTDataHeader(int dataLength, String fileName, OpenStegoConfig config) {
         this.dataLength = dataLength;
-        this.config = config;
+        this.useCompression = config.isUseCompression();
+        this.useEncryption = config.isUseEncryption();
 
         if (fileName == null) {
             this.fileName = new byte[0];
@@ -72,13 +78,14 @@ public class DCTDataHeader {
     }
 
     /**
-     * This constructor should be used when reading embedded data from an InputStream.
+     * This constructor should be used when reading embedded data from an InputStream. The compression and encryption
+     * flags are read into the header itself, and can be got using {@link #isUseCompression()} and
+     * {@link #isUseEncryption()}
      *
      * @param dataInStream Data input stream containing the embedded data
-     * @param config OpenStegoConfig instance to hold the configuration data
      * @throws OpenStegoException
      */
-    public DCTDataHeader(InputStream dataInStream, OpenStegoConfig config) throws OpenStegoException {
+    public DCTDataHeader(InputStream dataInStream) throws OpenStegoException {
         int stampLen = 0;
         int versionLen = 0;
         int fileNameLen = 0;
@@ -107,8 +114,8 @@ public class DCTDataHeader {
             this.dataLength = (CommonUtil.byteToInt(header[0]) + (CommonUtil.byteToInt(header[1]) << 8) + (CommonUtil.byteToInt(header[2]) << 16)
                     + (CommonUtil.byteToInt(header[3]) << 32));
             fileNameLen = header[4];
-            config.setUseCompression(header[5] == 1);
-            config.setUseEncryption(header[6] == 1);
+            this.useCompression = (header[5] == 1);
+            this.useEncryption = (header[6] == 1);
 
             if (fileNameLen == 0) {
                 this.fileName = new byte[0];
@@ -121,8 +128,6 @@ public class DCTDataHeader {
         } catch (Exception ex) {
             throw new OpenStegoException(ex);
         }
-
-        this.config = config;
     }
 
     /**
@@ -151,8 +156,8 @@ public class DCTDataHeader {
         out[currIndex++] = (byte) ((this.dataLength & 0x00FF0000) >> 16);
         out[currIndex++] = (byte) ((this.dataLength & 0xFF000000) >> 32);
         out[currIndex++] = (byte) this.fileName.length;
-        out[currIndex++] = (byte) (this.config.isUseCompression() ? 1 : 0);
-        out[currIndex++] = (byte) (this.config.isUseEncryption() ? 1 : 0);
+        out[currIndex++] = (byte) (this.useCompression ? 1 : 0);
+        out[currIndex++] = (byte) (this.useEncryption ? 1 : 0);
 
         if (this.fileName.length > 0) {
             System.arraycopy(this.fileName, 0, out, currIndex, this.fileName.length);
@@ -187,6 +192,24 @@ public class DCTDataHeader {
         return name;
     }
 
+    /**
+     * Get Method for useCompression
+     *
+     * @return useCompression
+     */
+    public boolean isUseCompression() {
+        return this.useCompression;
+    }
+
+    /**
+     * Get Method for useEncryption
+     *
+     * @return useEncryption
+     */
+    public boolean isUseEncryption() {
+        return this.useEncryption;
+    }
+
     /**
      * Method to get size of the current header
      *
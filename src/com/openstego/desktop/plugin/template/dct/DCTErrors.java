@@ -22,11 +22,17 @@ public class DCTErrors {
      */
     public static final int INVALID_HEADER_VERSION = 2;
 
+    /**
+     * Error Code - Invalid value for fastDct
+     */
+    public static final int INVALID_FAST_DCT_VALUE = 3;
+
     /*
      * Initialize the error code - message key map
      */
     static {
         OpenStegoException.addErrorCode(DCTPluginTemplate.NAMESPACE, INVALID_STEGO_HEADER, "err.invalidHeaderStamp");
         OpenStegoException.addErrorCode(DCTPluginTemplate.NAMESPACE, INVALID_HEADER_VERSION, "err.invalidHeaderVersion");
+        OpenStegoException.addErrorCode(DCTPluginTemplate.NAMESPACE, INVALID_FAST_DCT_VALUE, "err.config.fastDct.invalid");
     }
 }
@@ -32,12 +32,12 @@ public abstract class DCTPluginTemplate extends OpenStegoPlugin {
     /**
      * Static list of supported read formats
      */
-    private static List<String> readFormats = null;
+    private static volatile List<String> readFormats = null;
 
     /**
      * Static list of supported write formats
      */
-    private static List<String> writeFormats = null;
+    private static volatile List<String> writeFormats = null;
 
     static {
         LabelUtil.addNamespace(NAMESPACE, "com.openstego.desktop.resource.DCTPluginTemplateLabels");
@@ -26,14 +26,16 @@ import com.openstego.desktop.util.cmd.CmdLineOptions;
  */
 public abstract class DHImagePluginTemplate extends DataHidingPlugin {
     /**
-     * Static list of supported read formats
+     * Static list of supported read formats. The list is only assigned once it is complete, so that it can be read by
+     * many threads without locking
      */
-    protected static List<String> readFormats = null;
+    protected static volatile List<String> readFormats = null;
 
     /**
-     * Static list of supported write formats
+     * Static list of supported write formats. The list is only assigned once it is complete, so that it can be read by
+     * many threads without locking
      */
-    protected static List<String> writeFormats = null;
+    protected static volatile List<String> writeFormats = null;
 
     /**
      * Method to get difference between original cover file and the stegged file
@@ -68,26 +70,9 @@ public abstract class DHImagePluginTemplate extends DataHidingPlugin {
      */
     @Override
     public List<String> getReadableFileExtensions() throws OpenStegoException {
-        if (readFormats != null) {
-            return readFormats;
+        if (readFormats == null) {
+            readFormats = getFormatList(ImageIO.getReaderFormatNames());
         }
-
-        String format = null;
-        String[] formats = null;
-        readFormats = new ArrayList<String>();
-
-        formats = ImageIO.getReaderFormatNames();
-        for (int i = 0; i < formats.length; i++) {
-            format = formats[i].toLowerCase();
-            if (format.indexOf("jpeg") >= 0 && format.indexOf("2000") >= 0) {
-                format = "jp2";
-            }
-            if (!readFormats.contains(format)) {
-                readFormats.add(format);
-            }
-        }
-
-        Collections.sort(readFormats);
         return readFormats;
     }
 
@@ -99,27 +84,34 @@ public abstract class DHImagePluginTemplate extends DataHidingPlugin {
      */
     @Override
     public List<String> getWritableFileExtensions() throws OpenStegoException {
-        if (writeFormats != null) {
-            return writeFormats;
+        if (writeFormats == null) {
+            writeFormats = getFormatList(ImageIO.getWriterFormatNames());
         }
+        return writeFormats;
+    }
 
+    /**
+     * Method to get the sorted list of file extensions for the given ImageIO format names
+     *
+     * @param formats ImageIO format names
+     * @return List of file extensions
+     */
+    protected static List<String> getFormatList(String[] formats) {
         String format = null;
-        String[] formats = null;
-        writeFormats = new ArrayList<String>();
+        List<String> formatList = new ArrayList<String>();
 
-        formats = ImageIO.getWriterFormatNames();
         for (int i = 0; i < formats.length; i++) {
             format = formats[i].toLowerCase();
             if (format.indexOf("jpeg") >= 0 && format.indexOf("2000") >= 0) {
                 format = "jp2";
             }
-            if (!writeFormats.contains(format)) {
-                writeFormats.add(format);
+            if (!formatList.contains(format)) {
+                formatList.add(format);
             }
         }
 
-        Collections.sort(writeFormats);
-        return writeFormats;
+        Collections.sort(formatList);
+        return formatList;
     }
 
     /**
@@ -34,6 +34,7 @@ import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.filechooser.FileFilter;
 
+import com.openstego.desktop.BatchExecutor;
 import com.openstego.desktop.OpenStego;
 import com.openstego.desktop.OpenStegoConfig;
 import com.openstego.desktop.OpenStegoException;
@@ -602,37 +603,57 @@ public class OpenStegoUI extends OpenStegoFrame {
                 File sigFile = null;
                 OpenStego openStego = null;
                 OpenStegoConfig config = null;
-                OpenStegoPlugin plugin = null;
-                NumberFormat formatter = NumberFormat.getPercentInstance();
-                double correlation = 0.0;
+                final OpenStegoPlugin plugin = getDefaultPlugin(OpenStegoPlugin.Purpose.WATERMARKING);
+                final NumberFormat formatter = NumberFormat.getPercentInstance();
+                final OpenStegoException[] error = new OpenStegoException[1];
 
                 @SuppressWarnings ("unchecked")
-                List<File> inputFileList = (List<File>) this.data;
+                final List<File> inputFileList = (List<File>) this.data;
 
-                plugin = getDefaultPlugin(OpenStegoPlugin.Purpose.WATERMARKING);
                 config = plugin.createConfig();
 
                 openStego = new OpenStego(plugin, config);
                 sigFile = new File(getVerifyWmPanel().getSignatureFileTextField().getText());
 
-                Object[][] tblData = new Object[inputFileList.size()][2];
-                for (int i = 0; i < inputFileList.size(); i++) {
-                    setProgress(i * 100 / inputFileList.size());
-                    File inputFile = inputFileList.get(i);
-                    correlation = openStego.checkMark(inputFile, sigFile);
-                    tblData[i][0] = inputFile.getName();
-                    String color = null;
-                    if (correlation > plugin.getHighWatermarkLevel()) {
-                        color = "green";
-                    } else if (correlation > plugin.getLowWatermarkLevel()) {
-                        color = "#FFBF00";
-                    } else {
-                        color = "red";
+                // Check all the files in parallel, filling in the table as each of them finishes
+                final Object[][] tblData = new Object[inputFileList.size()][2];
+                openStego.checkMark(inputFileList, sigFile, new BatchExecutor.Listener<Double>() {
+                    private int done = 0;
+
+                    @Override
+                    public void fileProcessed(File file, int index, Double correlation) {
+                        String color = null;
+
+                        try {
+                            if (correlation > plugin.getHighWatermarkLevel()) {
+                                color = "green";
+                            } else if (correlation > plugin.getLowWatermarkLevel()) {
+                                color = "#FFBF00";
+                            } else {
+                                color = "red";
+                            }
+                        } catch (OpenStegoException osEx) {
+                            fileFailed(file, index, osEx);
+                            return;
+                        }
+                        tblData[index][0] = file.getName();
+                        tblData[index][1] = "<html><span style='color:" + color + "'>\u25cf " + formatter.format(correlation) + "</span></html>";
+                        setProgress(++this.done * 100 / inputFileList.size());
                     }
-                    tblData[i][1] = "<html><span style='color:" + color + "'>\u25cf " + formatter.format(correlation) + "</span></html>";
-                }
+
+                    @Override
+                    public void fileFailed(File file, int index, OpenStegoException osEx) {
+                        if (error[0] == null) {
+                            error[0] = osEx;
+                        }
+                        setProgress(++this.done * 100 / inputFileList.size());
+                    }
+                });
                 setProgress(100);
 
+                if (error[0] != null) {
+                    throw error[0];
+                }
                 return tblData;
             }
 
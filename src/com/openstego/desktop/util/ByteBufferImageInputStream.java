@@ -0,0 +1,94 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * ImageInputStream which reads directly from a byte buffer. Unlike the streams created by
+ * <code>ImageIO.createImageInputStream</code> for an <code>InputStream</code>, this does not copy the data into a
+ * cache (which by default is a temporary file), as the whole buffer is already available for random access
+ */
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+    /**
+     * Buffer to read from. The position of the buffer is used only for bulk reads
+     */
+    private ByteBuffer buffer = null;
+
+    /**
+     * Default constructor
+     *
+     * @param buffer Buffer to read from. The data between the position and the limit of the buffer is read, and the
+     *        buffer itself is not modified
+     */
+    public ByteBufferImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    /**
+     * Implementation of <code>ImageInputStream.read()</code> method
+     *
+     * @return Byte read from the stream, or -1 if the end of the buffer is reached
+     * @throws IOException
+     */
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        this.bitOffset = 0;
+        if (this.streamPos >= this.buffer.limit()) {
+            return -1;
+        }
+        return this.buffer.get((int) this.streamPos++) & 0xFF;
+    }
+
+    /**
+     * Implementation of <code>ImageInputStream.read(byte[], int, int)</code> method
+     *
+     * @param data Buffer into which the data is read
+     * @param off Start offset in the buffer
+     * @param len Maximum number of bytes to read
+     * @return Number of bytes read, or -1 if the end of the buffer is reached
+     * @throws IOException
+     */
+    @Override
+    public int read(byte[] data, int off, int len) throws IOException {
+        int count = 0;
+
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (this.streamPos >= this.buffer.limit()) {
+            return -1;
+        }
+
+        count = (int) Math.min(len, this.buffer.limit() - this.streamPos);
+        // Cast to Buffer, as the covariant ByteBuffer.position(int) of newer JDKs does not exist on Java 7 and 8
+        ((Buffer) this.buffer).position((int) this.streamPos);
+        this.buffer.get(data, off, count);
+        this.streamPos += count;
+        return count;
+    }
+
+    /**
+     * Get the length of the stream
+     *
+     * @return Length of the buffer
+     */
+    @Override
+    public long length() {
+        return this.buffer.limit();
+    }
+}
@@ -8,6 +8,7 @@ package com.openstego.desktop.util;
 
 import java.awt.Color;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -16,6 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.StringTokenizer;
 
@@ -64,6 +66,32 @@ public class CommonUtil {
         }
     }
 
+    /**
+     * Method to copy all the data from the input stream to the output stream. The input stream is closed once it is
+     * exhausted, but the output stream is left open
+     *
+     * @param is InputStream to read the data from
+     * @param os OutputStream to write the data to
+     * @return Number of bytes copied
+     * @throws IOException
+     */
+    public static long copyStream(InputStream is, OutputStream os) throws IOException {
+        final int BUF_SIZE = 8192;
+        byte[] data = new byte[BUF_SIZE];
+        long count = 0;
+        int bytesRead = 0;
+
+        try {
+            while ((bytesRead = is.read(data, 0, BUF_SIZE)) >= 0) {
+                os.write(data, 0, bytesRead);
+                count += bytesRead;
+            }
+        } finally {
+            is.close();
+        }
+        return count;
+    }
+
     /**
      * Method to get byte array data from given file
      *
@@ -72,10 +100,33 @@ public class CommonUtil {
      * @throws OpenStegoException
      */
     public static byte[] getFileBytes(File file) throws OpenStegoException {
+        FileInputStream is = null;
+        byte[] data = null;
+        int offset = 0;
+        int count = 0;
+
         try {
-            return getStreamBytes(new FileInputStream(file));
+            is = new FileInputStream(file);
+            // Size of special files like pipes is not known in advance, so read them as a stream
+            if (!file.isFile()) {
+                return getStreamBytes(is);
+            }
+
+            // Read the file straight into an array of the exact size, instead of growing a copy
+            data = new byte[(int) file.length()];
+            while (offset < data.length) {
+                count = is.read(data, offset, data.length - offset);
+                if (count < 0) {
+                    // File got truncated while reading
+                    return Arrays.copyOf(data, offset);
+                }
+                offset += count;
+            }
+            return data;
         } catch (IOException ioEx) {
             throw new OpenStegoException(ioEx);
+        } finally {
+            closeStream(is);
         }
     }
 
@@ -103,19 +154,23 @@ public class CommonUtil {
      * @throws OpenStegoException
      */
     public static void writeFile(byte[] fileData, File file) throws OpenStegoException {
-        OutputStream os = null;
+        FileOutputStream os = null;
 
         try {
             // If file is not provided, then write the data to stdout
             if (file == null) {
-                os = System.out;
-            } else {
-                os = new FileOutputStream(file);
+                System.out.write(fileData);
+                System.out.close();
+                return;
             }
+
+            os = new FileOutputStream(file);
             os.write(fileData);
             os.close();
         } catch (IOException ioEx) {
             throw new OpenStegoException(ioEx);
+        } finally {
+            closeStream(os);
         }
     }
 
@@ -337,4 +392,21 @@ public class CommonUtil {
     public static double min(double x, double y) {
         return (x < y) ? x : y;
     }
+
+    /**
+     * Method to close a stream, ignoring any errors. This is used in finally blocks, where the original error, if
+     * any, is already being thrown
+     *
+     * @param stream Stream to close (can be <code>null</code>)
+     */
+    private static void closeStream(Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException ioEx) {
+            // Ignore
+        }
+    }
 }
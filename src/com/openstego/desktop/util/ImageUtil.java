@@ -7,11 +7,15 @@
 package com.openstego.desktop.util;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
@@ -26,6 +30,8 @@ import javax.imageio.ImageWriter;
 import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import com.openstego.desktop.OpenStego;
 import com.openstego.desktop.OpenStegoException;
@@ -123,13 +129,103 @@ public class ImageUtil {
             return null;
         }
 
-        ImageHolder image = readImage(new ByteArrayInputStream(imageData));
+        ImageHolder image = readImage(new ByteBufferImageInputStream(ByteBuffer.wrap(imageData)));
         if (image == null) {
             throw new OpenStegoException(null, OpenStego.NAMESPACE, OpenStegoException.IMAGE_FILE_INVALID, imgFileName);
         }
         return image;
     }
 
+    /**
+     * Method to create a copy of the given image as <code>TYPE_INT_RGB</code>. The pixel values are identical to what
+     * per-pixel <code>getRGB</code> / <code>setRGB</code> copy would produce, but the copy is done in bulk
+     *
+     * @param image Source image
+     * @return Copy of the image of type <code>TYPE_INT_RGB</code>
+     */
+    public static BufferedImage copyToIntRgb(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage newImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = getIntRgbData(newImg);
+
+        getRgbRows(image, 0, height, pixels, 0);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] &= 0x00FFFFFF;
+        }
+        return newImg;
+    }
+
+    /**
+     * Method to get the backing pixel array of an image created as <code>new BufferedImage(w, h, TYPE_INT_RGB)</code>.
+     * Pixels are stored row by row with scanline stride equal to the image width
+     *
+     * @param image Image of type <code>TYPE_INT_RGB</code>
+     * @return Backing pixel array of the image
+     */
+    public static int[] getIntRgbData(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Method to read RGB values of a band of rows of the image in bulk. Values are the same as returned by
+     * <code>BufferedImage.getRGB(x, y)</code>, but common packed raster layouts are read directly from the backing
+     * array instead of going through the color model for every pixel
+     *
+     * @param image Source image
+     * @param startY First row to read
+     * @param numRows Number of rows to read
+     * @param dest Destination array (row by row, stride equal to the image width)
+     * @param destOffset Offset in destination array
+     */
+    public static void getRgbRows(BufferedImage image, int startY, int numRows, int[] dest, int destOffset) {
+        int width = image.getWidth();
+        int type = image.getType();
+        WritableRaster raster = image.getRaster();
+
+        if (raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+            if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+                SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+                int[] src = db.getData();
+                int stride = sm.getScanlineStride();
+                int alpha = (type == BufferedImage.TYPE_INT_RGB) ? 0xFF000000 : 0;
+                int mask = (type == BufferedImage.TYPE_INT_RGB) ? 0x00FFFFFF : 0xFFFFFFFF;
+
+                for (int y = startY; y < startY + numRows; y++) {
+                    int srcIdx = db.getOffset() + y * stride;
+                    int destIdx = destOffset + (y - startY) * width;
+                    for (int x = 0; x < width; x++) {
+                        dest[destIdx++] = alpha | (src[srcIdx++] & mask);
+                    }
+                }
+                return;
+            } else if (type == BufferedImage.TYPE_3BYTE_BGR && raster.getSampleModel() instanceof PixelInterleavedSampleModel) {
+                PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+                DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+                byte[] src = db.getData();
+                int stride = sm.getScanlineStride();
+                int pixelStride = sm.getPixelStride();
+                int[] bandOffsets = sm.getBandOffsets();
+
+                for (int y = startY; y < startY + numRows; y++) {
+                    int srcIdx = db.getOffset() + y * stride;
+                    int destIdx = destOffset + (y - startY) * width;
+                    for (int x = 0; x < width; x++) {
+                        dest[destIdx++] = 0xFF000000 | ((src[srcIdx + bandOffsets[0]] & 0xFF) << 16)
+                                | ((src[srcIdx + bandOffsets[1]] & 0xFF) << 8) | (src[srcIdx + bandOffsets[2]] & 0xFF);
+                        srcIdx += pixelStride;
+                    }
+                }
+                return;
+            }
+        }
+
+        // Generic path through the color model
+        image.getRGB(0, startY, width, numRows, dest, destOffset, width);
+    }
+
     /**
      * Get RGB data array from given image
      *
@@ -293,6 +389,81 @@ public class ImageUtil {
         return image;
     }
 
+    /**
+     * Get YUV data planes from given image's RGB data, read in a single pass over the image. The conversion uses
+     * fixed-point integer arithmetic (coefficients scaled by 2^16), which differs by one from the floating point
+     * conversion of {@link #getYuvFromImage(BufferedImage)} for a small fraction of colors. Use
+     * <code>legacyRounding</code> to get exactly the same data as {@link #getYuvFromImage(BufferedImage)}
+     *
+     * @param image Image
+     * @param legacyRounding Flag to indicate whether floating point conversion should be used
+     * @return Pixel planes with three planes - Y, U and V
+     */
+    public static PixelPlanes getYuvPlanesFromImage(BufferedImage image, boolean legacyRounding) {
+        return getYuvPlanesFromImage(image, 3, legacyRounding);
+    }
+
+    /**
+     * Get luminance (Y) data plane from given image's RGB data. Conversion is the same as used by
+     * {@link #getYuvPlanesFromImage(BufferedImage, boolean)}
+     *
+     * @param image Image
+     * @param legacyRounding Flag to indicate whether floating point conversion should be used
+     * @return Pixel planes with only one plane - Y
+     */
+    public static PixelPlanes getLuminancePlaneFromImage(BufferedImage image, boolean legacyRounding) {
+        return getYuvPlanesFromImage(image, 1, legacyRounding);
+    }
+
+    /**
+     * Get image (with RGB data) from given YUV data planes. Like {@link #getYuvPlanesFromImage(BufferedImage, boolean)},
+     * the conversion uses fixed-point integer arithmetic unless <code>legacyRounding</code> is set, in which case the
+     * image is the same as produced by {@link #getImageFromYuv(List, int)}
+     *
+     * @param yuv Pixel planes with three planes - Y, U and V
+     * @param imgType Type of image (e.g. BufferedImage.TYPE_INT_RGB)
+     * @param legacyRounding Flag to indicate whether floating point conversion should be used
+     * @return Image
+     */
+    public static BufferedImage getImageFromYuvPlanes(PixelPlanes yuv, int imgType, boolean legacyRounding) {
+        int width = yuv.getWidth();
+        int height = yuv.getHeight();
+        BufferedImage image = new BufferedImage(width, height, (imgType == 0 ? BufferedImage.TYPE_INT_RGB : imgType));
+        int[] y = yuv.getPlane(0);
+        int[] u = yuv.getPlane(1);
+        int[] v = yuv.getPlane(2);
+        int[] row = new int[width];
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int idx = 0;
+
+        for (int i = 0; i < height; i++) {
+            idx = i * yuv.getStride();
+            if (legacyRounding) {
+                for (int j = 0; j < width; j++) {
+                    r = pixelRange(y[idx] + 1.140 * v[idx]);
+                    g = pixelRange(y[idx] - 0.395 * u[idx] - 0.581 * v[idx]);
+                    b = pixelRange(y[idx] + 2.032 * u[idx]);
+                    row[j] = (r << 16) + (g << 8) + b;
+                    idx++;
+                }
+            } else {
+                // Coefficients scaled by 2^16. Negative values are clamped to zero, so flooring shift is same as cast
+                for (int j = 0; j < width; j++) {
+                    r = pixelRange(((y[idx] << 16) + 74711 * v[idx]) >> 16);
+                    g = pixelRange(((y[idx] << 16) - 25887 * u[idx] - 38076 * v[idx]) >> 16);
+                    b = pixelRange(((y[idx] << 16) + 133169 * u[idx]) >> 16);
+                    row[j] = (r << 16) + (g << 8) + b;
+                    idx++;
+                }
+            }
+            setRgbRow(image, i, row);
+        }
+
+        return image;
+    }
+
     /**
      * Utility method to limit the value within [0,255] range
      *
@@ -417,8 +588,11 @@ public class ImageUtil {
         } else {
             try {
                 ImageWriter writer = ImageIO.getImageWritersByFormatName(imageType).next();
-                writer.setOutput(ImageIO.createImageOutputStream(os));
+                ImageOutputStream imageOS = new MemoryCacheImageOutputStream(os);
+                writer.setOutput(imageOS);
                 writer.write(null, new IIOImage(image.getImage(), null, image.getMetadata()), null);
+                imageOS.close();
+                writer.dispose();
             } catch (IOException e) {
                 throw new OpenStegoException(e);
             }
@@ -437,16 +611,18 @@ public class ImageUtil {
             jpegParams.setCompressionQuality(qual);
 
             ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
-            writer.setOutput(ImageIO.createImageOutputStream(os));
+            ImageOutputStream imageOS = new MemoryCacheImageOutputStream(os);
+            writer.setOutput(imageOS);
             writer.write(null, new IIOImage(image.getImage(), null, image.getMetadata()), jpegParams);
+            imageOS.close();
+            writer.dispose();
         } catch (IOException e) {
             throw new OpenStegoException(e);
         }
     }
 
-    private static ImageHolder readImage(InputStream is) throws OpenStegoException {
+    private static ImageHolder readImage(ImageInputStream imageIS) throws OpenStegoException {
         try {
-            ImageInputStream imageIS = ImageIO.createImageInputStream(is);
             Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIS);
             if (!readers.hasNext()) {
                 return null;
@@ -456,9 +632,97 @@ public class ImageUtil {
             reader.setInput(imageIS);
             BufferedImage image = reader.read(0);
             IIOMetadata metadata = reader.getImageMetadata(0);
+            reader.dispose();
             return new ImageHolder(image, metadata);
         } catch (IOException e) {
             throw new OpenStegoException(e);
         }
     }
+
+    /**
+     * Get YUV data planes from given image's RGB data
+     *
+     * @param image Image
+     * @param noOfPlanes Number of planes to compute (1 for only Y, 3 for Y, U and V)
+     * @param legacyRounding Flag to indicate whether floating point conversion should be used
+     * @return Pixel planes
+     */
+    private static PixelPlanes getYuvPlanesFromImage(BufferedImage image, int noOfPlanes, boolean legacyRounding) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        PixelPlanes planes = new PixelPlanes(width, height, noOfPlanes);
+        int[] y = planes.getPlane(0);
+        int[] u = (noOfPlanes > 1) ? planes.getPlane(1) : null;
+        int[] v = (noOfPlanes > 1) ? planes.getPlane(2) : null;
+        int[] row = new int[width];
+        int rgb = 0;
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int fixed = 0;
+        int idx = 0;
+
+        for (int i = 0; i < height; i++) {
+            getRgbRows(image, i, 1, row, 0);
+            idx = i * planes.getStride();
+            if (legacyRounding) {
+                for (int j = 0; j < width; j++) {
+                    rgb = row[j];
+                    r = (rgb >> 16) & 0xFF;
+                    g = (rgb >> 8) & 0xFF;
+                    b = rgb & 0xFF;
+
+                    y[idx] = (int) ((0.299 * r) + (0.587 * g) + (0.114 * b));
+                    if (u != null) {
+                        u[idx] = (int) ((-0.147 * r) - (0.289 * g) + (0.436 * b));
+                        v[idx] = (int) ((0.615 * r) - (0.515 * g) - (0.100 * b));
+                    }
+                    idx++;
+                }
+            } else {
+                // Coefficients scaled by 2^16. Adding (2^16 - 1) to negative values before the shift makes it round
+                // towards zero, same as the cast of the floating point value
+                for (int j = 0; j < width; j++) {
+                    rgb = row[j];
+                    r = (rgb >> 16) & 0xFF;
+                    g = (rgb >> 8) & 0xFF;
+                    b = rgb & 0xFF;
+
+                    y[idx] = (19595 * r + 38470 * g + 7471 * b) >> 16;
+                    if (u != null) {
+                        fixed = -9634 * r - 18940 * g + 28574 * b;
+                        u[idx] = (fixed + ((fixed >> 31) & 0xFFFF)) >> 16;
+                        fixed = 40305 * r - 33751 * g - 6554 * b;
+                        v[idx] = (fixed + ((fixed >> 31) & 0xFFFF)) >> 16;
+                    }
+                    idx++;
+                }
+            }
+        }
+
+        return planes;
+    }
+
+    /**
+     * Write a row of RGB values into the image. Values are stored the same way as by
+     * <code>BufferedImage.setRGB(x, y, rgb)</code>, but images of type <code>TYPE_INT_RGB</code> created by this class
+     * are written directly into the backing array
+     *
+     * @param image Image created as <code>new BufferedImage(w, h, type)</code>
+     * @param y Row number
+     * @param row RGB values for the row
+     */
+    private static void setRgbRow(BufferedImage image, int y, int[] row) {
+        int width = image.getWidth();
+
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            int[] pixels = getIntRgbData(image);
+            int idx = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[idx++] = row[x] & 0x00FFFFFF;
+            }
+        } else {
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream which reads at most the given number of bytes from the underlying stream, and then reports the end of
+ * the stream. This is used to read the message data embedded in an image, which is followed by the unused part of the
+ * image
+ */
+public class LimitedInputStream extends FilterInputStream {
+    /**
+     * Number of bytes which can still be read
+     */
+    private long remaining = 0;
+
+    /**
+     * Default constructor
+     *
+     * @param in Underlying stream
+     * @param limit Maximum number of bytes to read
+     */
+    public LimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.remaining = limit;
+    }
+
+    /**
+     * Implementation of <code>InputStream.read()</code> method
+     *
+     * @return Byte read from the stream, or -1 if the limit or the end of the underlying stream is reached
+     * @throws IOException
+     */
+    @Override
+    public int read() throws IOException {
+        int value = 0;
+
+        if (this.remaining <= 0) {
+            return -1;
+        }
+        value = this.in.read();
+        if (value != -1) {
+            this.remaining--;
+        }
+        return value;
+    }
+
+    /**
+     * Implementation of <code>InputStream.read(byte[], int, int)</code> method
+     *
+     * @param data Buffer into which the data is read
+     * @param off Start offset in the buffer
+     * @param len Maximum number of bytes to read
+     * @return Number of bytes read, or -1 if the limit or the end of the underlying stream is reached
+     * @throws IOException
+     */
+    @Override
+    public int read(byte[] data, int off, int len) throws IOException {
+        int bytesRead = 0;
+
+        if (len == 0) {
+            return 0;
+        }
+        if (this.remaining <= 0) {
+            return -1;
+        }
+        bytesRead = this.in.read(data, off, (int) Math.min(len, this.remaining));
+        if (bytesRead > 0) {
+            this.remaining -= bytesRead;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Implementation of <code>InputStream.skip(long)</code> method
+     *
+     * @param n Number of bytes to skip
+     * @return Number of bytes skipped
+     * @throws IOException
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = this.in.skip(Math.min(n, this.remaining));
+
+        this.remaining -= skipped;
+        return skipped;
+    }
+
+    /**
+     * Implementation of <code>InputStream.available()</code> method
+     *
+     * @return Number of bytes which can be read without blocking
+     * @throws IOException
+     */
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(this.in.available(), this.remaining);
+    }
+
+    /**
+     * Marks are not supported by this stream
+     *
+     * @return false
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util;
+
+/**
+ * Class to hold the pixel data of an image as separate planes (e.g. Y, U and V). Each plane is stored
+ * row-wise in a contiguous int array, with the value for pixel <code>(x, y)</code> at index
+ * <code>y * stride + x</code>
+ */
+public class PixelPlanes {
+    /**
+     * Plane data
+     */
+    private int[][] planes = null;
+
+    /**
+     * Width of the planes
+     */
+    private int width = 0;
+
+    /**
+     * Height of the planes
+     */
+    private int height = 0;
+
+    /**
+     * Distance between the start of two consecutive rows in the plane arrays
+     */
+    private int stride = 0;
+
+    /**
+     * Default constructor
+     *
+     * @param width Width of the planes
+     * @param height Height of the planes
+     * @param noOfPlanes Number of planes
+     */
+    public PixelPlanes(int width, int height, int noOfPlanes) {
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+        this.planes = new int[noOfPlanes][width * height];
+    }
+
+    /**
+     * Get method for width
+     *
+     * @return width
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get method for height
+     *
+     * @return height
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get method for stride
+     *
+     * @return stride
+     */
+    public int getStride() {
+        return this.stride;
+    }
+
+    /**
+     * Get the number of planes
+     *
+     * @return Number of planes
+     */
+    public int getNoOfPlanes() {
+        return this.planes.length;
+    }
+
+    /**
+     * Get the data array for the given plane
+     *
+     * @param plane Plane index
+     * @return Plane data
+     */
+    public int[] getPlane(int plane) {
+        return this.planes[plane];
+    }
+
+    /**
+     * Get the value of a pixel from the given plane
+     *
+     * @param plane Plane index
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return Pixel value
+     */
+    public int get(int plane, int x, int y) {
+        return this.planes[plane][y * this.stride + x];
+    }
+
+    /**
+     * Set the value of a pixel in the given plane
+     *
+     * @param plane Plane index
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param value Pixel value
+     */
+    public void set(int plane, int x, int y, int value) {
+        this.planes[plane][y * this.stride + x] = value;
+    }
+}
@@ -6,6 +6,8 @@
 
 package com.openstego.desktop.util.dct;
 
+import java.util.Random;
+
 import com.openstego.desktop.util.ImageUtil;
 
 /**
@@ -61,6 +63,16 @@ public class DCT {
 
     private int[][] tmpIntArray = new int[NJPEG][NJPEG];
 
+    private double[][] tmpDoubleArray = new double[NJPEG][NJPEG];
+
+    private double[] fastBlock = new double[NJPEG * NJPEG];
+
+    private double[] fastFwdScale = new double[NJPEG * NJPEG];
+
+    private double[] fastInvScale = new double[NJPEG * NJPEG];
+
+    private boolean fastDct = false;
+
     private int[][] Quantum = new int[NJPEG][NJPEG];
 
     private int nxnLog2N = 0;
@@ -430,6 +442,17 @@ public class DCT {
         }
     }
 
+    /**
+     * Quantize a single DCT coefficient based on the quantization table
+     *
+     * @param value DCT coefficient
+     * @param coeffNum Coefficient number (row-major index within the 8x8 block)
+     * @return Quantized coefficient
+     */
+    public int quantizeCoeff8x8(double value, int coeffNum) {
+        return round(value / this.Quantum[coeffNum / NJPEG][coeffNum % NJPEG]);
+    }
+
     /**
      * De-quantize the DCT matrix based on the quantization table
      *
@@ -463,6 +486,130 @@ public class DCT {
                 this.Ct[j][i] = this.C[i][j];
             }
         }
+
+        // Scale factors to convert between AAN output and the orthonormal DCT coefficients
+        double[] aanScale = new double[NJPEG];
+        aanScale[0] = 1.0;
+        for (i = 1; i < NJPEG; i++) {
+            aanScale[i] = Math.cos(i * Math.PI / 16.0) * Math.sqrt(2.0);
+        }
+        for (i = 0; i < NJPEG; i++) {
+            for (j = 0; j < NJPEG; j++) {
+                this.fastFwdScale[i * NJPEG + j] = 1.0 / (aanScale[i] * aanScale[j] * NJPEG);
+                this.fastInvScale[i * NJPEG + j] = aanScale[i] * aanScale[j] / NJPEG;
+            }
+        }
+    }
+
+    /**
+     * Select the implementation to be used for the 8x8 DCT methods. The fast implementation uses the AAN (Arai, Agui
+     * and Nakajima) algorithm instead of matrix multiplication. It is mathematically equivalent, but being a different
+     * sequence of floating point operations, results may differ in the last bits, and hence rarely in quantized values
+     * which lie exactly on a rounding boundary (see {@link #compareFastDct8x8(int, long)}). Default is the reference
+     * (matrix) implementation. The DctLSB plugin selects the fast implementation when the <code>fastDct</code>
+     * configuration item (command-line option <code>-fd</code>) is set
+     *
+     * @param fastDct Flag to indicate whether to use the fast implementation
+     */
+    public void setFastDct(boolean fastDct) {
+        this.fastDct = fastDct;
+    }
+
+    /**
+     * Check whether the fast implementation is used for the 8x8 DCT methods
+     *
+     * @return Flag to indicate whether the fast implementation is used
+     */
+    public boolean isFastDct() {
+        return this.fastDct;
+    }
+
+    /**
+     * Compare the quantized coefficients produced by the fast and the reference implementations of the 8x8 forward
+     * DCT over pseudo-random blocks of pixel values. The current quantization table is used, and the same seed always
+     * produces the same blocks, so that the check is repeatable. Coefficients which lie exactly on a rounding boundary
+     * (e.g. a DC value which is an odd multiple of half the quantum) are not counted, as either result is correct
+     *
+     * @param numBlocks Number of 8x8 blocks to compare
+     * @param seed Seed for generating the pixel values
+     * @return Number of quantized coefficients (not on a rounding boundary) which differ between the two
+     *         implementations
+     */
+    public int compareFastDct8x8(int numBlocks, long seed) {
+        Random rand = new Random(seed);
+        boolean origFastDct = this.fastDct;
+        int[][] pixels = new int[NJPEG][NJPEG];
+        double[][] refCoeffs = new double[NJPEG][NJPEG];
+        double[][] fastCoeffs = new double[NJPEG][NJPEG];
+        double ref = 0.0;
+        double scaled = 0.0;
+        int mismatches = 0;
+
+        try {
+            for (int n = 0; n < numBlocks; n++) {
+                for (int i = 0; i < NJPEG; i++) {
+                    for (int j = 0; j < NJPEG; j++) {
+                        pixels[i][j] = rand.nextInt(256);
+                    }
+                }
+
+                this.fastDct = false;
+                fwdDct8x8(pixels, refCoeffs);
+                this.fastDct = true;
+                fwdDct8x8(pixels, fastCoeffs);
+
+                for (int k = 0; k < NJPEG * NJPEG; k++) {
+                    ref = refCoeffs[k / NJPEG][k % NJPEG];
+                    if (quantizeCoeff8x8(ref, k) != quantizeCoeff8x8(fastCoeffs[k / NJPEG][k % NJPEG], k)) {
+                        // Values lying exactly on a rounding boundary may legitimately go either way
+                        scaled = Math.abs(ref / this.Quantum[k / NJPEG][k % NJPEG]);
+                        if (Math.abs(scaled - Math.floor(scaled) - 0.5) > 1e-9) {
+                            mismatches++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            this.fastDct = origFastDct;
+        }
+        return mismatches;
+    }
+
+    /**
+     * Perform forward DCT in-place on the 8x8 block stored row-wise in a flat array, using the AAN algorithm. Input
+     * values should already be level shifted (128 subtracted). Output values are the same as the ones produced by
+     * {@link #fwdDct8x8(int[][], double[][])}, up to floating point precision
+     *
+     * @param block Block of 64 values
+     */
+    public void fwdDctFast8x8(double[] block) {
+        for (int i = 0; i < NJPEG; i++) {
+            fwdAan8(block, i * NJPEG, 1);
+        }
+        for (int j = 0; j < NJPEG; j++) {
+            fwdAan8(block, j, NJPEG);
+        }
+        for (int k = 0; k < NJPEG * NJPEG; k++) {
+            block[k] *= this.fastFwdScale[k];
+        }
+    }
+
+    /**
+     * Perform inverse DCT in-place on the 8x8 block stored row-wise in a flat array, using the AAN algorithm. Output
+     * values are neither level shifted nor rounded
+     *
+     * @param block Block of 64 values
+     */
+    public void invDctFast8x8(double[] block) {
+        for (int k = 0; k < NJPEG * NJPEG; k++) {
+            block[k] *= this.fastInvScale[k];
+        }
+        for (int j = 0; j < NJPEG; j++) {
+            invAan8(block, j, NJPEG);
+        }
+        for (int i = 0; i < NJPEG; i++) {
+            invAan8(block, i * NJPEG, 1);
+        }
     }
 
     /**
@@ -472,12 +619,25 @@ public class DCT {
      * @param output Output matrix
      */
     public void fwdDct8x8(int[][] input, double[][] output) {
-        double[][] temp = new double[NJPEG][NJPEG];
+        double[][] temp = this.tmpDoubleArray;
         double temp1 = 0.0;
         int i = 0;
         int j = 0;
         int k = 0;
 
+        if (this.fastDct) {
+            for (i = 0; i < NJPEG; i++) {
+                for (j = 0; j < NJPEG; j++) {
+                    this.fastBlock[i * NJPEG + j] = input[i][j] - 128;
+                }
+            }
+            fwdDctFast8x8(this.fastBlock);
+            for (i = 0; i < NJPEG; i++) {
+                System.arraycopy(this.fastBlock, i * NJPEG, output[i], 0, NJPEG);
+            }
+            return;
+        }
+
         // MatrixMultiply(temp, input, Ct)
         for (i = 0; i < NJPEG; i++) {
             for (j = 0; j < NJPEG; j++) {
@@ -518,6 +678,56 @@ public class DCT {
         fwdDct8x8(this.tmpIntArray, output);
     }
 
+    /**
+     * Perform forward DCT on a given 8x8 block of the input plane
+     *
+     * @param input Input plane, stored row-wise
+     * @param offset Index of the top-left value of the 8x8 block
+     * @param stride Distance between the start of two consecutive rows in the plane
+     * @param output Output matrix
+     */
+    public void fwdDctBlock8x8(int[] input, int offset, int stride, double[][] output) {
+        for (int i = 0; i < NJPEG; i++) {
+            System.arraycopy(input, offset + i * stride, this.tmpIntArray[i], 0, NJPEG);
+        }
+
+        fwdDct8x8(this.tmpIntArray, output);
+    }
+
+    /**
+     * Perform forward DCT on a given 8x8 block of the input plane, computing only a single coefficient. The result is
+     * identical to the corresponding coefficient computed by {@link #fwdDctBlock8x8(int[], int, int, double[][])}
+     * (The fast implementation, if selected, always transforms the whole block)
+     *
+     * @param input Input plane, stored row-wise
+     * @param offset Index of the top-left value of the 8x8 block
+     * @param stride Distance between the start of two consecutive rows in the plane
+     * @param coeffNum Coefficient number (row-major index within the 8x8 block)
+     * @return DCT coefficient
+     */
+    public double fwdDctCoeffBlock8x8(int[] input, int offset, int stride, int coeffNum) {
+        int u = coeffNum / NJPEG;
+        int v = coeffNum % NJPEG;
+        double temp = 0.0;
+        double temp1 = 0.0;
+        int rowStart = 0;
+
+        if (this.fastDct) {
+            fwdDctBlock8x8(input, offset, stride, this.tmpDoubleArray);
+            return this.tmpDoubleArray[u][v];
+        }
+
+        for (int k = 0; k < NJPEG; k++) {
+            rowStart = offset + k * stride;
+            temp = 0.0;
+            for (int m = 0; m < NJPEG; m++) {
+                temp += (input[rowStart + m] - 128) * this.Ct[m][v];
+            }
+            temp1 += this.C[u][k] * temp;
+        }
+        return temp1;
+    }
+
     /**
      * Perform inverse DCT on the 8x8 matrix
      *
@@ -525,12 +735,25 @@ public class DCT {
      * @param output Output matrix
      */
     public void invDct8x8(double[][] input, int[][] output) {
-        double[][] temp = new double[NJPEG][NJPEG];
+        double[][] temp = this.tmpDoubleArray;
         double temp1 = 0.0;
         int i = 0;
         int j = 0;
         int k = 0;
 
+        if (this.fastDct) {
+            for (i = 0; i < NJPEG; i++) {
+                System.arraycopy(input[i], 0, this.fastBlock, i * NJPEG, NJPEG);
+            }
+            invDctFast8x8(this.fastBlock);
+            for (i = 0; i < NJPEG; i++) {
+                for (j = 0; j < NJPEG; j++) {
+                    output[i][j] = ImageUtil.pixelRange(round(this.fastBlock[i * NJPEG + j] + 128.0));
+                }
+            }
+            return;
+        }
+
         // MatrixMultiply(temp, input, C)
         for (i = 0; i < NJPEG; i++) {
             for (j = 0; j < NJPEG; j++) {
@@ -572,6 +795,22 @@ public class DCT {
         }
     }
 
+    /**
+     * Perform inverse DCT to given 8x8 block of the output plane
+     *
+     * @param input Input matrix (8x8)
+     * @param output Output plane, stored row-wise
+     * @param offset Index of the top-left value of the 8x8 block
+     * @param stride Distance between the start of two consecutive rows in the plane
+     */
+    public void invDctBlock8x8(double[][] input, int[] output, int offset, int stride) {
+        invDct8x8(input, this.tmpIntArray);
+
+        for (int i = 0; i < NJPEG; i++) {
+            System.arraycopy(this.tmpIntArray[i], 0, output, offset + i * stride, NJPEG);
+        }
+    }
+
     /**
      * Check whether the coefficient is part of the middle frequencies
      *
@@ -627,6 +866,119 @@ public class DCT {
         return ((a < 0) ? (int) (a - 0.5) : (int) (a + 0.5));
     }
 
+    /**
+     * One dimensional 8-point forward DCT using the AAN algorithm (scaled output)
+     *
+     * @param f Data array
+     * @param off Offset of the first point
+     * @param stride Distance between consecutive points
+     */
+    private static void fwdAan8(double[] f, int off, int stride) {
+        int i0 = off;
+        int i1 = i0 + stride;
+        int i2 = i1 + stride;
+        int i3 = i2 + stride;
+        int i4 = i3 + stride;
+        int i5 = i4 + stride;
+        int i6 = i5 + stride;
+        int i7 = i6 + stride;
+
+        double tmp0 = f[i0] + f[i7];
+        double tmp7 = f[i0] - f[i7];
+        double tmp1 = f[i1] + f[i6];
+        double tmp6 = f[i1] - f[i6];
+        double tmp2 = f[i2] + f[i5];
+        double tmp5 = f[i2] - f[i5];
+        double tmp3 = f[i3] + f[i4];
+        double tmp4 = f[i3] - f[i4];
+
+        // Even part
+        double tmp10 = tmp0 + tmp3;
+        double tmp13 = tmp0 - tmp3;
+        double tmp11 = tmp1 + tmp2;
+        double tmp12 = tmp1 - tmp2;
+
+        f[i0] = tmp10 + tmp11;
+        f[i4] = tmp10 - tmp11;
+
+        double z1 = (tmp12 + tmp13) * 0.707106781186547524;
+        f[i2] = tmp13 + z1;
+        f[i6] = tmp13 - z1;
+
+        // Odd part
+        tmp10 = tmp4 + tmp5;
+        tmp11 = tmp5 + tmp6;
+        tmp12 = tmp6 + tmp7;
+
+        double z5 = (tmp10 - tmp12) * 0.382683432365089772;
+        double z2 = 0.541196100146196984 * tmp10 + z5;
+        double z4 = 1.306562964876376527 * tmp12 + z5;
+        double z3 = tmp11 * 0.707106781186547524;
+
+        double z11 = tmp7 + z3;
+        double z13 = tmp7 - z3;
+
+        f[i5] = z13 + z2;
+        f[i3] = z13 - z2;
+        f[i1] = z11 + z4;
+        f[i7] = z11 - z4;
+    }
+
+    /**
+     * One dimensional 8-point inverse DCT using the AAN algorithm (scaled input)
+     *
+     * @param f Data array
+     * @param off Offset of the first point
+     * @param stride Distance between consecutive points
+     */
+    private static void invAan8(double[] f, int off, int stride) {
+        int i0 = off;
+        int i1 = i0 + stride;
+        int i2 = i1 + stride;
+        int i3 = i2 + stride;
+        int i4 = i3 + stride;
+        int i5 = i4 + stride;
+        int i6 = i5 + stride;
+        int i7 = i6 + stride;
+
+        // Even part
+        double tmp10 = f[i0] + f[i4];
+        double tmp11 = f[i0] - f[i4];
+        double tmp13 = f[i2] + f[i6];
+        double tmp12 = (f[i2] - f[i6]) * 1.414213562373095049 - tmp13;
+
+        double tmp0 = tmp10 + tmp13;
+        double tmp3 = tmp10 - tmp13;
+        double tmp1 = tmp11 + tmp12;
+        double tmp2 = tmp11 - tmp12;
+
+        // Odd part
+        double z13 = f[i5] + f[i3];
+        double z10 = f[i5] - f[i3];
+        double z11 = f[i1] + f[i7];
+        double z12 = f[i1] - f[i7];
+
+        double tmp7 = z11 + z13;
+        tmp11 = (z11 - z13) * 1.414213562373095049;
+
+        double z5 = (z10 + z12) * 1.847759065022573512;
+        tmp10 = 1.082392200292393968 * z12 - z5;
+        tmp12 = -2.613125929752753055 * z10 + z5;
+
+        double tmp6 = tmp12 - tmp7;
+        double tmp5 = tmp11 - tmp6;
+        double tmp4 = tmp10 + tmp5;
+
+        f[i0] = tmp0 + tmp7;
+        f[i7] = tmp0 - tmp7;
+        f[i1] = tmp1 + tmp6;
+        f[i6] = tmp1 - tmp6;
+        f[i2] = tmp2 + tmp5;
+        f[i5] = tmp2 - tmp5;
+        f[i4] = tmp3 + tmp4;
+        f[i3] = tmp3 - tmp4;
+    }
+
     private void initCosArray() throws IllegalArgumentException {
         int i;
         int group;
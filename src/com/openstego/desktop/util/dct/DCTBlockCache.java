@@ -0,0 +1,204 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util.dct;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Cache of quantized 8x8 DCT coefficients for the blocks of an image plane. Forward DCT and quantization of a block
+ * is done at most once, when it is first accessed, and the coefficients are kept in a flat array. Modified blocks are
+ * written back to the plane (de-quantization and inverse DCT) only when {@link #flush()} is called.
+ */
+public class DCTBlockCache {
+    /**
+     * Number of coefficients in a block
+     */
+    private static final int BLOCK_SIZE = DCT.NJPEG * DCT.NJPEG;
+
+    /**
+     * Image plane, stored row-wise
+     */
+    private int[] plane = null;
+
+    /**
+     * Distance between the start of two consecutive rows in the image plane
+     */
+    private int stride = 0;
+
+    /**
+     * Object to handle DCT transforms
+     */
+    private DCT dct = null;
+
+    /**
+     * Number of blocks in a row of the plane
+     */
+    private int blockCols = 0;
+
+    /**
+     * Flag to indicate whether blocks will be modified. If not, single coefficients are computed on demand without
+     * transforming (and caching) the whole block
+     */
+    private boolean writable = false;
+
+    /**
+     * Slot number in the coefficient store for each block (-1 if the block is not cached)
+     */
+    private int[] slots = null;
+
+    /**
+     * Quantized coefficients of the cached blocks, <code>BLOCK_SIZE</code> entries per slot
+     */
+    private int[] coeffs = null;
+
+    /**
+     * Block number for each slot in the coefficient store
+     */
+    private int[] slotBlocks = null;
+
+    /**
+     * Number of slots used in the coefficient store
+     */
+    private int noOfSlots = 0;
+
+    /**
+     * Slots which have been modified since the last flush
+     */
+    private BitSet dirty = null;
+
+    /**
+     * Temporary matrix to hold the coefficients of a block
+     */
+    private double[][] tmpBlock = null;
+
+    /**
+     * Default constructor
+     *
+     * @param plane Image plane, stored row-wise
+     * @param stride Distance between the start of two consecutive rows in the plane
+     * @param blockRows Number of rows of 8x8 blocks covered by the cache
+     * @param blockCols Number of columns of 8x8 blocks covered by the cache
+     * @param dct DCT object, already initialized for 8x8 transform and quantization
+     * @param writable Whether the blocks will be modified
+     */
+    public DCTBlockCache(int[] plane, int stride, int blockRows, int blockCols, DCT dct, boolean writable) {
+        this.plane = plane;
+        this.stride = stride;
+        this.blockCols = blockCols;
+        this.dct = dct;
+        this.writable = writable;
+
+        this.slots = new int[blockRows * blockCols];
+        Arrays.fill(this.slots, -1);
+        this.coeffs = new int[BLOCK_SIZE * 16];
+        this.slotBlocks = new int[16];
+        this.dirty = new BitSet();
+        this.tmpBlock = new double[DCT.NJPEG][DCT.NJPEG];
+    }
+
+    /**
+     * Get the quantized DCT coefficient of a block
+     *
+     * @param blockRow Row number of the block
+     * @param blockCol Column number of the block
+     * @param coeffNum Coefficient number (row-major index within the 8x8 block)
+     * @return Quantized coefficient
+     */
+    public int getCoeff(int blockRow, int blockCol, int coeffNum) {
+        int block = blockRow * this.blockCols + blockCol;
+        int slot = this.slots[block];
+
+        if (slot < 0) {
+            if (!this.writable) {
+                return this.dct.quantizeCoeff8x8(
+                    this.dct.fwdDctCoeffBlock8x8(this.plane, getBlockOffset(block), this.stride, coeffNum), coeffNum);
+            }
+            slot = loadBlock(block);
+        }
+        return this.coeffs[slot * BLOCK_SIZE + coeffNum];
+    }
+
+    /**
+     * Set the quantized DCT coefficient of a block
+     *
+     * @param blockRow Row number of the block
+     * @param blockCol Column number of the block
+     * @param coeffNum Coefficient number (row-major index within the 8x8 block)
+     * @param value Quantized coefficient
+     */
+    public void setCoeff(int blockRow, int blockCol, int coeffNum, int value) {
+        int block = blockRow * this.blockCols + blockCol;
+        int slot = this.slots[block];
+
+        if (!this.writable) {
+            throw new IllegalStateException("Block cache is read-only");
+        }
+        if (slot < 0) {
+            slot = loadBlock(block);
+        }
+        this.coeffs[slot * BLOCK_SIZE + coeffNum] = value;
+        this.dirty.set(slot);
+    }
+
+    /**
+     * Write all the modified blocks back to the image plane
+     */
+    public void flush() {
+        int offset = 0;
+
+        for (int slot = this.dirty.nextSetBit(0); slot >= 0; slot = this.dirty.nextSetBit(slot + 1)) {
+            offset = slot * BLOCK_SIZE;
+            for (int i = 0; i < DCT.NJPEG; i++) {
+                for (int j = 0; j < DCT.NJPEG; j++) {
+                    this.tmpBlock[i][j] = this.coeffs[offset++];
+                }
+            }
+
+            this.dct.dequantize8x8(this.tmpBlock);
+            this.dct.invDctBlock8x8(this.tmpBlock, this.plane, getBlockOffset(this.slotBlocks[slot]), this.stride);
+        }
+        this.dirty.clear();
+    }
+
+    /**
+     * Transform and quantize the given block, and store its coefficients in a new slot
+     *
+     * @param block Block number
+     * @return Slot number
+     */
+    private int loadBlock(int block) {
+        int slot = this.noOfSlots++;
+        int offset = slot * BLOCK_SIZE;
+
+        if (slot == this.slotBlocks.length) {
+            this.slotBlocks = Arrays.copyOf(this.slotBlocks, slot * 2);
+            this.coeffs = Arrays.copyOf(this.coeffs, slot * 2 * BLOCK_SIZE);
+        }
+        this.slotBlocks[slot] = block;
+        this.slots[block] = slot;
+
+        this.dct.fwdDctBlock8x8(this.plane, getBlockOffset(block), this.stride, this.tmpBlock);
+        this.dct.quantize8x8(this.tmpBlock);
+        for (int i = 0; i < DCT.NJPEG; i++) {
+            for (int j = 0; j < DCT.NJPEG; j++) {
+                this.coeffs[offset++] = (int) this.tmpBlock[i][j];
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Get the index of the top-left value of the given block in the plane
+     *
+     * @param block Block number
+     * @return Index in the plane
+     */
+    private int getBlockOffset(int block) {
+        return (block / this.blockCols) * DCT.NJPEG * this.stride + (block % this.blockCols) * DCT.NJPEG;
+    }
+}
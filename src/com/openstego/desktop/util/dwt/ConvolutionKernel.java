@@ -0,0 +1,829 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util.dwt;
+
+import java.util.Arrays;
+
+import com.openstego.desktop.util.CommonUtil;
+
+/**
+ * Convolution kernel for a given filter and wavelet filtering method. The kernel is resolved once per filter and
+ * method, and then applied to any number of lines or columns.
+ * <p>
+ * Outputs whose filter taps all fall inside the input are computed by plain loops, without any boundary handling. Only
+ * the few outputs near the ends of the input go through the boundary extension (cut-off, periodical or mirror) of
+ * the method. The taps of those outputs are listed in a table, which is built once per input and output length. Both
+ * paths accumulate the taps in the same order as the filter routines in {@link DWTUtil}, so the results are identical
+ * to those routines.
+ * <p>
+ * Single precision data is convoluted with the filter coefficients rounded to single precision, and the sums are
+ * accumulated in single precision.
+ */
+public abstract class ConvolutionKernel {
+    /**
+     * Filter coefficients
+     */
+    private double[] taps = null;
+
+    /**
+     * Filter coefficients in single precision
+     */
+    private float[] floatTaps = null;
+
+    /**
+     * Start value of the filter
+     */
+    protected int start = 0;
+
+    /**
+     * End value of the filter
+     */
+    protected int end = 0;
+
+    /**
+     * Flag to indicate whether this is an inverse (up-sampling) kernel
+     */
+    private boolean inverse = false;
+
+    /**
+     * Boundary table for the last input and output lengths used
+     */
+    private volatile BoundaryTable table = null;
+
+    /**
+     * Default constructor
+     *
+     * @param filter Filter
+     * @param inverse Flag to indicate whether this is an inverse (up-sampling) kernel
+     */
+    protected ConvolutionKernel(Filter filter, boolean inverse) {
+        this.taps = filter.getData();
+        this.floatTaps = new float[this.taps.length];
+        for (int i = 0; i < this.taps.length; i++) {
+            this.floatTaps[i] = (float) this.taps[i];
+        }
+        this.start = filter.getStart();
+        this.end = filter.getEnd();
+        this.inverse = inverse;
+    }
+
+    /**
+     * Get the kernel for the given filter and wavelet filtering method
+     *
+     * @param filter Filter
+     * @param method Wavelet filtering method
+     * @return Convolution kernel, or <code>null</code> if the method is not supported
+     */
+    public static ConvolutionKernel getInstance(Filter filter, int method) {
+        switch (method) {
+            case Filter.METHOD_CUTOFF:
+                return new CutOffKernel(filter);
+            case Filter.METHOD_INVCUTOFF:
+                return new InvCutOffKernel(filter);
+            case Filter.METHOD_PERIODICAL:
+                return new PeriodicalKernel(filter);
+            case Filter.METHOD_INVPERIODICAL:
+                return new InvPeriodicalKernel(filter);
+            case Filter.METHOD_MIRROR:
+                return new MirrorKernel(filter);
+            case Filter.METHOD_INVMIRROR:
+                return new InvMirrorKernel(filter);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Method to convolute one line of data, adding the result to the output
+     *
+     * @param input Input data
+     * @param inStart Start point for input data
+     * @param inLen Length of input data
+     * @param inStep Step for loop for input data
+     * @param output Output data
+     * @param outStart Start point for output data
+     * @param outLen Length of output data
+     * @param outStep Step for loop for output data
+     */
+    public void convolute(double[] input, int inStart, int inLen, int inStep, double[] output, int outStart, int outLen, int outStep) {
+        BoundaryTable table = getBoundaryTable(inLen, outLen);
+        int loEnd = table.loEnd;
+        int hiStart = table.hiStart;
+        int n = this.end - this.start + 1;
+        int outPos = 0;
+        int inPos = 0;
+        int jStart = 0;
+        int jEnd = 0;
+        double sum = 0.0;
+
+        for (int i = 0; i < loEnd; i++) {
+            convoluteBoundary(input, inStart, inStep, output, outStart + i * outStep, table, i);
+        }
+
+        outPos = outStart + loEnd * outStep;
+        if (this.inverse) {
+            for (int i = loEnd; i < hiStart; i++) {
+                jStart = (this.start + i + 1) >> 1;
+                jEnd = (this.end + i) >> 1;
+                inPos = inStart + jStart * inStep;
+                sum = output[outPos];
+                for (int k = 2 * jStart - i - this.start, kEnd = 2 * jEnd - i - this.start; k <= kEnd; k += 2) {
+                    sum += this.taps[k] * input[inPos];
+                    inPos += inStep;
+                }
+                output[outPos] = sum;
+                outPos += outStep;
+            }
+        } else {
+            for (int i = loEnd; i < hiStart; i++) {
+                inPos = inStart + (2 * i - this.start) * inStep;
+                sum = output[outPos];
+                for (int k = 0; k < n; k++) {
+                    sum += this.taps[k] * input[inPos];
+                    inPos -= inStep;
+                }
+                output[outPos] = sum;
+                outPos += outStep;
+            }
+        }
+
+        for (int i = hiStart; i < outLen; i++) {
+            convoluteBoundary(input, inStart, inStep, output, outStart + i * outStep, table, i);
+        }
+    }
+
+    /**
+     * Method to convolute a range of adjacent columns of data, adding the result to the output. The data of each
+     * column is stored with a step of <code>inStep</code> (or <code>outStep</code>), and the columns are processed
+     * together so that the innermost loop runs over contiguous memory
+     *
+     * @param input Input data
+     * @param inLen Length of input columns
+     * @param inStep Step between two values of an input column
+     * @param output Output data
+     * @param outLen Length of output columns
+     * @param outStep Step between two values of an output column
+     * @param colStart First column to convolute
+     * @param colEnd Column after the last one to convolute
+     */
+    public void convoluteColumns(double[] input, int inLen, int inStep, double[] output, int outLen, int outStep, int colStart, int colEnd) {
+        BoundaryTable table = getBoundaryTable(inLen, outLen);
+        int loEnd = table.loEnd;
+        int hiStart = table.hiStart;
+        int n = this.end - this.start + 1;
+        int outPos = 0;
+        int inPos = 0;
+        int jStart = 0;
+        int jEnd = 0;
+        double tap = 0.0;
+
+        for (int i = 0; i < loEnd; i++) {
+            for (int c = colStart; c < colEnd; c++) {
+                convoluteBoundary(input, c, inStep, output, i * outStep + c, table, i);
+            }
+        }
+
+        for (int i = loEnd; i < hiStart; i++) {
+            outPos = i * outStep;
+            if (this.inverse) {
+                jStart = (this.start + i + 1) >> 1;
+                jEnd = (this.end + i) >> 1;
+                for (int j = jStart; j <= jEnd; j++) {
+                    tap = this.taps[2 * j - i - this.start];
+                    inPos = j * inStep;
+                    for (int c = colStart; c < colEnd; c++) {
+                        output[outPos + c] += tap * input[inPos + c];
+                    }
+                }
+            } else {
+                for (int k = 0; k < n; k++) {
+                    tap = this.taps[k];
+                    inPos = (2 * i - this.start - k) * inStep;
+                    for (int c = colStart; c < colEnd; c++) {
+                        output[outPos + c] += tap * input[inPos + c];
+                    }
+                }
+            }
+        }
+
+        for (int i = hiStart; i < outLen; i++) {
+            for (int c = colStart; c < colEnd; c++) {
+                convoluteBoundary(input, c, inStep, output, i * outStep + c, table, i);
+            }
+        }
+    }
+
+    /**
+     * Method to convolute one line of single precision data, adding the result to the output
+     *
+     * @param input Input data
+     * @param inStart Start point for input data
+     * @param inLen Length of input data
+     * @param inStep Step for loop for input data
+     * @param output Output data
+     * @param outStart Start point for output data
+     * @param outLen Length of output data
+     * @param outStep Step for loop for output data
+     */
+    public void convolute(float[] input, int inStart, int inLen, int inStep, float[] output, int outStart, int outLen, int outStep) {
+        BoundaryTable table = getBoundaryTable(inLen, outLen);
+        int loEnd = table.loEnd;
+        int hiStart = table.hiStart;
+        int n = this.end - this.start + 1;
+        int outPos = 0;
+        int inPos = 0;
+        int jStart = 0;
+        int jEnd = 0;
+        float sum = 0.0f;
+
+        for (int i = 0; i < loEnd; i++) {
+            convoluteBoundary(input, inStart, inStep, output, outStart + i * outStep, table, i);
+        }
+
+        outPos = outStart + loEnd * outStep;
+        if (this.inverse) {
+            for (int i = loEnd; i < hiStart; i++) {
+                jStart = (this.start + i + 1) >> 1;
+                jEnd = (this.end + i) >> 1;
+                inPos = inStart + jStart * inStep;
+                sum = output[outPos];
+                for (int k = 2 * jStart - i - this.start, kEnd = 2 * jEnd - i - this.start; k <= kEnd; k += 2) {
+                    sum += this.floatTaps[k] * input[inPos];
+                    inPos += inStep;
+                }
+                output[outPos] = sum;
+                outPos += outStep;
+            }
+        } else {
+            for (int i = loEnd; i < hiStart; i++) {
+                inPos = inStart + (2 * i - this.start) * inStep;
+                sum = output[outPos];
+                for (int k = 0; k < n; k++) {
+                    sum += this.floatTaps[k] * input[inPos];
+                    inPos -= inStep;
+                }
+                output[outPos] = sum;
+                outPos += outStep;
+            }
+        }
+
+        for (int i = hiStart; i < outLen; i++) {
+            convoluteBoundary(input, inStart, inStep, output, outStart + i * outStep, table, i);
+        }
+    }
+
+    /**
+     * Method to convolute a range of adjacent columns of single precision data, adding the result to the output. The data of each
+     * column is stored with a step of <code>inStep</code> (or <code>outStep</code>), and the columns are processed
+     * together so that the innermost loop runs over contiguous memory
+     *
+     * @param input Input data
+     * @param inLen Length of input columns
+     * @param inStep Step between two values of an input column
+     * @param output Output data
+     * @param outLen Length of output columns
+     * @param outStep Step between two values of an output column
+     * @param colStart First column to convolute
+     * @param colEnd Column after the last one to convolute
+     */
+    public void convoluteColumns(float[] input, int inLen, int inStep, float[] output, int outLen, int outStep, int colStart, int colEnd) {
+        BoundaryTable table = getBoundaryTable(inLen, outLen);
+        int loEnd = table.loEnd;
+        int hiStart = table.hiStart;
+        int n = this.end - this.start + 1;
+        int outPos = 0;
+        int inPos = 0;
+        int jStart = 0;
+        int jEnd = 0;
+        float tap = 0.0f;
+
+        for (int i = 0; i < loEnd; i++) {
+            for (int c = colStart; c < colEnd; c++) {
+                convoluteBoundary(input, c, inStep, output, i * outStep + c, table, i);
+            }
+        }
+
+        for (int i = loEnd; i < hiStart; i++) {
+            outPos = i * outStep;
+            if (this.inverse) {
+                jStart = (this.start + i + 1) >> 1;
+                jEnd = (this.end + i) >> 1;
+                for (int j = jStart; j <= jEnd; j++) {
+                    tap = this.floatTaps[2 * j - i - this.start];
+                    inPos = j * inStep;
+                    for (int c = colStart; c < colEnd; c++) {
+                        output[outPos + c] += tap * input[inPos + c];
+                    }
+                }
+            } else {
+                for (int k = 0; k < n; k++) {
+                    tap = this.floatTaps[k];
+                    inPos = (2 * i - this.start - k) * inStep;
+                    for (int c = colStart; c < colEnd; c++) {
+                        output[outPos + c] += tap * input[inPos + c];
+                    }
+                }
+            }
+        }
+
+        for (int i = hiStart; i < outLen; i++) {
+            for (int c = colStart; c < colEnd; c++) {
+                convoluteBoundary(input, c, inStep, output, i * outStep + c, table, i);
+            }
+        }
+    }
+
+    /**
+     * Method to compute one output row of a column convolution, adding the result to the output. This gives the same
+     * values as {@link #convoluteColumns(double[], int, int, double[], int, int, int, int)} for that row, but needs only
+     * the input rows which contribute to it (see {@link #getInputRows(int, int, int, int[])})
+     *
+     * @param inputRows Data for each input row (only the contributing rows are needed)
+     * @param inputOffsets Start point of each input row in its data
+     * @param inLen Length of input columns
+     * @param output Output data
+     * @param outStart Start point of the output row
+     * @param outLen Length of output columns
+     * @param i Index of the output row
+     * @param width Number of columns
+     */
+    void convoluteRow(double[][] inputRows, int[] inputOffsets, int inLen, double[] output, int outStart, int outLen, int i, int width) {
+        BoundaryTable table = getBoundaryTable(inLen, outLen);
+        int[] tapIndex = null;
+        int[] inIndex = null;
+        int jStart = 0;
+        int jEnd = 0;
+
+        if (i < table.loEnd || i >= table.hiStart) {
+            tapIndex = table.tapIndex[(i < table.loEnd) ? i : table.loEnd + i - table.hiStart];
+            inIndex = table.inIndex[(i < table.loEnd) ? i : table.loEnd + i - table.hiStart];
+            for (int k = 0; k < tapIndex.length; k++) {
+                addRow(inputRows[inIndex[k]], inputOffsets[inIndex[k]], this.taps[tapIndex[k]], output, outStart, width);
+            }
+        } else if (this.inverse) {
+            jStart = (this.start + i + 1) >> 1;
+            jEnd = (this.end + i) >> 1;
+            for (int j = jStart; j <= jEnd; j++) {
+                addRow(inputRows[j], inputOffsets[j], this.taps[2 * j - i - this.start], output, outStart, width);
+            }
+        } else {
+            for (int k = 0, n = getLength(); k < n; k++) {
+                addRow(inputRows[2 * i - this.start - k], inputOffsets[2 * i - this.start - k], this.taps[k], output, outStart, width);
+            }
+        }
+    }
+
+    /**
+     * Method to list the input rows which contribute to one output row of a column convolution, in the order in which
+     * they are accumulated. A row may be listed more than once
+     *
+     * @param inLen Length of input columns
+     * @param outLen Length of output columns
+     * @param i Index of the output row
+     * @param inIndex Array to receive the input row indices (at least {@link #getLength()} long)
+     * @return Number of input rows listed
+     */
+    int getInputRows(int inLen, int outLen, int i, int[] inIndex) {
+        BoundaryTable table = getBoundaryTable(inLen, outLen);
+        int[] rows = null;
+        int count = 0;
+
+        if (i < table.loEnd || i >= table.hiStart) {
+            rows = table.inIndex[(i < table.loEnd) ? i : table.loEnd + i - table.hiStart];
+            System.arraycopy(rows, 0, inIndex, 0, rows.length);
+            return rows.length;
+        } else if (this.inverse) {
+            for (int j = (this.start + i + 1) >> 1, jEnd = (this.end + i) >> 1; j <= jEnd; j++) {
+                inIndex[count++] = j;
+            }
+        } else {
+            for (int k = 0, n = getLength(); k < n; k++) {
+                inIndex[count++] = 2 * i - this.start - k;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of filter taps
+     *
+     * @return Number of taps
+     */
+    int getLength() {
+        return this.end - this.start + 1;
+    }
+
+    /**
+     * Utility method to add a scaled input row to an output row
+     *
+     * @param input Input data
+     * @param inStart Start point of the input row
+     * @param tap Scale factor
+     * @param output Output data
+     * @param outStart Start point of the output row
+     * @param width Number of columns
+     */
+    private static void addRow(double[] input, int inStart, double tap, double[] output, int outStart, int width) {
+        for (int c = 0; c < width; c++) {
+            output[outStart + c] += tap * input[inStart + c];
+        }
+    }
+
+    /**
+     * Get the first output position whose filter taps all fall inside the input
+     *
+     * @return Start of the interior region
+     */
+    private int getInteriorStart() {
+        if (this.inverse) {
+            return CommonUtil.max(-1 - this.start, 0);
+        } else {
+            return CommonUtil.max(CommonUtil.ceilingHalf(this.end), 0);
+        }
+    }
+
+    /**
+     * Get the output position after the last one whose filter taps all fall inside the input
+     *
+     * @param inLen Length of input data
+     * @param outLen Length of output data
+     * @return End of the interior region
+     */
+    private int getInteriorEnd(int inLen, int outLen) {
+        if (this.inverse) {
+            return CommonUtil.min(2 * inLen - this.end, outLen);
+        } else {
+            return CommonUtil.min(CommonUtil.floorHalf(inLen - 1 + this.start) + 1, outLen);
+        }
+    }
+
+    /**
+     * Precompute the boundary handling for the given input and output lengths, so that the first convolution of data
+     * with these lengths does not need to do it
+     *
+     * @param inLen Length of input data
+     * @param outLen Length of output data
+     */
+    public void prepare(int inLen, int outLen) {
+        getBoundaryTable(inLen, outLen);
+    }
+
+    /**
+     * Get the boundary table for the given input and output lengths. The table of the last lengths used is kept, so
+     * that it is built only once for all the lines (or columns) of an image
+     *
+     * @param inLen Length of input data
+     * @param outLen Length of output data
+     * @return Boundary table
+     */
+    private BoundaryTable getBoundaryTable(int inLen, int outLen) {
+        BoundaryTable table = this.table;
+
+        if (table == null || table.inLen != inLen || table.outLen != outLen) {
+            table = new BoundaryTable(inLen, outLen);
+            this.table = table;
+        }
+        return table;
+    }
+
+    /**
+     * Method to compute one output value near the ends of the input, using the boundary table
+     *
+     * @param input Input data
+     * @param inStart Start point for input data
+     * @param inStep Step for loop for input data
+     * @param output Output data
+     * @param outPos Position of the output value
+     * @param table Boundary table for the input and output lengths
+     * @param i Index of the output value
+     */
+    private void convoluteBoundary(double[] input, int inStart, int inStep, double[] output, int outPos, BoundaryTable table, int i) {
+        int b = (i < table.loEnd) ? i : table.loEnd + i - table.hiStart;
+        int[] tapIndex = table.tapIndex[b];
+        int[] inIndex = table.inIndex[b];
+
+        for (int k = 0; k < tapIndex.length; k++) {
+            output[outPos] += this.taps[tapIndex[k]] * input[inStart + inIndex[k] * inStep];
+        }
+    }
+
+    /**
+     * Method to compute one single precision output value near the ends of the input, using the boundary table
+     *
+     * @param input Input data
+     * @param inStart Start point for input data
+     * @param inStep Step for loop for input data
+     * @param output Output data
+     * @param outPos Position of the output value
+     * @param table Boundary table for the input and output lengths
+     * @param i Index of the output value
+     */
+    private void convoluteBoundary(float[] input, int inStart, int inStep, float[] output, int outPos, BoundaryTable table, int i) {
+        int b = (i < table.loEnd) ? i : table.loEnd + i - table.hiStart;
+        int[] tapIndex = table.tapIndex[b];
+        int[] inIndex = table.inIndex[b];
+
+        for (int k = 0; k < tapIndex.length; k++) {
+            output[outPos] += this.floatTaps[tapIndex[k]] * input[inStart + inIndex[k] * inStep];
+        }
+    }
+
+    /**
+     * Method to list the filter taps which contribute to one output value near the ends of the input, using the
+     * boundary extension of the method. The taps are listed in the order in which they are to be accumulated
+     *
+     * @param inLen Length of input data
+     * @param i Index of the output value
+     * @param tapIndex Array to receive the index of each tap in the filter coefficients
+     * @param inIndex Array to receive the index of the input value (before applying the input start and step) for
+     *        each tap
+     * @return Number of taps
+     */
+    protected abstract int getBoundaryTaps(int inLen, int i, int[] tapIndex, int[] inIndex);
+
+    /**
+     * Table of the filter taps and input positions for the outputs near the ends of the input, for one pair of input
+     * and output lengths. The table is immutable once built, so it can be used by several threads at once
+     */
+    private class BoundaryTable {
+        /**
+         * Length of input data
+         */
+        private final int inLen;
+
+        /**
+         * Length of output data
+         */
+        private final int outLen;
+
+        /**
+         * Start of the interior region (number of outputs at the start which need boundary handling)
+         */
+        private final int loEnd;
+
+        /**
+         * End of the interior region (outputs from here on need boundary handling)
+         */
+        private final int hiStart;
+
+        /**
+         * Tap indices for each boundary output (outputs at the start first, then those at the end)
+         */
+        private final int[][] tapIndex;
+
+        /**
+         * Input indices for each boundary output (outputs at the start first, then those at the end)
+         */
+        private final int[][] inIndex;
+
+        /**
+         * Default constructor
+         *
+         * @param inLen Length of input data
+         * @param outLen Length of output data
+         */
+        private BoundaryTable(int inLen, int outLen) {
+            int n = ConvolutionKernel.this.end - ConvolutionKernel.this.start + 1;
+            int[] taps = new int[n];
+            int[] inputs = new int[n];
+            int count = 0;
+            int b = 0;
+
+            this.inLen = inLen;
+            this.outLen = outLen;
+            this.loEnd = CommonUtil.min(getInteriorStart(), outLen);
+            this.hiStart = CommonUtil.max(getInteriorEnd(inLen, outLen), this.loEnd);
+            this.tapIndex = new int[this.loEnd + outLen - this.hiStart][];
+            this.inIndex = new int[this.tapIndex.length][];
+
+            for (int i = 0; i < outLen; i++) {
+                if (i >= this.loEnd && i < this.hiStart) {
+                    continue;
+                }
+                count = getBoundaryTaps(inLen, i, taps, inputs);
+                this.tapIndex[b] = Arrays.copyOf(taps, count);
+                this.inIndex[b++] = Arrays.copyOf(inputs, count);
+            }
+        }
+    }
+
+    /**
+     * Kernel for cut-off filter
+     */
+    private static class CutOffKernel extends ConvolutionKernel {
+        /**
+         * Default constructor
+         *
+         * @param filter Filter
+         */
+        private CutOffKernel(Filter filter) {
+            super(filter, false);
+        }
+
+        @Override
+        protected int getBoundaryTaps(int inLen, int i, int[] tapIndex, int[] inIndex) {
+            int count = 0;
+            int fStart = CommonUtil.max((2 * i) - (inLen - 1), this.start);
+            int fEnd = CommonUtil.min((2 * i), this.end);
+
+            for (int j = fStart; j <= fEnd; j++) {
+                tapIndex[count] = j - this.start;
+                inIndex[count++] = (2 * i) - j;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Kernel for inverse cut-off filter
+     */
+    private static class InvCutOffKernel extends ConvolutionKernel {
+        /**
+         * Default constructor
+         *
+         * @param filter Filter
+         */
+        private InvCutOffKernel(Filter filter) {
+            super(filter, true);
+        }
+
+        @Override
+        protected int getBoundaryTaps(int inLen, int i, int[] tapIndex, int[] inIndex) {
+            int count = 0;
+            int fStart = CommonUtil.max(CommonUtil.ceilingHalf(this.start + i), 0);
+            int fEnd = CommonUtil.min(CommonUtil.floorHalf(this.end + i), inLen - 1);
+
+            for (int j = fStart; j <= fEnd; j++) {
+                tapIndex[count] = (2 * j) - i - this.start;
+                inIndex[count++] = j;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Kernel for periodical filter
+     */
+    private static class PeriodicalKernel extends ConvolutionKernel {
+        /**
+         * Default constructor
+         *
+         * @param filter Filter
+         */
+        private PeriodicalKernel(Filter filter) {
+            super(filter, false);
+        }
+
+        @Override
+        protected int getBoundaryTaps(int inLen, int i, int[] tapIndex, int[] inIndex) {
+            int count = 0;
+            int iStart = CommonUtil.mod(((2 * i) - this.start), inLen);
+
+            for (int j = this.start; j <= this.end; j++) {
+                tapIndex[count] = j - this.start;
+                inIndex[count++] = iStart;
+                iStart--;
+                if (iStart < 0) {
+                    iStart += inLen;
+                }
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Kernel for inverse periodical filter
+     */
+    private static class InvPeriodicalKernel extends ConvolutionKernel {
+        /**
+         * Default constructor
+         *
+         * @param filter Filter
+         */
+        private InvPeriodicalKernel(Filter filter) {
+            super(filter, true);
+        }
+
+        @Override
+        protected int getBoundaryTaps(int inLen, int i, int[] tapIndex, int[] inIndex) {
+            int count = 0;
+            int fStart = CommonUtil.ceilingHalf(this.start + i);
+            int fEnd = CommonUtil.floorHalf(this.end + i);
+            int iStart = CommonUtil.mod(fStart, inLen);
+
+            for (int j = fStart; j <= fEnd; j++) {
+                tapIndex[count] = (2 * j) - i - this.start;
+                inIndex[count++] = iStart;
+                iStart++;
+                if (iStart >= inLen) {
+                    iStart -= inLen;
+                }
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Kernel for mirror filter
+     */
+    private static class MirrorKernel extends ConvolutionKernel {
+        /**
+         * Default constructor
+         *
+         * @param filter Filter
+         */
+        private MirrorKernel(Filter filter) {
+            super(filter, false);
+        }
+
+        @Override
+        protected int getBoundaryTaps(int inLen, int i, int[] tapIndex, int[] inIndex) {
+            int count = 0;
+            int inPos = 0;
+
+            for (int j = this.start; j <= this.end; j++) {
+                inPos = ((2 * i) - j);
+                if (inPos < 0) {
+                    inPos = -inPos;
+                    if (inPos >= inLen) {
+                        continue;
+                    }
+                }
+                if (inPos >= inLen) {
+                    inPos = 2 * inLen - 2 - inPos;
+                    if (inPos < 0) {
+                        continue;
+                    }
+                }
+                tapIndex[count] = j - this.start;
+                inIndex[count++] = inPos;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Kernel for inverse mirror filter
+     */
+    private static class InvMirrorKernel extends ConvolutionKernel {
+        /**
+         * Flag to indicate whether this is hi-pass filter or not
+         */
+        private boolean hiPass = false;
+
+        /**
+         * Default constructor
+         *
+         * @param filter Filter
+         */
+        private InvMirrorKernel(Filter filter) {
+            super(filter, true);
+            this.hiPass = filter.isHiPass();
+        }
+
+        @Override
+        protected int getBoundaryTaps(int inLen, int i, int[] tapIndex, int[] inIndex) {
+            int count = 0;
+            int fStart = CommonUtil.ceilingHalf(this.start + i);
+            int fEnd = CommonUtil.floorHalf(this.end + i);
+            int inPos = 0;
+
+            for (int j = fStart; j <= fEnd; j++) {
+                inPos = j;
+                if (inPos < 0) {
+                    if (this.hiPass) {
+                        inPos = -inPos - 1;
+                    } else {
+                        inPos = -inPos;
+                    }
+                    if (inPos >= inLen) {
+                        continue;
+                    }
+                }
+                if (inPos >= inLen) {
+                    if (this.hiPass) {
+                        inPos = 2 * inLen - 2 - inPos;
+                    } else {
+                        inPos = 2 * inLen - 1 - inPos;
+                    }
+                    if (inPos < 0) {
+                        continue;
+                    }
+                }
+                tapIndex[count] = 2 * j - i - this.start;
+                inIndex[count++] = inPos;
+            }
+
+            return count;
+        }
+    }
+}
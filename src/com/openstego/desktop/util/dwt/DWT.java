@@ -6,9 +6,10 @@
 
 package com.openstego.desktop.util.dwt;
 
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import com.openstego.desktop.util.ImageUtil;
+import com.openstego.desktop.util.PixelPlanes;
 
 /**
  * Class to handle Discrete Wavelet Transforms (DWT).
@@ -21,62 +22,59 @@ import com.openstego.desktop.util.ImageUtil;
  */
 public class DWT {
     /**
-     * Master map of filters
+     * Plan for the transforms, shared by all the DWT objects for the same image size and filter
      */
-    private static Map<Integer, FilterGH> filterGHMap = null;
+    private DWTPlan plan = null;
 
     /**
-     * URI for the filter file
+     * Lifting scheme to use instead of the filters (<code>null</code> if the filter ID is not a lifting filter)
      */
-    private String filterFile = "/com/openstego/desktop/util/dwt/filters.xml";
+    private LiftingScheme lifting = null;
 
     /**
-     * List of loaded filters
+     * No. of columns in the image
      */
-    private FilterGH[] filters = null;
+    private int cols = 0;
 
     /**
-     * Wavelet filtering method
+     * No. of rows in the image
      */
-    private int method = 0;
+    private int rows = 0;
 
     /**
-     * No. of columns in the image
+     * Thread pool for parallel transforms (<code>null</code> for serial processing)
      */
-    private int cols = 0;
+    private ForkJoinPool pool = null;
 
     /**
-     * No. of rows in the image
+     * Workspace for the image buffers (<code>null</code> to allocate new buffers for every transform)
      */
-    private int rows = 0;
+    private DWTWorkspace workspace = null;
 
     /**
-     * Wavelet decomposition level
+     * Flag to indicate whether the transforms are to be done in single precision
      */
-    private int level = 0;
+    private boolean singlePrecision = false;
 
     /**
-     * Default constructor
+     * Flag to indicate whether the transforms of pixel planes are to be done line by line (see {@link StreamingDWT})
+     */
+    private boolean streaming = false;
+
+    /**
+     * Default constructor. The filters, band sizes and convolution kernels are taken from the cached plan for the
+     * given parameters (see {@link DWTPlan}), so creating a DWT object for an image size seen before is cheap
      *
      * @param cols Image width
      * @param rows Image height
-     * @param filterID Filter ID to use
+     * @param filterID Filter ID to use. This can be the ID of a filter in the filter file, or one of the lifting
+     *        filters in {@link LiftingScheme}
      * @param level Decomposition level
-     * @param method Wavelet filtering method
+     * @param method Wavelet filtering method (lifting filters support only periodical method)
      */
     public DWT(int cols, int rows, int filterID, int level, int method) {
-        // Read the master filter file if it is not already loaded
-        if (filterGHMap == null) {
-            filterGHMap = FilterXMLReader.parse(this.filterFile);
-        }
-
-        this.filters = new FilterGH[level + 1];
-        for (int i = 0; i <= level; i++) {
-            this.filters[i] = filterGHMap.get(Integer.valueOf(filterID));
-        }
-
-        this.level = level;
-        this.method = method;
+        this.plan = DWTPlan.getInstance(cols, rows, filterID, level, method);
+        this.lifting = this.plan.getLifting();
         this.cols = cols;
         this.rows = rows;
     }
@@ -91,7 +89,7 @@ public class DWT {
         Image image = null;
         ImageTree tree = null;
 
-        image = new Image(this.cols, this.rows);
+        image = startForward();
 
         for (int i = 0; i < this.rows; i++) {
             for (int j = 0; j < this.cols; j++) {
@@ -99,7 +97,52 @@ public class DWT {
             }
         }
 
-        tree = DWTUtil.waveletTransform(image, this.level, this.filters, this.method);
+        tree = transform(image);
+        return tree;
+    }
+
+    /**
+     * Method to perform forward DWT on one plane of the pixel data
+     *
+     * @param planes Image pixel data
+     * @param plane Index of the plane to be transformed
+     * @return Image tree data after DWT
+     */
+    public ImageTree forwardDWT(PixelPlanes planes, int plane) {
+        Image image = null;
+        ImageTree tree = null;
+        int[] pixels = planes.getPlane(plane);
+        int stride = planes.getStride();
+        int idx = 0;
+
+        if (useStreaming()) {
+            if (this.workspace != null) {
+                this.workspace.startForward();
+            }
+            return new StreamingDWT(this.plan, this.workspace).forwardTransform(planes, plane);
+        }
+
+        image = startForward();
+
+        if (image.isSinglePrecision()) {
+            float[] data = image.getFloatData();
+            for (int i = 0; i < this.rows; i++) {
+                idx = i * stride;
+                for (int j = 0; j < this.cols; j++) {
+                    data[i * this.cols + j] = pixels[idx++];
+                }
+            }
+        } else {
+            double[] data = image.getData();
+            for (int i = 0; i < this.rows; i++) {
+                idx = i * stride;
+                for (int j = 0; j < this.cols; j++) {
+                    data[i * this.cols + j] = pixels[idx++];
+                }
+            }
+        }
+
+        tree = transform(image);
         return tree;
     }
 
@@ -113,7 +156,7 @@ public class DWT {
         Image image = null;
         ImageTree tree = null;
 
-        image = new Image(this.cols, this.rows);
+        image = new Image(this.cols, this.rows, this.singlePrecision);
 
         for (int i = 0; i < this.rows; i++) {
             for (int j = 0; j < this.cols; j++) {
@@ -121,7 +164,11 @@ public class DWT {
             }
         }
 
-        tree = DWTUtil.waveletTransformWp(image, 0, this.level, this.filters, this.method);
+        if (this.lifting != null) {
+            return this.lifting.forwardTransformWp(image, 0, this.plan.getLevel());
+        }
+
+        tree = DWTUtil.waveletTransformWp(image, 0, this.plan.getLevel(), this.plan.getFilters(), this.plan.getMethod(), this.pool);
         return tree;
     }
 
@@ -134,7 +181,7 @@ public class DWT {
     public void inverseDWT(ImageTree dwts, int[][] pixels) {
         Image image = null;
 
-        image = DWTUtil.inverseTransform(dwts, this.filters, this.method + 1);
+        image = inverseTransform(dwts);
 
         for (int i = 0; i < this.rows; i++) {
             for (int j = 0; j < this.cols; j++) {
@@ -142,4 +189,166 @@ public class DWT {
             }
         }
     }
+
+    /**
+     * Method to perform inverse DWT to get back one plane of the pixel data
+     *
+     * @param dwts DWT data as image tree
+     * @param planes Image pixel data
+     * @param plane Index of the plane to be written
+     */
+    public void inverseDWT(ImageTree dwts, PixelPlanes planes, int plane) {
+        Image image = null;
+        int[] pixels = planes.getPlane(plane);
+        int stride = planes.getStride();
+        int idx = 0;
+
+        if (useStreaming() && StreamingDWT.isSupported(dwts)) {
+            new StreamingDWT(this.plan, null).inverseTransform(dwts, planes, plane);
+            return;
+        }
+
+        image = inverseTransform(dwts);
+
+        for (int i = 0; i < this.rows; i++) {
+            idx = i * stride;
+            for (int j = 0; j < this.cols; j++) {
+                pixels[idx++] = ImageUtil.pixelRange((int) (DWTUtil.getPixel(image, j, i) + 0.5));
+            }
+        }
+    }
+
+    /**
+     * Get method for pool
+     *
+     * @return pool
+     */
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Set method for pool. If a pool is set, then the convolutions of the transforms are split into bands of lines
+     * and rows which are processed in parallel. The results are identical to serial processing
+     *
+     * @param pool Thread pool (<code>null</code> for serial processing)
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Get method for workspace
+     *
+     * @return workspace
+     */
+    public DWTWorkspace getWorkspace() {
+        return this.workspace;
+    }
+
+    /**
+     * Set method for workspace. If a workspace is set, then the image buffers of the transforms are taken from it, and
+     * the image tree returned by a forward transform is valid only until the next forward transform with the same
+     * workspace
+     *
+     * @param workspace Workspace (<code>null</code> to allocate new buffers for every transform)
+     */
+    public void setWorkspace(DWTWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * Get method for singlePrecision
+     *
+     * @return singlePrecision
+     */
+    public boolean isSinglePrecision() {
+        return this.singlePrecision;
+    }
+
+    /**
+     * Set method for singlePrecision. In single precision, the image and all the subbands are stored as floats, which
+     * halves the memory used by the transforms. For five decomposition levels, the subbands then differ from those of
+     * the double precision transform by less than 1e-5 times the largest pixel value, which is far below the embedding
+     * strength of the watermarking algorithms. Lifting filters always use double precision, so this flag is ignored for them
+     *
+     * @param singlePrecision Flag to indicate whether the transforms are to be done in single precision
+     */
+    public void setSinglePrecision(boolean singlePrecision) {
+        this.singlePrecision = singlePrecision && this.lifting == null;
+    }
+
+    /**
+     * Get method for streaming
+     *
+     * @return streaming
+     */
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
+    /**
+     * Set method for streaming. In streaming mode, the transforms of pixel planes pass the rows of the image through
+     * all the decomposition levels one at a time, so that only the subbands and a few rows per level are held in
+     * memory instead of the image and the coarse image of every level. The results are identical to the normal
+     * transforms. Streaming is done serially, so the pool is not used, and streaming is not done for lifting filters,
+     * single precision or wavelet packet trees
+     *
+     * @param streaming Flag to indicate whether the transforms are to be done line by line
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Check whether the transforms of pixel planes are to be done by {@link StreamingDWT}
+     *
+     * @return true if streaming is to be used
+     */
+    private boolean useStreaming() {
+        return this.streaming && this.lifting == null && !this.singlePrecision && this.plan.getEffectiveLevel() > 0
+                && this.plan.getFilters()[0] != null;
+    }
+
+    /**
+     * Performs the forward transform of the image, using either the lifting scheme or the filters
+     *
+     * @param image Image data
+     * @return Image tree data after DWT
+     */
+    private ImageTree transform(Image image) {
+        if (this.lifting != null) {
+            return this.lifting.forwardTransform(image, this.plan.getLevel(), this.workspace);
+        }
+        return DWTUtil.waveletTransform(image, this.plan, this.pool, this.workspace);
+    }
+
+    /**
+     * Performs the inverse transform of the image tree, using either the lifting scheme or the filters
+     *
+     * @param dwts DWT data as image tree
+     * @return Inverse transformed image data
+     */
+    private Image inverseTransform(ImageTree dwts) {
+        if (this.workspace != null) {
+            this.workspace.startInverse();
+        }
+        if (this.lifting != null) {
+            return this.lifting.inverseTransform(dwts, this.workspace);
+        }
+        return DWTUtil.inverseTransform(dwts, this.plan, this.pool, this.workspace);
+    }
+
+    /**
+     * Start a forward transform, and get the image to hold the input data
+     *
+     * @return Input image
+     */
+    private Image startForward() {
+        if (this.workspace == null) {
+            return new Image(this.cols, this.rows, this.singlePrecision);
+        }
+        this.workspace.startForward();
+        return this.workspace.getImage(this.cols, this.rows, this.singlePrecision);
+    }
 }
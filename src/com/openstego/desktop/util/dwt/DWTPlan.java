@@ -0,0 +1,365 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util.dwt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.openstego.desktop.util.CommonUtil;
+
+/**
+ * Precomputed setup for the wavelet transforms of images of one size, with one filter, decomposition level and
+ * wavelet filtering method. The plan holds the resolved filters, the band sizes of every level, and the convolution
+ * kernels of every level with their boundary tables already built.
+ * <p>
+ * Plans are immutable once built, and are cached by {@link #getInstance(int, int, int, int, int)}, so all the
+ * transforms of images of the same size share one plan, even across threads.
+ */
+public class DWTPlan {
+    /**
+     * Index of the kernel for low-pass convolution of lines
+     */
+    static final int LINE_H = 0;
+
+    /**
+     * Index of the kernel for high-pass convolution of lines
+     */
+    static final int LINE_G = 1;
+
+    /**
+     * Index of the kernel for low-pass convolution of rows
+     */
+    static final int ROW_H = 2;
+
+    /**
+     * Index of the kernel for high-pass convolution of rows
+     */
+    static final int ROW_G = 3;
+
+    /**
+     * Maximum number of plans kept in the cache
+     */
+    private static final int MAX_PLANS = 64;
+
+    /**
+     * URI for the filter file
+     */
+    private static final String FILTER_FILE = "/com/openstego/desktop/util/dwt/filters.xml";
+
+    /**
+     * Cache of plans, keyed by image width, image height, filter ID, decomposition level and filtering method
+     */
+    private static Map<List<Integer>, DWTPlan> planMap = new ConcurrentHashMap<List<Integer>, DWTPlan>();
+
+    /**
+     * Image width
+     */
+    private int cols = 0;
+
+    /**
+     * Image height
+     */
+    private int rows = 0;
+
+    /**
+     * Decomposition level requested for the plan
+     */
+    private int level = 0;
+
+    /**
+     * Decomposition level actually possible for the image size
+     */
+    private int effectiveLevel = 0;
+
+    /**
+     * Wavelet filtering method
+     */
+    private int method = 0;
+
+    /**
+     * Filters for each level (<code>null</code> for lifting filters, and <code>null</code> entries if the filter ID is
+     * not in the filter file)
+     */
+    private FilterGH[] filters = null;
+
+    /**
+     * Lifting scheme to use instead of the filters (<code>null</code> if the filter ID is not a lifting filter)
+     */
+    private LiftingScheme lifting = null;
+
+    /**
+     * Width of the image (at index 0) and of the subbands of each level
+     */
+    private int[] widths = null;
+
+    /**
+     * Height of the image (at index 0) and of the subbands of each level
+     */
+    private int[] heights = null;
+
+    /**
+     * Convolution kernels of the forward transform for each level
+     */
+    private ConvolutionKernel[][] forwardKernels = null;
+
+    /**
+     * Convolution kernels of the inverse transform for each level
+     */
+    private ConvolutionKernel[][] inverseKernels = null;
+
+    /**
+     * Default constructor
+     *
+     * @param cols Image width
+     * @param rows Image height
+     * @param filterID Filter ID to use. This can be the ID of a filter in the filter file, or one of the lifting
+     *        filters in {@link LiftingScheme}
+     * @param level Decomposition level
+     * @param method Wavelet filtering method (lifting filters support only periodical method)
+     */
+    private DWTPlan(int cols, int rows, int filterID, int level, int method) {
+        this.cols = cols;
+        this.rows = rows;
+        this.level = level;
+        this.method = method;
+
+        this.effectiveLevel = getEffectiveLevel(cols, rows, level);
+        this.widths = new int[this.effectiveLevel + 1];
+        this.heights = new int[this.effectiveLevel + 1];
+        this.widths[0] = cols;
+        this.heights[0] = rows;
+        for (int i = 1; i <= this.effectiveLevel; i++) {
+            this.widths[i] = (this.widths[i - 1] + 1) / 2;
+            this.heights[i] = (this.heights[i - 1] + 1) / 2;
+        }
+
+        this.lifting = LiftingScheme.getInstance(filterID);
+        if (this.lifting != null) {
+            if (method != Filter.METHOD_PERIODICAL) {
+                throw new IllegalArgumentException("Lifting filters support only periodical filtering method");
+            }
+            return;
+        }
+
+        this.filters = new FilterGH[level + 1];
+        for (int i = 0; i <= level; i++) {
+            this.filters[i] = FilterBank.filterGHMap.get(Integer.valueOf(filterID));
+        }
+
+        this.forwardKernels = new ConvolutionKernel[this.effectiveLevel][];
+        this.inverseKernels = new ConvolutionKernel[this.effectiveLevel][];
+        for (int i = 0; i < this.effectiveLevel && this.filters[i] != null; i++) {
+            this.forwardKernels[i] = getKernels(this.filters[i], method, false);
+            prepareKernels(this.forwardKernels[i], this.widths[i], this.widths[i + 1], this.heights[i], this.heights[i + 1]);
+            this.inverseKernels[i] = getKernels(this.filters[i], method + 1, true);
+            // Inverse transform of a level gives twice the subband size, which is one more than the original size if
+            // that was odd
+            prepareKernels(this.inverseKernels[i], this.widths[i + 1], 2 * this.widths[i + 1], this.heights[i + 1], 2 * this.heights[i + 1]);
+        }
+    }
+
+    /**
+     * Get the plan for the given image size, filter, decomposition level and wavelet filtering method. Plans are built
+     * on first use and then shared
+     *
+     * @param cols Image width
+     * @param rows Image height
+     * @param filterID Filter ID to use. This can be the ID of a filter in the filter file, or one of the lifting
+     *        filters in {@link LiftingScheme}
+     * @param level Decomposition level
+     * @param method Wavelet filtering method (lifting filters support only periodical method)
+     * @return Plan
+     */
+    public static DWTPlan getInstance(int cols, int rows, int filterID, int level, int method) {
+        List<Integer> key = Arrays.asList(cols, rows, filterID, level, method);
+        DWTPlan plan = planMap.get(key);
+
+        if (plan == null) {
+            plan = new DWTPlan(cols, rows, filterID, level, method);
+            if (planMap.size() >= MAX_PLANS) {
+                planMap.clear();
+            }
+            planMap.put(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Get the decomposition level which is actually possible for the given image size
+     *
+     * @param width Image width
+     * @param height Image height
+     * @param level Decomposition level requested
+     * @return Decomposition level possible (0 if the image is not to be transformed)
+     */
+    static int getEffectiveLevel(int width, int height, int level) {
+        int maxLevel = ((int) (Math.log(CommonUtil.min(width, height)) / Math.log(2))) - 2;
+
+        return CommonUtil.max(CommonUtil.min(maxLevel, level), 0);
+    }
+
+    /**
+     * Get the convolution kernels of one level
+     *
+     * @param filterGH Filter
+     * @param method Wavelet filtering method
+     * @param inverse Flag to indicate whether the kernels are for the inverse transform. Biorthogonal filters use
+     *        different filters for the inverse transform
+     * @return Kernels, indexed by {@link #LINE_H}, {@link #LINE_G}, {@link #ROW_H} and {@link #ROW_G}
+     */
+    static ConvolutionKernel[] getKernels(FilterGH filterGH, int method, boolean inverse) {
+        ConvolutionKernel[] kernels = new ConvolutionKernel[4];
+        Filter filterG = null;
+        Filter filterH = null;
+
+        if (!inverse || filterGH.getType() == FilterGH.TYPE_ORTHOGONAL) {
+            filterG = filterGH.getG();
+            filterH = filterGH.getH();
+        } else {
+            filterG = filterGH.getGi();
+            filterH = filterGH.getHi();
+        }
+
+        kernels[LINE_H] = ConvolutionKernel.getInstance(filterH, method);
+        kernels[LINE_G] = ConvolutionKernel.getInstance(filterG, method);
+        kernels[ROW_H] = ConvolutionKernel.getInstance(filterH, method);
+        kernels[ROW_G] = ConvolutionKernel.getInstance(filterG, method);
+        return kernels;
+    }
+
+    /**
+     * Build the boundary tables of the kernels of one level
+     *
+     * @param kernels Kernels of the level
+     * @param lineInLen Length of input lines
+     * @param lineOutLen Length of output lines
+     * @param rowInLen Length of input rows
+     * @param rowOutLen Length of output rows
+     */
+    private static void prepareKernels(ConvolutionKernel[] kernels, int lineInLen, int lineOutLen, int rowInLen, int rowOutLen) {
+        if (kernels[LINE_H] != null) {
+            kernels[LINE_H].prepare(lineInLen, lineOutLen);
+            kernels[LINE_G].prepare(lineInLen, lineOutLen);
+            kernels[ROW_H].prepare(rowInLen, rowOutLen);
+            kernels[ROW_G].prepare(rowInLen, rowOutLen);
+        }
+    }
+
+    /**
+     * Get method for cols
+     *
+     * @return cols
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Get method for rows
+     *
+     * @return rows
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Get method for level
+     *
+     * @return level
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Get method for effectiveLevel
+     *
+     * @return effectiveLevel
+     */
+    public int getEffectiveLevel() {
+        return this.effectiveLevel;
+    }
+
+    /**
+     * Get method for method
+     *
+     * @return method
+     */
+    public int getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Get method for filters. The returned array is shared, and must not be modified
+     *
+     * @return filters
+     */
+    public FilterGH[] getFilters() {
+        return this.filters;
+    }
+
+    /**
+     * Get method for lifting
+     *
+     * @return lifting
+     */
+    public LiftingScheme getLifting() {
+        return this.lifting;
+    }
+
+    /**
+     * Get the width of the subbands of the given level
+     *
+     * @param level Level (0 for the image itself)
+     * @return Width
+     */
+    public int getWidth(int level) {
+        return this.widths[level];
+    }
+
+    /**
+     * Get the height of the subbands of the given level
+     *
+     * @param level Level (0 for the image itself)
+     * @return Height
+     */
+    public int getHeight(int level) {
+        return this.heights[level];
+    }
+
+    /**
+     * Get the convolution kernels of the forward transform
+     *
+     * @return Kernels for each level
+     */
+    ConvolutionKernel[][] getForwardKernels() {
+        return this.forwardKernels;
+    }
+
+    /**
+     * Get the convolution kernels of the inverse transform
+     *
+     * @return Kernels for each level
+     */
+    ConvolutionKernel[][] getInverseKernels() {
+        return this.inverseKernels;
+    }
+
+    /**
+     * Holder for the master map of filters. The filter file is parsed when the map is first used, and class
+     * initialization makes sure that this happens only once even if several threads need the map at the same time
+     */
+    private static class FilterBank {
+        /**
+         * Master map of filters
+         */
+        private static final Map<Integer, FilterGH> filterGHMap = FilterXMLReader.parse(FILTER_FILE);
+    }
+}
@@ -6,6 +6,11 @@
 
 package com.openstego.desktop.util.dwt;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import com.openstego.desktop.util.CommonUtil;
 
 /**
@@ -18,6 +23,16 @@ import com.openstego.desktop.util.CommonUtil;
  * Master's Thesis, Department of Scientific Computing, University of Salzburg, Austria, January 2001.
  */
 public class DWTUtil {
+    /**
+     * Minimum number of samples to be processed by one parallel convolution task
+     */
+    private static final int PARALLEL_GRAIN = 16384;
+
+    /**
+     * Shared thread pools for parallel transforms, keyed by parallelism
+     */
+    private static Map<Integer, ForkJoinPool> poolMap = new HashMap<Integer, ForkJoinPool>();
+
     /**
      * Constructor is private so that this class is not instantiated
      */
@@ -34,10 +49,66 @@ public class DWTUtil {
      * @return Data after performing wavelet transform
      */
     public static ImageTree waveletTransform(Image origImg, int level, FilterGH[] filterGHList, int method) {
+        return waveletTransform(origImg, level, filterGHList, method, null, null);
+    }
+
+    /**
+     * Method to perform the wavelet transform, with the convolutions split into bands of lines and rows which are
+     * processed in parallel, and the subbands and temporary images taken from a workspace. The result is identical to
+     * that of the serial transform
+     *
+     * @param origImg Original image
+     * @param level Decomposition level
+     * @param filterGHList List of filters
+     * @param method Wavelet filtering method
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Data after performing wavelet transform
+     */
+    public static ImageTree waveletTransform(Image origImg, int level, FilterGH[] filterGHList, int method, ForkJoinPool pool,
+            DWTWorkspace workspace) {
+        ConvolutionKernel[][] kernels = null;
+
+        level = DWTPlan.getEffectiveLevel(origImg.getWidth(), origImg.getHeight(), level);
+        kernels = new ConvolutionKernel[level][];
+        for (int i = 0; i < level; i++) {
+            kernels[i] = DWTPlan.getKernels(filterGHList[i], method, false);
+        }
+        return waveletTransform(origImg, level, kernels, pool, workspace);
+    }
+
+    /**
+     * Method to perform the wavelet transform using a precomputed plan, with the convolutions split into bands of
+     * lines and rows which are processed in parallel, and the subbands and temporary images taken from a workspace.
+     * The result is identical to that of the transform with the filters of the plan
+     *
+     * @param origImg Original image, which must have the image size of the plan
+     * @param plan Plan for the transform
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Data after performing wavelet transform
+     */
+    public static ImageTree waveletTransform(Image origImg, DWTPlan plan, ForkJoinPool pool, DWTWorkspace workspace) {
+        if (origImg.getWidth() != plan.getCols() || origImg.getHeight() != plan.getRows()) {
+            throw new IllegalArgumentException("Image size does not match the plan");
+        }
+        return waveletTransform(origImg, plan.getEffectiveLevel(), plan.getForwardKernels(), pool, workspace);
+    }
+
+    /**
+     * Method to perform the wavelet transform with the given convolution kernels
+     *
+     * @param origImg Original image
+     * @param level Decomposition level, which must be possible for the image size
+     * @param kernels Convolution kernels for each level
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Data after performing wavelet transform
+     */
+    private static ImageTree waveletTransform(Image origImg, int level, ConvolutionKernel[][] kernels, ForkJoinPool pool,
+            DWTWorkspace workspace) {
         int width = 0;
         int height = 0;
-        int min = 0;
-        int maxLevel = 0;
         Image coarseImg = null;
         Image horizontalImg = null;
         Image verticalImg = null;
@@ -49,40 +120,30 @@ public class DWTUtil {
         width = origImg.getWidth();
         height = origImg.getHeight();
 
-        tempImg = new Image(width, height);
-        copyIntoImage(tempImg, origImg, 0, 0);
-
         returnTree = new ImageTree();
         tempTree = returnTree;
         returnTree.setLevel(0);
 
-        min = origImg.getWidth();
-        if (origImg.getHeight() < min) {
-            min = origImg.getHeight();
-        }
-
-        maxLevel = ((int) (Math.log(min) / Math.log(2))) - 2;
-        if (maxLevel < level) {
-            level = maxLevel;
-        }
-
         if (level < 1) /* do not transform */
         {
+            tempImg = DWTWorkspace.createImage(workspace, width, height, origImg.isSinglePrecision());
+            copyIntoImage(tempImg, origImg, 0, 0);
             returnTree.setImage(tempImg);
             return returnTree;
         }
 
-        // Decomposition
+        // Decomposition (the original image is only read, so it is used as input for the first level directly)
+        tempImg = origImg;
         for (int i = 0; i < level; i++) {
             width = (width + 1) / 2;
             height = (height + 1) / 2;
 
-            coarseImg = new Image(width, height);
-            horizontalImg = new Image(width, height);
-            verticalImg = new Image(width, height);
-            diagonalImg = new Image(width, height);
+            coarseImg = DWTWorkspace.createImage(workspace, width, height, origImg.isSinglePrecision());
+            horizontalImg = DWTWorkspace.createImage(workspace, width, height, origImg.isSinglePrecision());
+            verticalImg = DWTWorkspace.createImage(workspace, width, height, origImg.isSinglePrecision());
+            diagonalImg = DWTWorkspace.createImage(workspace, width, height, origImg.isSinglePrecision());
 
-            decomposition(tempImg, coarseImg, horizontalImg, verticalImg, diagonalImg, filterGHList[i].getG(), filterGHList[i].getH(), method);
+            decomposition(tempImg, coarseImg, horizontalImg, verticalImg, diagonalImg, kernels[i], pool, workspace);
 
             tempTree.setCoarse(new ImageTree());
             tempTree.setHorizontal(new ImageTree());
@@ -97,14 +158,9 @@ public class DWTUtil {
             tempTree.getHorizontal().setImage(horizontalImg);
             tempTree.getVertical().setImage(verticalImg);
             tempTree.getDiagonal().setImage(diagonalImg);
-            tempImg = null;
-
-            if (i != (level - 1)) {
-                tempImg = new Image(width, height);
-                copyIntoImage(tempImg, coarseImg, 0, 0);
-                coarseImg = null;
-            }
 
+            // Coarse image of this level is the input for the next level
+            tempImg = coarseImg;
             tempTree = tempTree.getCoarse();
         }
 
@@ -123,6 +179,22 @@ public class DWTUtil {
      * @return Data after performing wavelet transform
      */
     public static ImageTree waveletTransformWp(Image origImg, int currLevel, int level, FilterGH[] filterGHList, int method) {
+        return waveletTransformWp(origImg, currLevel, level, filterGHList, method, null);
+    }
+
+    /**
+     * Method to perform the wavelet transform (WP), with the convolutions split into bands of lines and rows which are
+     * processed in parallel. The result is identical to that of the serial transform
+     *
+     * @param origImg Original image
+     * @param currLevel Current decomposition level
+     * @param level Decomposition level
+     * @param filterGHList List of filters
+     * @param method Wavelet filtering method
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @return Data after performing wavelet transform
+     */
+    public static ImageTree waveletTransformWp(Image origImg, int currLevel, int level, FilterGH[] filterGHList, int method, ForkJoinPool pool) {
         int width = 0;
         int height = 0;
         int min = 0;
@@ -138,7 +210,7 @@ public class DWTUtil {
         width = origImg.getWidth();
         height = origImg.getHeight();
 
-        tempImg = new Image(width, height);
+        tempImg = new Image(width, height, origImg.isSinglePrecision());
         copyIntoImage(tempImg, origImg, 0, 0);
 
         returnTree = new ImageTree();
@@ -164,18 +236,18 @@ public class DWTUtil {
             width = (width + 1) / 2;
             height = (height + 1) / 2;
 
-            coarseImg = new Image(width, height);
-            horizontalImg = new Image(width, height);
-            verticalImg = new Image(width, height);
-            diagonalImg = new Image(width, height);
+            coarseImg = new Image(width, height, origImg.isSinglePrecision());
+            horizontalImg = new Image(width, height, origImg.isSinglePrecision());
+            verticalImg = new Image(width, height, origImg.isSinglePrecision());
+            diagonalImg = new Image(width, height, origImg.isSinglePrecision());
 
-            decomposition(tempImg, coarseImg, horizontalImg, verticalImg, diagonalImg, filterGHList[i].getG(), filterGHList[i].getH(), method);
+            decomposition(tempImg, coarseImg, horizontalImg, verticalImg, diagonalImg, filterGHList[i].getG(), filterGHList[i].getH(), method, pool, null);
 
             tempTree.setCoarse(new ImageTree());
             tempTree.getCoarse().setLevel(i + 1);
-            tempTree.setHorizontal(waveletTransformWp(horizontalImg, i + 1, level, filterGHList, method));
-            tempTree.setVertical(waveletTransformWp(verticalImg, i + 1, level, filterGHList, method));
-            tempTree.setDiagonal(waveletTransformWp(diagonalImg, i + 1, level, filterGHList, method));
+            tempTree.setHorizontal(waveletTransformWp(horizontalImg, i + 1, level, filterGHList, method, pool));
+            tempTree.setVertical(waveletTransformWp(verticalImg, i + 1, level, filterGHList, method, pool));
+            tempTree.setDiagonal(waveletTransformWp(diagonalImg, i + 1, level, filterGHList, method, pool));
 
             horizontalImg = null;
             verticalImg = null;
@@ -183,7 +255,7 @@ public class DWTUtil {
             tempImg = null;
 
             if (i != (level - 1)) {
-                tempImg = new Image(width, height);
+                tempImg = new Image(width, height, coarseImg.isSinglePrecision());
                 copyIntoImage(tempImg, coarseImg, 0, 0);
                 coarseImg = null;
             }
@@ -209,23 +281,66 @@ public class DWTUtil {
      */
     public static void decomposition(Image inputImg, Image coarseImg, Image horizontalImg, Image verticalImg, Image diagonalImg, Filter filterG,
             Filter filterH, int method) {
+        decomposition(inputImg, coarseImg, horizontalImg, verticalImg, diagonalImg, filterG, filterH, method, null, null);
+    }
+
+    /**
+     * Method to decompose the image, processing bands of lines and rows in parallel and taking the temporary images
+     * from a workspace
+     *
+     * @param inputImg Input image
+     * @param coarseImg Coarse image
+     * @param horizontalImg Horizontal image
+     * @param verticalImg Vertical image
+     * @param diagonalImg Diagonal image
+     * @param filterG G filter
+     * @param filterH H filter
+     * @param method Wavelet filtering method
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the temporary images from (<code>null</code> to allocate new images)
+     */
+    public static void decomposition(Image inputImg, Image coarseImg, Image horizontalImg, Image verticalImg, Image diagonalImg, Filter filterG,
+            Filter filterH, int method, ForkJoinPool pool, DWTWorkspace workspace) {
+        ConvolutionKernel[] kernels = new ConvolutionKernel[4];
+
+        kernels[DWTPlan.LINE_H] = ConvolutionKernel.getInstance(filterH, method);
+        kernels[DWTPlan.LINE_G] = ConvolutionKernel.getInstance(filterG, method);
+        kernels[DWTPlan.ROW_H] = ConvolutionKernel.getInstance(filterH, method);
+        kernels[DWTPlan.ROW_G] = ConvolutionKernel.getInstance(filterG, method);
+        decomposition(inputImg, coarseImg, horizontalImg, verticalImg, diagonalImg, kernels, pool, workspace);
+    }
+
+    /**
+     * Method to decompose the image with the given convolution kernels
+     *
+     * @param inputImg Input image
+     * @param coarseImg Coarse image
+     * @param horizontalImg Horizontal image
+     * @param verticalImg Vertical image
+     * @param diagonalImg Diagonal image
+     * @param kernels Convolution kernels of the level
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the temporary images from (<code>null</code> to allocate new images)
+     */
+    private static void decomposition(Image inputImg, Image coarseImg, Image horizontalImg, Image verticalImg, Image diagonalImg,
+            ConvolutionKernel[] kernels, ForkJoinPool pool, DWTWorkspace workspace) {
         Image tempImg = null;
 
         // Coarse
-        tempImg = new Image(coarseImg.getWidth(), inputImg.getHeight());
-        convoluteLines(tempImg, inputImg, filterH, method);
-        convoluteRows(coarseImg, tempImg, filterH, method);
+        tempImg = DWTWorkspace.createImage(workspace, coarseImg.getWidth(), inputImg.getHeight(), inputImg.isSinglePrecision());
+        convolute(tempImg, inputImg, kernels[DWTPlan.LINE_H], false, pool);
+        convolute(coarseImg, tempImg, kernels[DWTPlan.ROW_H], true, pool);
 
         // Horizontal
-        convoluteRows(horizontalImg, tempImg, filterG, method);
+        convolute(horizontalImg, tempImg, kernels[DWTPlan.ROW_G], true, pool);
 
         // Vertical
-        tempImg = new Image(verticalImg.getWidth(), inputImg.getHeight());
-        convoluteLines(tempImg, inputImg, filterG, method);
-        convoluteRows(verticalImg, tempImg, filterH, method);
+        tempImg = DWTWorkspace.createImage(workspace, verticalImg.getWidth(), inputImg.getHeight(), inputImg.isSinglePrecision());
+        convolute(tempImg, inputImg, kernels[DWTPlan.LINE_G], false, pool);
+        convolute(verticalImg, tempImg, kernels[DWTPlan.ROW_H], true, pool);
 
         // Diagonal
-        convoluteRows(diagonalImg, tempImg, filterG, method);
+        convolute(diagonalImg, tempImg, kernels[DWTPlan.ROW_G], true, pool);
     }
 
     /**
@@ -237,37 +352,35 @@ public class DWTUtil {
      * @param method Wavelet filtering method
      */
     public static void convoluteLines(Image outputImg, Image inputImg, Filter filter, int method) {
-        for (int i = 0; i < inputImg.getHeight(); i++) {
-            switch (method) {
-                case Filter.METHOD_CUTOFF:
-                    filterCutOff(inputImg, inputImg.getWidth() * i, inputImg.getWidth(), 1, outputImg, outputImg.getWidth() * i, outputImg.getWidth(),
-                        1, filter);
-                    break;
-
-                case Filter.METHOD_INVCUTOFF:
-                    filterInvCutOff(inputImg, inputImg.getWidth() * i, inputImg.getWidth(), 1, outputImg, outputImg.getWidth() * i,
-                        outputImg.getWidth(), 1, filter);
-                    break;
-
-                case Filter.METHOD_PERIODICAL:
-                    filterPeriodical(inputImg, inputImg.getWidth() * i, inputImg.getWidth(), 1, outputImg, outputImg.getWidth() * i,
-                        outputImg.getWidth(), 1, filter);
-                    break;
-
-                case Filter.METHOD_INVPERIODICAL:
-                    filterInvPeriodical(inputImg, inputImg.getWidth() * i, inputImg.getWidth(), 1, outputImg, outputImg.getWidth() * i,
-                        outputImg.getWidth(), 1, filter);
-                    break;
-
-                case Filter.METHOD_MIRROR:
-                    filterMirror(inputImg, inputImg.getWidth() * i, inputImg.getWidth(), 1, outputImg, outputImg.getWidth() * i, outputImg.getWidth(),
-                        1, filter);
-                    break;
-
-                case Filter.METHOD_INVMIRROR:
-                    filterInvMirror(inputImg, inputImg.getWidth() * i, inputImg.getWidth(), 1, outputImg, outputImg.getWidth() * i,
-                        outputImg.getWidth(), 1, filter);
-                    break;
+        convolute(outputImg, inputImg, filter, method, false, null);
+    }
+
+    /**
+     * Method to convolute a band of lines
+     *
+     * @param outputImg Output image
+     * @param inputImg Input image
+     * @param kernel Convolution kernel to use
+     * @param start First line to convolute
+     * @param end Line after the last one to convolute
+     */
+    private static void convoluteLines(Image outputImg, Image inputImg, ConvolutionKernel kernel, int start, int end) {
+        int inLen = inputImg.getWidth();
+        int outLen = outputImg.getWidth();
+
+        if (inputImg.isSinglePrecision()) {
+            float[] input = inputImg.getFloatData();
+            float[] output = outputImg.getFloatData();
+
+            for (int i = start; i < end; i++) {
+                kernel.convolute(input, inLen * i, inLen, 1, output, outLen * i, outLen, 1);
+            }
+        } else {
+            double[] input = inputImg.getData();
+            double[] output = outputImg.getData();
+
+            for (int i = start; i < end; i++) {
+                kernel.convolute(input, inLen * i, inLen, 1, output, outLen * i, outLen, 1);
             }
         }
     }
@@ -281,39 +394,78 @@ public class DWTUtil {
      * @param method Wavelet filtering method
      */
     public static void convoluteRows(Image outputImg, Image inputImg, Filter filter, int method) {
-        for (int i = 0; i < inputImg.getWidth(); i++) {
-            switch (method) {
-                case Filter.METHOD_CUTOFF:
-                    filterCutOff(inputImg, i, inputImg.getHeight(), inputImg.getWidth(), outputImg, i, outputImg.getHeight(), outputImg.getWidth(),
-                        filter);
-                    break;
-
-                case Filter.METHOD_INVCUTOFF:
-                    filterInvCutOff(inputImg, i, inputImg.getHeight(), inputImg.getWidth(), outputImg, i, outputImg.getHeight(), outputImg.getWidth(),
-                        filter);
-                    break;
-
-                case Filter.METHOD_PERIODICAL:
-                    filterPeriodical(inputImg, i, inputImg.getHeight(), inputImg.getWidth(), outputImg, i, outputImg.getHeight(),
-                        outputImg.getWidth(), filter);
-                    break;
-
-                case Filter.METHOD_INVPERIODICAL:
-                    filterInvPeriodical(inputImg, i, inputImg.getHeight(), inputImg.getWidth(), outputImg, i, outputImg.getHeight(),
-                        outputImg.getWidth(), filter);
-                    break;
-
-                case Filter.METHOD_MIRROR:
-                    filterMirror(inputImg, i, inputImg.getHeight(), inputImg.getWidth(), outputImg, i, outputImg.getHeight(), outputImg.getWidth(),
-                        filter);
-                    break;
-
-                case Filter.METHOD_INVMIRROR:
-                    filterInvMirror(inputImg, i, inputImg.getHeight(), inputImg.getWidth(), outputImg, i, outputImg.getHeight(), outputImg.getWidth(),
-                        filter);
-                    break;
+        convolute(outputImg, inputImg, filter, method, true, null);
+    }
+
+    /**
+     * Method to convolute a band of rows
+     *
+     * @param outputImg Output image
+     * @param inputImg Input image
+     * @param kernel Convolution kernel to use
+     * @param start First row to convolute
+     * @param end Row after the last one to convolute
+     */
+    private static void convoluteRows(Image outputImg, Image inputImg, ConvolutionKernel kernel, int start, int end) {
+        if (inputImg.isSinglePrecision()) {
+            kernel.convoluteColumns(inputImg.getFloatData(), inputImg.getHeight(), inputImg.getWidth(), outputImg.getFloatData(),
+                outputImg.getHeight(), outputImg.getWidth(), start, end);
+        } else {
+            kernel.convoluteColumns(inputImg.getData(), inputImg.getHeight(), inputImg.getWidth(), outputImg.getData(), outputImg.getHeight(),
+                outputImg.getWidth(), start, end);
+        }
+    }
+
+    /**
+     * Method to convolute all the lines or all the rows of the image. If a thread pool is given, then the lines (or
+     * rows) are split into bands which are convoluted in parallel. Each line (or row) is still convoluted by a single
+     * thread in the same order, so the result is identical to serial processing. Both images must have the same
+     * precision
+     *
+     * @param outputImg Output image
+     * @param inputImg Input image
+     * @param filter Filter to use
+     * @param method Wavelet filtering method
+     * @param rows Flag to indicate whether rows (columns) or lines should be convoluted
+     * @param pool Thread pool to use (<code>null</code> for serial processing)
+     */
+    private static void convolute(Image outputImg, Image inputImg, Filter filter, int method, boolean rows, ForkJoinPool pool) {
+        convolute(outputImg, inputImg, ConvolutionKernel.getInstance(filter, method), rows, pool);
+    }
+
+    /**
+     * Method to convolute all the lines or all the rows of the image with the given kernel, in parallel if a thread
+     * pool is given
+     *
+     * @param outputImg Output image
+     * @param inputImg Input image
+     * @param kernel Convolution kernel to use (<code>null</code> to leave the output unchanged)
+     * @param rows Flag to indicate whether rows (columns) or lines should be convoluted
+     * @param pool Thread pool to use (<code>null</code> for serial processing)
+     */
+    private static void convolute(Image outputImg, Image inputImg, ConvolutionKernel kernel, boolean rows, ForkJoinPool pool) {
+        int count = rows ? inputImg.getWidth() : inputImg.getHeight();
+        int length = rows ? inputImg.getHeight() : inputImg.getWidth();
+        int grain = 0;
+
+        if (kernel == null) {
+            return;
+        }
+        if (inputImg.isSinglePrecision() != outputImg.isSinglePrecision()) {
+            throw new IllegalArgumentException("Input and output images must have the same precision");
+        }
+
+        if (pool == null || pool.getParallelism() < 2 || (long) count * length < 2 * PARALLEL_GRAIN) {
+            if (rows) {
+                convoluteRows(outputImg, inputImg, kernel, 0, count);
+            } else {
+                convoluteLines(outputImg, inputImg, kernel, 0, count);
             }
+            return;
         }
+
+        grain = CommonUtil.max(count / (4 * pool.getParallelism()), (PARALLEL_GRAIN + length - 1) / length);
+        pool.invoke(new ConvolutionTask(outputImg, inputImg, kernel, rows, 0, count, grain));
     }
 
     /**
@@ -545,6 +697,57 @@ public class DWTUtil {
      * @return Inverse transformed image data
      */
     public static Image inverseTransform(ImageTree tree, FilterGH[] filterGHList, int method) {
+        return inverseTransform(tree, filterGHList, method, null, null);
+    }
+
+    /**
+     * Method to perform inverse wavelet transform, with the convolutions split into bands of lines and rows which are
+     * processed in parallel, and the result and temporary images taken from a workspace. The result is identical to
+     * that of the serial transform
+     *
+     * @param tree Forward transformed DWT data
+     * @param filterGHList List of filters
+     * @param method Wavelet filter method
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Inverse transformed image data
+     */
+    public static Image inverseTransform(ImageTree tree, FilterGH[] filterGHList, int method, ForkJoinPool pool, DWTWorkspace workspace) {
+        ConvolutionKernel[][] kernels = new ConvolutionKernel[filterGHList.length][];
+
+        for (int i = 0; i < filterGHList.length; i++) {
+            if (filterGHList[i] != null) {
+                kernels[i] = DWTPlan.getKernels(filterGHList[i], method, true);
+            }
+        }
+        return inverseTransform(tree, kernels, pool, workspace);
+    }
+
+    /**
+     * Method to perform inverse wavelet transform using a precomputed plan, with the convolutions split into bands of
+     * lines and rows which are processed in parallel, and the result and temporary images taken from a workspace. The
+     * result is identical to that of the transform with the filters of the plan
+     *
+     * @param tree Forward transformed DWT data
+     * @param plan Plan for the transform
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Inverse transformed image data
+     */
+    public static Image inverseTransform(ImageTree tree, DWTPlan plan, ForkJoinPool pool, DWTWorkspace workspace) {
+        return inverseTransform(tree, plan.getInverseKernels(), pool, workspace);
+    }
+
+    /**
+     * Method to perform inverse wavelet transform with the given convolution kernels
+     *
+     * @param tree Forward transformed DWT data
+     * @param kernels Convolution kernels for each level
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Inverse transformed image data
+     */
+    private static Image inverseTransform(ImageTree tree, ConvolutionKernel[][] kernels, ForkJoinPool pool, DWTWorkspace workspace) {
         int width = 0;
         int height = 0;
         Image retImg = null;
@@ -554,19 +757,19 @@ public class DWTUtil {
         Image diagonalImg = null;
 
         if (tree.getImage() == null) {
-            coarseImg = inverseTransform(tree.getCoarse(), filterGHList, method);
-            horizontalImg = inverseTransform(tree.getHorizontal(), filterGHList, method);
-            verticalImg = inverseTransform(tree.getVertical(), filterGHList, method);
-            diagonalImg = inverseTransform(tree.getDiagonal(), filterGHList, method);
+            coarseImg = inverseTransform(tree.getCoarse(), kernels, pool, workspace);
+            horizontalImg = inverseTransform(tree.getHorizontal(), kernels, pool, workspace);
+            verticalImg = inverseTransform(tree.getVertical(), kernels, pool, workspace);
+            diagonalImg = inverseTransform(tree.getDiagonal(), kernels, pool, workspace);
 
             width = coarseImg.getWidth() + horizontalImg.getWidth();
             height = coarseImg.getHeight() + verticalImg.getHeight();
 
-            retImg = new Image(width, height);
+            retImg = DWTWorkspace.createImage(workspace, width, height, coarseImg.isSinglePrecision());
 
             if (tree.getFlag() == 0) // If flag is set it is a doubletree tiling
             {
-                invDecomposition(retImg, coarseImg, horizontalImg, verticalImg, diagonalImg, filterGHList[tree.getLevel()], method);
+                invDecomposition(retImg, coarseImg, horizontalImg, verticalImg, diagonalImg, kernels[tree.getLevel()], pool, workspace);
             } else {
                 copyIntoImage(retImg, coarseImg, 0, 0);
                 copyIntoImage(retImg, horizontalImg, coarseImg.getWidth(), 0);
@@ -592,33 +795,59 @@ public class DWTUtil {
      */
     public static void invDecomposition(Image sumImg, Image coarseImg, Image horizontalImg, Image verticalImg, Image diagonalImg, FilterGH filterGH,
             int method) {
-        Image tempImg = null;
-        Filter filterG = null;
-        Filter filterH = null;
+        invDecomposition(sumImg, coarseImg, horizontalImg, verticalImg, diagonalImg, filterGH, method, null, null);
+    }
 
-        if (filterGH.getType() == FilterGH.TYPE_ORTHOGONAL) {
-            filterG = filterGH.getG();
-            filterH = filterGH.getH();
-        } else {
-            filterG = filterGH.getGi();
-            filterH = filterGH.getHi();
-        }
+    /**
+     * Method to perform inverse decomposition, processing bands of lines and rows in parallel and taking the temporary
+     * images from a workspace
+     *
+     * @param sumImg Sum image
+     * @param coarseImg Coarse image
+     * @param horizontalImg Horizontal image
+     * @param verticalImg Vertical image
+     * @param diagonalImg Diagonal image
+     * @param filterGH Filter
+     * @param method Wavelet filter method
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the temporary images from (<code>null</code> to allocate new images)
+     */
+    public static void invDecomposition(Image sumImg, Image coarseImg, Image horizontalImg, Image verticalImg, Image diagonalImg, FilterGH filterGH,
+            int method, ForkJoinPool pool, DWTWorkspace workspace) {
+        invDecomposition(sumImg, coarseImg, horizontalImg, verticalImg, diagonalImg, DWTPlan.getKernels(filterGH, method, true), pool, workspace);
+    }
+
+    /**
+     * Method to perform inverse decomposition with the given convolution kernels
+     *
+     * @param sumImg Sum image
+     * @param coarseImg Coarse image
+     * @param horizontalImg Horizontal image
+     * @param verticalImg Vertical image
+     * @param diagonalImg Diagonal image
+     * @param kernels Convolution kernels of the level
+     * @param pool Thread pool to use for the convolutions (<code>null</code> for serial processing)
+     * @param workspace Workspace to take the temporary images from (<code>null</code> to allocate new images)
+     */
+    private static void invDecomposition(Image sumImg, Image coarseImg, Image horizontalImg, Image verticalImg, Image diagonalImg,
+            ConvolutionKernel[] kernels, ForkJoinPool pool, DWTWorkspace workspace) {
+        Image tempImg = null;
 
         // Coarse
-        tempImg = new Image(coarseImg.getWidth(), sumImg.getHeight());
-        convoluteRows(tempImg, coarseImg, filterH, method);
+        tempImg = DWTWorkspace.createImage(workspace, coarseImg.getWidth(), sumImg.getHeight(), sumImg.isSinglePrecision());
+        convolute(tempImg, coarseImg, kernels[DWTPlan.ROW_H], true, pool);
 
         // Horizontal
-        convoluteRows(tempImg, horizontalImg, filterG, method);
-        convoluteLines(sumImg, tempImg, filterH, method);
+        convolute(tempImg, horizontalImg, kernels[DWTPlan.ROW_G], true, pool);
+        convolute(sumImg, tempImg, kernels[DWTPlan.LINE_H], false, pool);
 
         // Vertical
-        tempImg = new Image(verticalImg.getWidth(), sumImg.getHeight());
-        convoluteRows(tempImg, verticalImg, filterH, method);
+        tempImg = DWTWorkspace.createImage(workspace, verticalImg.getWidth(), sumImg.getHeight(), sumImg.isSinglePrecision());
+        convolute(tempImg, verticalImg, kernels[DWTPlan.ROW_H], true, pool);
 
         // Diagonal
-        convoluteRows(tempImg, diagonalImg, filterG, method);
-        convoluteLines(sumImg, tempImg, filterG, method);
+        convolute(tempImg, diagonalImg, kernels[DWTPlan.ROW_G], true, pool);
+        convolute(sumImg, tempImg, kernels[DWTPlan.LINE_G], false, pool);
     }
 
     /**
@@ -652,7 +881,7 @@ public class DWTUtil {
      */
     public static void setPixel(Image image, int x, int y, double val) {
         if (!(image == null || x < 0 || x >= image.getWidth() || y < 0 || y >= image.getHeight())) {
-            image.getData()[x + (y * image.getWidth())] = val;
+            image.setValue(x + (y * image.getWidth()), val);
         }
     }
 
@@ -668,10 +897,32 @@ public class DWTUtil {
         if (image == null || x < 0 || x >= image.getWidth() || y < 0 || y >= image.getHeight()) {
             return 0.0;
         } else {
-            return image.getData()[x + y * image.getWidth()];
+            return image.getValue(x + y * image.getWidth());
         }
     }
 
+    /**
+     * Get the shared thread pool to be used for parallel transforms
+     *
+     * @param threads Number of threads. If this is zero or less, then the number of available processors is used
+     * @return Thread pool, or <code>null</code> if only one thread is to be used
+     */
+    public static synchronized ForkJoinPool getPool(int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = null;
+
+        if (parallelism < 2) {
+            return null;
+        }
+
+        pool = poolMap.get(Integer.valueOf(parallelism));
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+            poolMap.put(Integer.valueOf(parallelism), pool);
+        }
+        return pool;
+    }
+
     /**
      * Utility method to copy image data to another image portion
      *
@@ -684,17 +935,96 @@ public class DWTUtil {
         int count = 0;
         int start = 0;
         int aim = 0;
-        double[] temp = null;
 
-        temp = img2.getData();
         start = img1.getWidth() * y + x;
 
         for (int i = 0; i < img2.getHeight(); i++) {
             for (int j = 0; j < img2.getWidth(); j++) {
                 aim = start + j + img1.getWidth() * i;
-                img1.getData()[aim] = temp[count];
+                img1.setValue(aim, img2.getValue(count));
                 count++;
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Task to convolute a band of lines or rows, splitting it further if it is larger than the given grain size
+     */
+    private static class ConvolutionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Output image
+         */
+        private Image outputImg = null;
+
+        /**
+         * Input image
+         */
+        private Image inputImg = null;
+
+        /**
+         * Convolution kernel to use
+         */
+        private ConvolutionKernel kernel = null;
+
+        /**
+         * Flag to indicate whether rows (columns) or lines should be convoluted
+         */
+        private boolean rows = false;
+
+        /**
+         * First line (or row) of the band
+         */
+        private int start = 0;
+
+        /**
+         * Line (or row) after the last one in the band
+         */
+        private int end = 0;
+
+        /**
+         * Maximum number of lines (or rows) to be convoluted without splitting the band
+         */
+        private int grain = 0;
+
+        /**
+         * Default constructor
+         *
+         * @param outputImg Output image
+         * @param inputImg Input image
+         * @param kernel Convolution kernel to use
+         * @param rows Flag to indicate whether rows (columns) or lines should be convoluted
+         * @param start First line (or row) of the band
+         * @param end Line (or row) after the last one in the band
+         * @param grain Maximum number of lines (or rows) to be convoluted without splitting the band
+         */
+        private ConvolutionTask(Image outputImg, Image inputImg, ConvolutionKernel kernel, boolean rows, int start, int end, int grain) {
+            this.outputImg = outputImg;
+            this.inputImg = inputImg;
+            this.kernel = kernel;
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            int mid = 0;
+
+            if (this.end - this.start <= this.grain) {
+                if (this.rows) {
+                    convoluteRows(this.outputImg, this.inputImg, this.kernel, this.start, this.end);
+                } else {
+                    convoluteLines(this.outputImg, this.inputImg, this.kernel, this.start, this.end);
+                }
+                return;
+            }
+
+            mid = (this.start + this.end) >>> 1;
+            invokeAll(new ConvolutionTask(this.outputImg, this.inputImg, this.kernel, this.rows, this.start, mid, this.grain),
+                new ConvolutionTask(this.outputImg, this.inputImg, this.kernel, this.rows, mid, this.end, this.grain));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util.dwt;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable set of image buffers for wavelet transforms. The buffers are handed out in the order they are requested,
+ * and a transform of the same size requests them in the same order every time, so repeated transforms reuse the
+ * buffers of the previous one instead of allocating new ones.
+ * <p>
+ * There are separate buffers for forward and inverse transforms, so that the subbands produced by a forward
+ * transform can be modified and inverse transformed. The images handed out after {@link #startForward()} (or
+ * {@link #startInverse()}) are valid only until the next call to the same method. A workspace must not be shared
+ * between threads; use {@link #getThreadInstance()} to get a workspace for the current thread.
+ */
+public class DWTWorkspace {
+    /**
+     * Workspace for each thread. It is softly referenced so that the buffers can be reclaimed under memory pressure
+     */
+    private static ThreadLocal<SoftReference<DWTWorkspace>> threadWorkspace = new ThreadLocal<SoftReference<DWTWorkspace>>();
+
+    /**
+     * Buffers for forward transforms
+     */
+    private List<Image> forwardImages = new ArrayList<Image>();
+
+    /**
+     * Buffers for inverse transforms
+     */
+    private List<Image> inverseImages = new ArrayList<Image>();
+
+    /**
+     * Buffers of the current transform
+     */
+    private List<Image> images = this.forwardImages;
+
+    /**
+     * Number of buffers handed out for the current transform
+     */
+    private int used = 0;
+
+    /**
+     * Get the workspace for the current thread
+     *
+     * @return Workspace
+     */
+    public static DWTWorkspace getThreadInstance() {
+        SoftReference<DWTWorkspace> ref = threadWorkspace.get();
+        DWTWorkspace workspace = (ref == null) ? null : ref.get();
+
+        if (workspace == null) {
+            workspace = new DWTWorkspace();
+            threadWorkspace.set(new SoftReference<DWTWorkspace>(workspace));
+        }
+        return workspace;
+    }
+
+    /**
+     * Start a forward transform. This invalidates the images handed out for the previous forward transform
+     */
+    public void startForward() {
+        this.images = this.forwardImages;
+        this.used = 0;
+    }
+
+    /**
+     * Start an inverse transform. This invalidates the images handed out for the previous inverse transform
+     */
+    public void startInverse() {
+        this.images = this.inverseImages;
+        this.used = 0;
+    }
+
+    /**
+     * Get the next image buffer for the current transform. The image is cleared to zero
+     *
+     * @param width Width of the image
+     * @param height Height of the image
+     * @return Image buffer
+     */
+    public Image getImage(int width, int height) {
+        return getImage(width, height, false);
+    }
+
+    /**
+     * Get the next image buffer with the given precision for the current transform. The image is cleared to zero
+     *
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param singlePrecision Flag to indicate whether the image data is stored in single precision
+     * @return Image buffer
+     */
+    public Image getImage(int width, int height, boolean singlePrecision) {
+        Image image = null;
+
+        if (this.used < this.images.size()) {
+            image = this.images.get(this.used);
+            if (image.getWidth() == width && image.getHeight() == height && image.isSinglePrecision() == singlePrecision) {
+                if (singlePrecision) {
+                    Arrays.fill(image.getFloatData(), 0.0f);
+                } else {
+                    Arrays.fill(image.getData(), 0.0);
+                }
+            } else {
+                image = new Image(width, height, singlePrecision);
+                this.images.set(this.used, image);
+            }
+        } else {
+            image = new Image(width, height, singlePrecision);
+            this.images.add(image);
+        }
+        this.used++;
+        return image;
+    }
+
+    /**
+     * Utility method to get a new (zeroed) image, either from the workspace or freshly allocated
+     *
+     * @param workspace Workspace to take the image from (<code>null</code> to allocate a new image)
+     * @param width Image width
+     * @param height Image height
+     * @param singlePrecision Flag to indicate whether the image data is stored in single precision
+     * @return Image
+     */
+    static Image createImage(DWTWorkspace workspace, int width, int height, boolean singlePrecision) {
+        if (workspace == null) {
+            return new Image(width, height, singlePrecision);
+        }
+        return workspace.getImage(width, height, singlePrecision);
+    }
+}
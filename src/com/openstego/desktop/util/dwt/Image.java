@@ -7,7 +7,9 @@
 package com.openstego.desktop.util.dwt;
 
 /**
- * Object to store Image data
+ * Object to store Image data. The data is stored either in double precision (default) or in single precision. Single
+ * precision halves the memory used by the image, and lets the convolutions process twice as many values per vector
+ * instruction
  */
 public class Image {
     /**
@@ -15,6 +17,11 @@ public class Image {
      */
     private double[] data = null;
 
+    /**
+     * Image data for single precision image
+     */
+    private float[] floatData = null;
+
     /**
      * Image width
      */
@@ -32,15 +39,66 @@ public class Image {
      * @param height Height of the image
      */
     public Image(int width, int height) {
-        this.data = new double[width * height];
+        this(width, height, false);
+    }
+
+    /**
+     * Constructor with precision
+     *
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param singlePrecision Flag to indicate whether the data is to be stored in single precision
+     */
+    public Image(int width, int height, boolean singlePrecision) {
+        if (singlePrecision) {
+            this.floatData = new float[width * height];
+        } else {
+            this.data = new double[width * height];
+        }
         this.width = width;
         this.height = height;
     }
 
+    /**
+     * Get the value at the given index of the image data, irrespective of the precision
+     *
+     * @param index Index in the image data
+     * @return Value
+     */
+    public double getValue(int index) {
+        if (this.floatData != null) {
+            return this.floatData[index];
+        }
+        return this.data[index];
+    }
+
+    /**
+     * Set the value at the given index of the image data, irrespective of the precision
+     *
+     * @param index Index in the image data
+     * @param value Value
+     */
+    public void setValue(int index, double value) {
+        if (this.floatData != null) {
+            this.floatData[index] = (float) value;
+        } else {
+            this.data[index] = value;
+        }
+    }
+
+    /**
+     * Check whether the data is stored in single precision
+     *
+     * @return true if the data is stored in single precision
+     */
+    public boolean isSinglePrecision() {
+        return this.floatData != null;
+    }
+
     /**
      * Get method for data
      *
-     * @return data
+     * @return data (<code>null</code> for single precision image)
      */
     public double[] getData() {
         return this.data;
@@ -55,6 +113,24 @@ public class Image {
         this.data = data;
     }
 
+    /**
+     * Get method for floatData
+     *
+     * @return floatData (<code>null</code> for double precision image)
+     */
+    public float[] getFloatData() {
+        return this.floatData;
+    }
+
+    /**
+     * Set method for floatData
+     *
+     * @param floatData
+     */
+    public void setFloatData(float[] floatData) {
+        this.floatData = floatData;
+    }
+
     /**
      * Get method for width
      *
@@ -0,0 +1,490 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util.dwt;
+
+import com.openstego.desktop.util.CommonUtil;
+
+/**
+ * Wavelet transform using the lifting scheme. The signal is split into even and odd samples, which are then updated
+ * in place by alternating predict and update steps. This needs about half the arithmetic of the filter bank
+ * convolution in {@link DWTUtil}.
+ * <p>
+ * The transforms use periodic extension at the boundaries (as {@link Filter#METHOD_PERIODICAL}), and need the image
+ * width and height to be divisible by two at every decomposition level. The subbands are scaled and aligned like
+ * those of the matching filter in <code>filters.xml</code>:
+ * <ul>
+ * <li>{@link #CDF_5_3} matches filter 1 (biortho nr. 1)</li>
+ * <li>{@link #CDF_9_7} matches filter 2 (biortho nr. 2)</li>
+ * <li>{@link #HAAR} matches the orthonormal Haar filters with taps at positions -1 and 0</li>
+ * </ul>
+ * The coefficients of the matching filters are given to six decimals in <code>filters.xml</code>, so for three
+ * decomposition levels the subbands differ from those of the convolution by less than 5e-5 times the largest input
+ * value (Haar matches to rounding error).
+ * {@link #CDF_5_3_INTEGER} is the reversible integer-to-integer CDF 5/3 transform, which has no convolution
+ * counterpart: its coefficients are integers, and the inverse transform reconstructs the input exactly.
+ */
+public class LiftingScheme {
+    /**
+     * Filter ID for Haar wavelet using lifting
+     */
+    public static final int HAAR = 101;
+
+    /**
+     * Filter ID for CDF 5/3 wavelet using lifting
+     */
+    public static final int CDF_5_3 = 102;
+
+    /**
+     * Filter ID for CDF 9/7 wavelet using lifting
+     */
+    public static final int CDF_9_7 = 103;
+
+    /**
+     * Filter ID for reversible integer-to-integer CDF 5/3 wavelet using lifting
+     */
+    public static final int CDF_5_3_INTEGER = 104;
+
+    /**
+     * Coefficients of the lifting steps (see {@link #liftStep(int, double[], int, double[], int, int, int, int, double)})
+     */
+    private double[][] steps = null;
+
+    /**
+     * Scale factor for the low-pass band
+     */
+    private double lowScale = 1.0;
+
+    /**
+     * Scale factor for the high-pass band
+     */
+    private double highScale = 1.0;
+
+    /**
+     * Shift of the high-pass band (position of <code>d[n]</code> in the band is <code>n + highShift</code>)
+     */
+    private int highShift = 0;
+
+    /**
+     * Flag to indicate whether the lifting steps are rounded to integers
+     */
+    private boolean reversible = false;
+
+    /**
+     * Default constructor
+     *
+     * @param steps Coefficients of the lifting steps
+     * @param lowScale Scale factor for the low-pass band
+     * @param highScale Scale factor for the high-pass band
+     * @param highShift Shift of the high-pass band
+     * @param reversible Flag to indicate whether the lifting steps are rounded to integers
+     */
+    private LiftingScheme(double[][] steps, double lowScale, double highScale, int highShift, boolean reversible) {
+        this.steps = steps;
+        this.lowScale = lowScale;
+        this.highScale = highScale;
+        this.highShift = highShift;
+        this.reversible = reversible;
+    }
+
+    /**
+     * Get the lifting scheme for the given filter ID
+     *
+     * @param filterID Filter ID
+     * @return Lifting scheme, or <code>null</code> if the filter ID is not one of the lifting filters
+     */
+    public static LiftingScheme getInstance(int filterID) {
+        switch (filterID) {
+            case HAAR:
+                return new LiftingScheme(new double[][] { { -1.0, 0.0 }, { 0.0, 0.5 } }, Math.sqrt(2.0), -Math.sqrt(0.5), 0, false);
+            case CDF_5_3:
+                return new LiftingScheme(new double[][] { { -0.5, -0.5 }, { 0.25, 0.25 } }, Math.sqrt(2.0), -Math.sqrt(0.5), 1, false);
+            case CDF_9_7:
+                return new LiftingScheme(new double[][] { { -1.586134342059924, -1.586134342059924 }, { -0.052980118572961, -0.052980118572961 },
+                        { 0.882911075530934, 0.882911075530934 }, { 0.443506852043971, 0.443506852043971 } }, 1.149604398860241,
+                    -1.0 / 1.149604398860241, 0, false);
+            case CDF_5_3_INTEGER:
+                return new LiftingScheme(new double[][] { { -0.5, -0.5 }, { 0.25, 0.25 } }, 1.0, 1.0, 1, true);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Method to perform the wavelet transform
+     *
+     * @param origImg Original image
+     * @param level Decomposition level
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Data after performing wavelet transform
+     */
+    public ImageTree forwardTransform(Image origImg, int level, DWTWorkspace workspace) {
+        int width = origImg.getWidth();
+        int height = origImg.getHeight();
+        int maxLevel = 0;
+        Image inputImg = origImg;
+        Image lowImg = null;
+        Image highImg = null;
+        Image coarseImg = null;
+        Image horizontalImg = null;
+        Image verticalImg = null;
+        Image diagonalImg = null;
+        ImageTree returnTree = null;
+        ImageTree tempTree = null;
+        double[] s = new double[width / 2];
+        double[] d = new double[width / 2];
+
+        returnTree = new ImageTree();
+        tempTree = returnTree;
+        returnTree.setLevel(0);
+
+        maxLevel = ((int) (Math.log(CommonUtil.min(width, height)) / Math.log(2))) - 2;
+        if (maxLevel < level) {
+            level = maxLevel;
+        }
+
+        if (level < 1) /* do not transform */
+        {
+            coarseImg = DWTWorkspace.createImage(workspace, width, height, false);
+            System.arraycopy(origImg.getData(), 0, coarseImg.getData(), 0, width * height);
+            returnTree.setImage(coarseImg);
+            return returnTree;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if ((width % 2) != 0 || (height % 2) != 0) {
+                throw new IllegalArgumentException("Image size must be divisible by two at every decomposition level");
+            }
+
+            // Lines
+            lowImg = DWTWorkspace.createImage(workspace, width / 2, height, false);
+            highImg = DWTWorkspace.createImage(workspace, width / 2, height, false);
+            for (int y = 0; y < height; y++) {
+                forwardLine(inputImg.getData(), y * width, width, lowImg.getData(), highImg.getData(), y * (width / 2), s, d);
+            }
+
+            width = width / 2;
+            height = height / 2;
+
+            // Rows
+            coarseImg = DWTWorkspace.createImage(workspace, width, height, false);
+            horizontalImg = DWTWorkspace.createImage(workspace, width, height, false);
+            verticalImg = DWTWorkspace.createImage(workspace, width, height, false);
+            diagonalImg = DWTWorkspace.createImage(workspace, width, height, false);
+            forwardRows(lowImg.getData(), width, height, coarseImg.getData(), horizontalImg.getData());
+            forwardRows(highImg.getData(), width, height, verticalImg.getData(), diagonalImg.getData());
+
+            tempTree.setCoarse(new ImageTree());
+            tempTree.setHorizontal(new ImageTree());
+            tempTree.setVertical(new ImageTree());
+            tempTree.setDiagonal(new ImageTree());
+
+            tempTree.getCoarse().setLevel(i + 1);
+            tempTree.getHorizontal().setLevel(i + 1);
+            tempTree.getVertical().setLevel(i + 1);
+            tempTree.getDiagonal().setLevel(i + 1);
+
+            tempTree.getHorizontal().setImage(horizontalImg);
+            tempTree.getVertical().setImage(verticalImg);
+            tempTree.getDiagonal().setImage(diagonalImg);
+
+            inputImg = coarseImg;
+            tempTree = tempTree.getCoarse();
+        }
+
+        tempTree.setImage(coarseImg);
+        return returnTree;
+    }
+
+    /**
+     * Method to perform the wavelet packet transform (WP), in which the detail subbands are decomposed further along
+     * with the coarse subband. The tree has the same layout as that of {@link DWTUtil#waveletTransformWp(Image, int,
+     * int, FilterGH[], int)}
+     *
+     * @param origImg Original image
+     * @param currLevel Current decomposition level
+     * @param level Decomposition level
+     * @return Data after performing wavelet transform
+     */
+    public ImageTree forwardTransformWp(Image origImg, int currLevel, int level) {
+        int maxLevel = 0;
+        Image tempImg = null;
+        ImageTree stepTree = null;
+        ImageTree returnTree = null;
+        ImageTree tempTree = null;
+
+        returnTree = new ImageTree();
+        tempTree = returnTree;
+        tempTree.setLevel(currLevel);
+
+        maxLevel = ((int) (Math.log(CommonUtil.min(origImg.getWidth(), origImg.getHeight())) / Math.log(2))) - 2;
+        if (maxLevel < level) {
+            level = maxLevel;
+        }
+
+        if (currLevel >= level) {
+            tempImg = new Image(origImg.getWidth(), origImg.getHeight());
+            System.arraycopy(origImg.getData(), 0, tempImg.getData(), 0, origImg.getWidth() * origImg.getHeight());
+            returnTree.setImage(tempImg);
+            return returnTree;
+        }
+
+        tempImg = origImg;
+        for (int i = currLevel; i < level; i++) {
+            // Single level decomposition, after which every subband is decomposed further
+            stepTree = forwardTransform(tempImg, 1, null);
+
+            tempTree.setCoarse(new ImageTree());
+            tempTree.getCoarse().setLevel(i + 1);
+            tempTree.setHorizontal(forwardTransformWp(stepTree.getHorizontal().getImage(), i + 1, level));
+            tempTree.setVertical(forwardTransformWp(stepTree.getVertical().getImage(), i + 1, level));
+            tempTree.setDiagonal(forwardTransformWp(stepTree.getDiagonal().getImage(), i + 1, level));
+
+            tempImg = stepTree.getCoarse().getImage();
+            tempTree = tempTree.getCoarse();
+        }
+
+        tempTree.setImage(tempImg);
+        return returnTree;
+    }
+
+    /**
+     * Method to perform inverse wavelet transform
+     *
+     * @param tree Forward transformed DWT data
+     * @param workspace Workspace to take the images from (<code>null</code> to allocate new images)
+     * @return Inverse transformed image data
+     */
+    public Image inverseTransform(ImageTree tree, DWTWorkspace workspace) {
+        int width = 0;
+        int height = 0;
+        Image retImg = null;
+        Image coarseImg = null;
+        Image horizontalImg = null;
+        Image verticalImg = null;
+        Image diagonalImg = null;
+        Image lowImg = null;
+        Image highImg = null;
+        double[] s = null;
+        double[] d = null;
+
+        if (tree.getImage() != null) {
+            return tree.getImage();
+        }
+
+        coarseImg = inverseTransform(tree.getCoarse(), workspace);
+        horizontalImg = inverseTransform(tree.getHorizontal(), workspace);
+        verticalImg = inverseTransform(tree.getVertical(), workspace);
+        diagonalImg = inverseTransform(tree.getDiagonal(), workspace);
+
+        width = coarseImg.getWidth();
+        height = coarseImg.getHeight();
+
+        // Rows
+        lowImg = DWTWorkspace.createImage(workspace, width, 2 * height, false);
+        highImg = DWTWorkspace.createImage(workspace, width, 2 * height, false);
+        inverseRows(coarseImg.getData(), horizontalImg.getData(), width, height, lowImg.getData());
+        inverseRows(verticalImg.getData(), diagonalImg.getData(), width, height, highImg.getData());
+
+        // Lines
+        retImg = DWTWorkspace.createImage(workspace, 2 * width, 2 * height, false);
+        s = new double[width];
+        d = new double[width];
+        for (int y = 0; y < 2 * height; y++) {
+            inverseLine(lowImg.getData(), highImg.getData(), y * width, width, retImg.getData(), 2 * y * width, s, d);
+        }
+
+        return retImg;
+    }
+
+    /**
+     * Method to transform one line of data into its low-pass and high-pass bands
+     *
+     * @param input Input data
+     * @param inStart Start point for input data
+     * @param len Length of input data (must be even)
+     * @param low Output data for low-pass band
+     * @param high Output data for high-pass band
+     * @param outStart Start point for output data
+     * @param s Temporary array for even samples (at least <code>len / 2</code> long)
+     * @param d Temporary array for odd samples (at least <code>len / 2</code> long)
+     */
+    private void forwardLine(double[] input, int inStart, int len, double[] low, double[] high, int outStart, double[] s, double[] d) {
+        int half = len / 2;
+        int inPos = inStart;
+
+        for (int n = 0; n < half; n++) {
+            s[n] = input[inPos++];
+            d[n] = input[inPos++];
+        }
+
+        for (int k = 0; k < this.steps.length; k++) {
+            liftStep(k, s, 0, d, 0, half, 1, 1, 1.0);
+        }
+
+        for (int n = 0; n < half; n++) {
+            low[outStart + n] = s[n] * this.lowScale;
+        }
+        for (int n = 0; n < half - this.highShift; n++) {
+            high[outStart + n + this.highShift] = d[n] * this.highScale;
+        }
+        for (int n = half - this.highShift; n < half; n++) {
+            high[outStart + n + this.highShift - half] = d[n] * this.highScale;
+        }
+    }
+
+    /**
+     * Method to merge the low-pass and high-pass bands of one line of data back into the original data
+     *
+     * @param low Input data for low-pass band
+     * @param high Input data for high-pass band
+     * @param inStart Start point for input data
+     * @param half Length of each band
+     * @param output Output data
+     * @param outStart Start point for output data
+     * @param s Temporary array for even samples (at least <code>half</code> long)
+     * @param d Temporary array for odd samples (at least <code>half</code> long)
+     */
+    private void inverseLine(double[] low, double[] high, int inStart, int half, double[] output, int outStart, double[] s, double[] d) {
+        int outPos = outStart;
+
+        for (int n = 0; n < half; n++) {
+            s[n] = low[inStart + n] / this.lowScale;
+        }
+        for (int n = 0; n < half - this.highShift; n++) {
+            d[n] = high[inStart + n + this.highShift] / this.highScale;
+        }
+        for (int n = half - this.highShift; n < half; n++) {
+            d[n] = high[inStart + n + this.highShift - half] / this.highScale;
+        }
+
+        for (int k = this.steps.length - 1; k >= 0; k--) {
+            liftStep(k, s, 0, d, 0, half, 1, 1, -1.0);
+        }
+
+        for (int n = 0; n < half; n++) {
+            output[outPos++] = s[n];
+            output[outPos++] = d[n];
+        }
+    }
+
+    /**
+     * Method to transform all the rows (columns) of a band into its low-pass and high-pass bands. Whole lines are
+     * lifted at a time, so that the innermost loops run over contiguous memory. The input band is modified
+     *
+     * @param data Input band, with <code>2 * half</code> lines
+     * @param width Width of the band
+     * @param half Number of lines in each output band
+     * @param low Output data for low-pass band
+     * @param high Output data for high-pass band
+     */
+    private void forwardRows(double[] data, int width, int half, double[] low, double[] high) {
+        int inPos = 0;
+        int outPos = 0;
+
+        for (int k = 0; k < this.steps.length; k++) {
+            liftStep(k, data, 0, data, width, half, 2 * width, width, 1.0);
+        }
+
+        for (int n = 0; n < half; n++) {
+            inPos = 2 * n * width;
+            outPos = n * width;
+            for (int x = 0; x < width; x++) {
+                low[outPos + x] = data[inPos + x] * this.lowScale;
+            }
+
+            inPos += width;
+            outPos = ((n + this.highShift) % half) * width;
+            for (int x = 0; x < width; x++) {
+                high[outPos + x] = data[inPos + x] * this.highScale;
+            }
+        }
+    }
+
+    /**
+     * Method to merge the low-pass and high-pass bands of all the rows (columns) back into the original band
+     *
+     * @param low Input data for low-pass band
+     * @param high Input data for high-pass band
+     * @param width Width of the bands
+     * @param half Number of lines in each input band
+     * @param data Output band, with <code>2 * half</code> lines
+     */
+    private void inverseRows(double[] low, double[] high, int width, int half, double[] data) {
+        int inPos = 0;
+        int outPos = 0;
+
+        for (int n = 0; n < half; n++) {
+            inPos = n * width;
+            outPos = 2 * n * width;
+            for (int x = 0; x < width; x++) {
+                data[outPos + x] = low[inPos + x] / this.lowScale;
+            }
+
+            inPos = ((n + this.highShift) % half) * width;
+            outPos += width;
+            for (int x = 0; x < width; x++) {
+                data[outPos + x] = high[inPos + x] / this.highScale;
+            }
+        }
+
+        for (int k = this.steps.length - 1; k >= 0; k--) {
+            liftStep(k, data, 0, data, width, half, 2 * width, width, -1.0);
+        }
+    }
+
+    /**
+     * Method to apply (or undo) one lifting step, with periodic extension at the boundaries. The samples are vectors
+     * of <code>len</code> contiguous values each, so that a whole line can be lifted at a time. Even steps are predict
+     * steps: <code>d[n] += c0 * s[n] + c1 * s[n + 1]</code>, and odd steps are update steps:
+     * <code>s[n] += c0 * d[n - 1] + c1 * d[n]</code>
+     *
+     * @param k Step number
+     * @param s Data for even samples
+     * @param sStart Start point for even samples
+     * @param d Data for odd samples
+     * @param dStart Start point for odd samples
+     * @param half Number of even (and odd) samples
+     * @param step Distance between two consecutive samples
+     * @param len Length of each sample vector
+     * @param sign 1 to apply the step, -1 to undo it
+     */
+    private void liftStep(int k, double[] s, int sStart, double[] d, int dStart, int half, int step, int len, double sign) {
+        double c0 = this.steps[k][0];
+        double c1 = this.steps[k][1];
+        int pos = 0;
+        int pos0 = 0;
+        int pos1 = 0;
+
+        for (int n = 0; n < half; n++) {
+            if ((k % 2) == 0) {
+                pos = dStart + n * step;
+                pos0 = sStart + n * step;
+                pos1 = sStart + ((n == half - 1) ? 0 : n + 1) * step;
+                for (int x = 0; x < len; x++) {
+                    d[pos + x] += sign * lift(c0 * s[pos0 + x] + c1 * s[pos1 + x]);
+                }
+            } else {
+                pos = sStart + n * step;
+                pos0 = dStart + ((n == 0) ? half - 1 : n - 1) * step;
+                pos1 = dStart + n * step;
+                for (int x = 0; x < len; x++) {
+                    s[pos + x] += sign * lift(c0 * d[pos0 + x] + c1 * d[pos1 + x]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rounds the value of a lifting step for the reversible transform
+     *
+     * @param value Value of the lifting step
+     * @return Rounded value for reversible transform, else the value as is
+     */
+    private double lift(double value) {
+        return this.reversible ? Math.floor(value + 0.5) : value;
+    }
+}
@@ -0,0 +1,808 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util.dwt;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.openstego.desktop.util.ImageUtil;
+import com.openstego.desktop.util.PixelPlanes;
+
+/**
+ * Line-based wavelet transform with bounded working memory. Instead of convoluting whole images level by level, the
+ * rows of the image are pushed through all the levels one at a time: each row is convoluted along the line as soon as
+ * it arrives, and each output row of the column convolutions is computed as soon as all the rows it needs have
+ * arrived. Rows are released as soon as no pending output needs them.
+ * <p>
+ * Apart from the subbands themselves, the transform keeps only a few rows per level (about the filter length, plus
+ * the rows needed at the other end of the image for periodical filtering). The coarse images of the intermediate
+ * levels, the double copy of the input plane and the temporary images of {@link DWTUtil} are never built. Every
+ * output value is accumulated in the same order as in {@link DWTUtil}, so the results are identical.
+ * <p>
+ * Only the filters in the filter file and double precision images are supported. An object of this class must not be
+ * shared between threads.
+ */
+public class StreamingDWT {
+    /**
+     * Plan for the transforms
+     */
+    private DWTPlan plan = null;
+
+    /**
+     * Workspace to take the subbands from (<code>null</code> to allocate new images)
+     */
+    private DWTWorkspace workspace = null;
+
+    /**
+     * Free rows, by row length
+     */
+    private Map<Integer, ArrayDeque<double[]>> freeRows = new HashMap<Integer, ArrayDeque<double[]>>();
+
+    /**
+     * Default constructor
+     *
+     * @param plan Plan for the transforms (must not be for a lifting filter)
+     * @param workspace Workspace to take the subbands from (<code>null</code> to allocate new images)
+     */
+    public StreamingDWT(DWTPlan plan, DWTWorkspace workspace) {
+        if (plan.getLifting() != null) {
+            throw new IllegalArgumentException("Streaming transform is not supported for lifting filters");
+        }
+        this.plan = plan;
+        this.workspace = workspace;
+    }
+
+    /**
+     * Check whether the given image tree can be inverse transformed by this class. This is true for the trees
+     * produced by the forward transform (of this class or of {@link DWTUtil#waveletTransform}), but not for wavelet
+     * packet trees
+     *
+     * @param tree Image tree
+     * @return true if the tree can be inverse transformed
+     */
+    public static boolean isSupported(ImageTree tree) {
+        ImageTree p = tree;
+
+        if (p.getImage() != null) {
+            return false;
+        }
+        while (p.getImage() == null) {
+            if (p.getFlag() != 0 || p.getHorizontal().getImage() == null || p.getVertical().getImage() == null
+                    || p.getDiagonal().getImage() == null || p.getHorizontal().getImage().isSinglePrecision()) {
+                return false;
+            }
+            p = p.getCoarse();
+        }
+        return !p.getImage().isSinglePrecision();
+    }
+
+    /**
+     * Method to perform forward DWT on one plane of the pixel data
+     *
+     * @param planes Image pixel data, with the image size of the plan
+     * @param plane Index of the plane to be transformed
+     * @return Image tree data after DWT
+     */
+    public ImageTree forwardTransform(PixelPlanes planes, int plane) {
+        int level = this.plan.getEffectiveLevel();
+        int cols = this.plan.getCols();
+        int rows = this.plan.getRows();
+        int[] pixels = planes.getPlane(plane);
+        int stride = planes.getStride();
+        int idx = 0;
+        ImageTree returnTree = new ImageTree();
+        ImageTree tempTree = returnTree;
+        RowSink sink = null;
+        RowSink[] levelSinks = new RowSink[level];
+        Image coarseImg = null;
+        double[] row = null;
+
+        if (level < 1) {
+            throw new IllegalArgumentException("Image is too small for streaming transform");
+        }
+
+        // Build the tree and the chain of levels. The coarse rows of the last level go to the coarse image, and those
+        // of the other levels to the next level
+        returnTree.setLevel(0);
+        for (int i = 0; i < level; i++) {
+            tempTree.setCoarse(new ImageTree());
+            tempTree.setHorizontal(new ImageTree());
+            tempTree.setVertical(new ImageTree());
+            tempTree.setDiagonal(new ImageTree());
+
+            tempTree.getCoarse().setLevel(i + 1);
+            tempTree.getHorizontal().setLevel(i + 1);
+            tempTree.getVertical().setLevel(i + 1);
+            tempTree.getDiagonal().setLevel(i + 1);
+
+            tempTree.getHorizontal().setImage(DWTWorkspace.createImage(this.workspace, this.plan.getWidth(i + 1), this.plan.getHeight(i + 1), false));
+            tempTree.getVertical().setImage(DWTWorkspace.createImage(this.workspace, this.plan.getWidth(i + 1), this.plan.getHeight(i + 1), false));
+            tempTree.getDiagonal().setImage(DWTWorkspace.createImage(this.workspace, this.plan.getWidth(i + 1), this.plan.getHeight(i + 1), false));
+
+            tempTree = tempTree.getCoarse();
+        }
+        coarseImg = DWTWorkspace.createImage(this.workspace, this.plan.getWidth(level), this.plan.getHeight(level), false);
+        tempTree.setImage(coarseImg);
+
+        tempTree = returnTree;
+        for (int i = 0; i < level; i++) {
+            levelSinks[i] = new ForwardLevel(i, tempTree);
+            tempTree = tempTree.getCoarse();
+        }
+        for (int i = 0; i < level; i++) {
+            ((ForwardLevel) levelSinks[i]).connect((i == level - 1) ? null : levelSinks[i + 1], coarseImg);
+        }
+
+        // Push the rows of the plane
+        sink = levelSinks[0];
+        for (int i = 0; i < rows; i++) {
+            row = getRow(cols);
+            idx = i * stride;
+            for (int j = 0; j < cols; j++) {
+                row[j] = pixels[idx++];
+            }
+            sink.putRow(i, row);
+        }
+
+        return returnTree;
+    }
+
+    /**
+     * Method to perform inverse DWT to get back one plane of the pixel data
+     *
+     * @param tree DWT data as image tree (see {@link #isSupported(ImageTree)})
+     * @param planes Image pixel data, with the image size of the plan
+     * @param plane Index of the plane to be written
+     */
+    public void inverseTransform(ImageTree tree, PixelPlanes planes, int plane) {
+        ImageTree p = tree;
+        RowSink sink = new PlaneWriter(planes, plane);
+        InverseLevel inverseLevel = null;
+        Image coarseImg = null;
+        double[] row = null;
+
+        if (!isSupported(tree)) {
+            throw new IllegalArgumentException("Image tree is not supported for streaming transform");
+        }
+
+        // Build the chain of levels from the top, each level sending its rows to the level above
+        while (p.getImage() == null) {
+            inverseLevel = new InverseLevel(p, sink);
+            sink = inverseLevel;
+            p = p.getCoarse();
+        }
+
+        // Push the rows of the coarse image of the deepest level
+        coarseImg = p.getImage();
+        for (int i = 0; i < coarseImg.getHeight(); i++) {
+            row = getRow(coarseImg.getWidth());
+            System.arraycopy(coarseImg.getData(), i * coarseImg.getWidth(), row, 0, coarseImg.getWidth());
+            sink.putRow(i, row);
+        }
+    }
+
+    /**
+     * Get a zeroed row of the given length
+     *
+     * @param length Row length
+     * @return Row
+     */
+    private double[] getRow(int length) {
+        ArrayDeque<double[]> free = this.freeRows.get(length);
+        double[] row = (free == null) ? null : free.poll();
+
+        if (row == null) {
+            return new double[length];
+        }
+        Arrays.fill(row, 0.0);
+        return row;
+    }
+
+    /**
+     * Release a row so that it can be reused
+     *
+     * @param row Row
+     */
+    private void releaseRow(double[] row) {
+        ArrayDeque<double[]> free = this.freeRows.get(row.length);
+
+        if (free == null) {
+            free = new ArrayDeque<double[]>();
+            this.freeRows.put(row.length, free);
+        }
+        free.push(row);
+    }
+
+    /**
+     * Get a new convolution kernel of the inverse transform for the given level. Each use of a kernel gets its own
+     * object, so that its boundary table matches the lengths of that use
+     *
+     * @param level Level
+     * @param index Index of the kernel (see {@link DWTPlan#getKernels(FilterGH, int, boolean)})
+     * @return Kernel
+     */
+    private ConvolutionKernel getInverseKernel(int level, int index) {
+        return DWTPlan.getKernels(this.plan.getFilters()[level], this.plan.getMethod() + 1, true)[index];
+    }
+
+    /**
+     * Receiver of rows
+     */
+    private interface RowSink {
+        /**
+         * Receive one row. The row is owned by the receiver, which must release it when done
+         *
+         * @param index Index of the row
+         * @param row Row data
+         */
+        void putRow(int index, double[] row);
+    }
+
+    /**
+     * One term of an output row of a column convolution: a kernel applied to the rows of an input
+     */
+    private static class Term {
+        /**
+         * Convolution kernel (<code>null</code> to leave the output unchanged)
+         */
+        private ConvolutionKernel kernel = null;
+
+        /**
+         * Input image, or <code>null</code> if the input is the rows streamed to the stage
+         */
+        private Image image = null;
+
+        /**
+         * Data of each row of the input image
+         */
+        private double[][] rows = null;
+
+        /**
+         * Start point of each row of the input image
+         */
+        private int[] offsets = null;
+
+        /**
+         * Length of input columns
+         */
+        private int inLen = 0;
+
+        /**
+         * Number of columns
+         */
+        private int width = 0;
+
+        /**
+         * Default constructor
+         *
+         * @param kernel Convolution kernel
+         * @param image Input image, or <code>null</code> if the input is the rows streamed to the stage
+         * @param inLen Length of input columns
+         * @param width Number of columns
+         */
+        private Term(ConvolutionKernel kernel, Image image, int inLen, int width) {
+            this.kernel = kernel;
+            this.image = image;
+            this.inLen = inLen;
+            this.width = width;
+            if (image != null) {
+                this.rows = new double[inLen][];
+                this.offsets = new int[inLen];
+                for (int i = 0; i < inLen; i++) {
+                    this.rows[i] = image.getData();
+                    this.offsets[i] = i * width;
+                }
+            }
+        }
+    }
+
+    /**
+     * Column convolution of streamed rows. Each target of the stage is one output (an image or a chain of rows), which
+     * is the sum of one or more terms. At most one term of each target uses the streamed rows
+     */
+    private class ColumnStage implements RowSink {
+        /**
+         * Streamed rows which have arrived and are still needed
+         */
+        private double[][] rows = null;
+
+        /**
+         * Start point of each streamed row (always zero)
+         */
+        private int[] offsets = null;
+
+        /**
+         * Terms of each target
+         */
+        private Term[][] terms = null;
+
+        /**
+         * Output image of each target (<code>null</code> if the rows are sent to a sink)
+         */
+        private Image[] images = null;
+
+        /**
+         * Receiver of the rows of each target (if there is no output image)
+         */
+        private RowSink[] sinks = null;
+
+        /**
+         * Length of output columns of each target
+         */
+        private int[] outLens = null;
+
+        /**
+         * Width of output rows of each target
+         */
+        private int[] outWidths = null;
+
+        /**
+         * Number of streamed rows still missing for each output row of each target
+         */
+        private int[][] missing = null;
+
+        /**
+         * Outputs using each streamed row, encoded as <code>target * maxOutLen + row</code>
+         */
+        private int[][] users = null;
+
+        /**
+         * Number of outputs not yet computed which use each streamed row
+         */
+        private int[] useCount = null;
+
+        /**
+         * Largest output column length of the targets
+         */
+        private int maxOutLen = 0;
+
+        /**
+         * Temporary array for the distinct input row indices of an output
+         */
+        private int[] inIndex = null;
+
+        /**
+         * Temporary array for the input row indices of one term
+         */
+        private int[] termIndex = null;
+
+        /**
+         * Default constructor
+         *
+         * @param inLen Number of streamed rows
+         * @param terms Terms of each target
+         * @param images Output image of each target (<code>null</code> if the rows are sent to a sink)
+         * @param sinks Receiver of the rows of each target (if there is no output image)
+         * @param outLens Length of output columns of each target
+         * @param outWidths Width of output rows of each target
+         */
+        private ColumnStage(int inLen, Term[][] terms, Image[] images, RowSink[] sinks, int[] outLens, int[] outWidths) {
+            int[] userCount = new int[inLen];
+            int count = 0;
+            int n = 1;
+
+            this.rows = new double[inLen][];
+            this.offsets = new int[inLen];
+            this.terms = terms;
+            this.images = images;
+            this.sinks = sinks;
+            this.outLens = outLens;
+            this.outWidths = outWidths;
+            for (int t = 0; t < terms.length; t++) {
+                this.maxOutLen = Math.max(this.maxOutLen, outLens[t]);
+                for (Term term : terms[t]) {
+                    if (term.kernel != null) {
+                        n = Math.max(n, term.kernel.getLength());
+                    }
+                }
+            }
+            this.inIndex = new int[n];
+            this.termIndex = new int[n];
+
+            // Count the streamed rows needed by each output, and the outputs using each streamed row
+            this.missing = new int[terms.length][];
+            for (int t = 0; t < terms.length; t++) {
+                this.missing[t] = new int[outLens[t]];
+                for (int i = 0; i < outLens[t]; i++) {
+                    count = getStreamedRows(t, i);
+                    this.missing[t][i] = count;
+                    for (int k = 0; k < count; k++) {
+                        userCount[this.inIndex[k]]++;
+                    }
+                }
+            }
+
+            this.users = new int[inLen][];
+            for (int j = 0; j < inLen; j++) {
+                this.users[j] = new int[userCount[j]];
+            }
+            this.useCount = userCount.clone();
+            Arrays.fill(userCount, 0);
+            for (int t = 0; t < terms.length; t++) {
+                for (int i = 0; i < outLens[t]; i++) {
+                    count = getStreamedRows(t, i);
+                    for (int k = 0; k < count; k++) {
+                        this.users[this.inIndex[k]][userCount[this.inIndex[k]]++] = t * this.maxOutLen + i;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compute the outputs which do not need any streamed row. This must be called once, after the receivers of
+         * the rows are ready
+         */
+        private void start() {
+            for (int t = 0; t < this.terms.length; t++) {
+                for (int i = 0; i < this.outLens[t]; i++) {
+                    if (this.missing[t][i] == 0) {
+                        computeOutput(t, i);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void putRow(int index, double[] row) {
+            int t = 0;
+            int i = 0;
+
+            this.rows[index] = row;
+            if (this.useCount[index] == 0) {
+                release(index);
+                return;
+            }
+
+            for (int code : this.users[index]) {
+                t = code / this.maxOutLen;
+                i = code % this.maxOutLen;
+                if (--this.missing[t][i] == 0) {
+                    computeOutput(t, i);
+                }
+            }
+        }
+
+        /**
+         * Compute one output row, and release the streamed rows which are no longer needed
+         *
+         * @param t Target
+         * @param i Index of the output row
+         */
+        private void computeOutput(int t, int i) {
+            double[] output = null;
+            int outStart = 0;
+            int count = 0;
+
+            if (this.images[t] != null) {
+                output = this.images[t].getData();
+                outStart = i * this.images[t].getWidth();
+            } else {
+                output = getRow(this.outWidths[t]);
+            }
+
+            for (Term term : this.terms[t]) {
+                if (term.kernel != null) {
+                    if (term.image == null) {
+                        term.kernel.convoluteRow(this.rows, this.offsets, term.inLen, output, outStart, this.outLens[t], i, term.width);
+                    } else {
+                        term.kernel.convoluteRow(term.rows, term.offsets, term.inLen, output, outStart, this.outLens[t], i, term.width);
+                    }
+                }
+            }
+
+            count = getStreamedRows(t, i);
+            for (int k = 0; k < count; k++) {
+                if (--this.useCount[this.inIndex[k]] == 0) {
+                    release(this.inIndex[k]);
+                }
+            }
+
+            if (this.images[t] == null) {
+                this.sinks[t].putRow(i, output);
+            }
+        }
+
+        /**
+         * List the distinct streamed rows needed by one output row into <code>inIndex</code>
+         *
+         * @param t Target
+         * @param i Index of the output row
+         * @return Number of rows
+         */
+        private int getStreamedRows(int t, int i) {
+            int count = 0;
+            int distinct = 0;
+            boolean seen = false;
+
+            for (Term term : this.terms[t]) {
+                if (term.kernel != null && term.image == null) {
+                    count = term.kernel.getInputRows(term.inLen, this.outLens[t], i, this.termIndex);
+                    for (int k = 0; k < count; k++) {
+                        seen = false;
+                        for (int m = 0; m < distinct; m++) {
+                            if (this.inIndex[m] == this.termIndex[k]) {
+                                seen = true;
+                                break;
+                            }
+                        }
+                        if (!seen) {
+                            this.inIndex[distinct++] = this.termIndex[k];
+                        }
+                    }
+                }
+            }
+            return distinct;
+        }
+
+        /**
+         * Release a streamed row
+         *
+         * @param index Index of the row
+         */
+        private void release(int index) {
+            releaseRow(this.rows[index]);
+            this.rows[index] = null;
+        }
+    }
+
+    /**
+     * One level of the forward transform. Each row of the input of the level is convoluted along the line with the
+     * low-pass and high-pass filters, and the results are streamed to the column convolutions
+     */
+    private class ForwardLevel implements RowSink {
+        /**
+         * Level
+         */
+        private int level = 0;
+
+        /**
+         * Tree node of the level
+         */
+        private ImageTree tree = null;
+
+        /**
+         * Kernels of the level
+         */
+        private ConvolutionKernel[] kernels = null;
+
+        /**
+         * Column convolution of the low-pass lines (coarse and horizontal subbands)
+         */
+        private ColumnStage lowStage = null;
+
+        /**
+         * Column convolution of the high-pass lines (vertical and diagonal subbands)
+         */
+        private ColumnStage highStage = null;
+
+        /**
+         * Default constructor
+         *
+         * @param level Level
+         * @param tree Tree node of the level
+         */
+        private ForwardLevel(int level, ImageTree tree) {
+            this.level = level;
+            this.tree = tree;
+            this.kernels = StreamingDWT.this.plan.getForwardKernels()[level];
+        }
+
+        /**
+         * Set up the column convolutions once the receiver of the coarse rows is known
+         *
+         * @param next Next level, to receive the coarse rows (<code>null</code> for the last level)
+         * @param coarseImg Coarse image of the last level
+         */
+        private void connect(RowSink next, Image coarseImg) {
+            DWTPlan plan = StreamingDWT.this.plan;
+            int inLen = plan.getHeight(this.level);
+            int width = plan.getWidth(this.level + 1);
+            int height = plan.getHeight(this.level + 1);
+
+            this.lowStage = new ColumnStage(inLen,
+                new Term[][] { { new Term(this.kernels[DWTPlan.ROW_H], null, inLen, width) }, { new Term(this.kernels[DWTPlan.ROW_G], null, inLen, width) } },
+                new Image[] { (next == null) ? coarseImg : null, this.tree.getHorizontal().getImage() }, new RowSink[] { next, null },
+                new int[] { height, height }, new int[] { width, width });
+            this.highStage = new ColumnStage(inLen,
+                new Term[][] { { new Term(this.kernels[DWTPlan.ROW_H], null, inLen, width) }, { new Term(this.kernels[DWTPlan.ROW_G], null, inLen, width) } },
+                new Image[] { this.tree.getVertical().getImage(), this.tree.getDiagonal().getImage() }, new RowSink[] { null, null },
+                new int[] { height, height }, new int[] { width, width });
+            this.lowStage.start();
+            this.highStage.start();
+        }
+
+        @Override
+        public void putRow(int index, double[] row) {
+            int inLen = StreamingDWT.this.plan.getWidth(this.level);
+            int outLen = StreamingDWT.this.plan.getWidth(this.level + 1);
+            double[] low = getRow(outLen);
+            double[] high = getRow(outLen);
+
+            if (this.kernels[DWTPlan.LINE_H] != null) {
+                this.kernels[DWTPlan.LINE_H].convolute(row, 0, inLen, 1, low, 0, outLen, 1);
+                this.kernels[DWTPlan.LINE_G].convolute(row, 0, inLen, 1, high, 0, outLen, 1);
+            }
+            releaseRow(row);
+
+            this.lowStage.putRow(index, low);
+            this.highStage.putRow(index, high);
+        }
+    }
+
+    /**
+     * One level of the inverse transform. The coarse rows streamed to the level are convoluted along the columns
+     * together with the horizontal subband, and each resulting row is combined with the matching row of the
+     * vertical and diagonal subbands and convoluted along the line
+     */
+    private class InverseLevel implements RowSink {
+        /**
+         * Column convolution of the coarse rows and the horizontal subband
+         */
+        private ColumnStage stage = null;
+
+        /**
+         * Terms for the column convolution of the vertical and diagonal subbands
+         */
+        private Term[] detailTerms = null;
+
+        /**
+         * Kernel for line convolution of the low-pass rows
+         */
+        private ConvolutionKernel lineH = null;
+
+        /**
+         * Kernel for line convolution of the high-pass rows
+         */
+        private ConvolutionKernel lineG = null;
+
+        /**
+         * Receiver of the output rows
+         */
+        private RowSink next = null;
+
+        /**
+         * Width of the low-pass rows
+         */
+        private int lowWidth = 0;
+
+        /**
+         * Width of the high-pass rows
+         */
+        private int highWidth = 0;
+
+        /**
+         * Length of output columns
+         */
+        private int outLen = 0;
+
+        /**
+         * Width of output rows
+         */
+        private int outWidth = 0;
+
+        /**
+         * Default constructor
+         *
+         * @param tree Tree node of the level
+         * @param next Receiver of the output rows
+         */
+        private InverseLevel(ImageTree tree, RowSink next) {
+            int level = tree.getLevel();
+            Image horizontalImg = tree.getHorizontal().getImage();
+            Image verticalImg = tree.getVertical().getImage();
+            Image diagonalImg = tree.getDiagonal().getImage();
+            int coarseWidth = getReconstructedSize(tree.getCoarse(), true);
+            int coarseHeight = getReconstructedSize(tree.getCoarse(), false);
+
+            this.next = next;
+            this.lowWidth = coarseWidth;
+            this.highWidth = verticalImg.getWidth();
+            this.outWidth = coarseWidth + horizontalImg.getWidth();
+            this.outLen = coarseHeight + verticalImg.getHeight();
+            this.lineH = getInverseKernel(level, DWTPlan.LINE_H);
+            this.lineG = getInverseKernel(level, DWTPlan.LINE_G);
+
+            this.detailTerms = new Term[] { new Term(getInverseKernel(level, DWTPlan.ROW_H), verticalImg, verticalImg.getHeight(), verticalImg.getWidth()),
+                    new Term(getInverseKernel(level, DWTPlan.ROW_G), diagonalImg, diagonalImg.getHeight(), diagonalImg.getWidth()) };
+            this.stage = new ColumnStage(coarseHeight,
+                new Term[][] { { new Term(getInverseKernel(level, DWTPlan.ROW_H), null, coarseHeight, coarseWidth),
+                        new Term(getInverseKernel(level, DWTPlan.ROW_G), horizontalImg, horizontalImg.getHeight(), horizontalImg.getWidth()) } },
+                new Image[] { null }, new RowSink[] { new RowSink() {
+                    @Override
+                    public void putRow(int index, double[] row) {
+                        combineRow(index, row);
+                    }
+                } }, new int[] { this.outLen }, new int[] { coarseWidth });
+            this.stage.start();
+        }
+
+        @Override
+        public void putRow(int index, double[] row) {
+            this.stage.putRow(index, row);
+        }
+
+        /**
+         * Combine one low-pass row with the matching high-pass row into an output row
+         *
+         * @param index Index of the row
+         * @param low Low-pass row
+         */
+        private void combineRow(int index, double[] low) {
+            double[] high = getRow(this.highWidth);
+            double[] output = getRow(this.outWidth);
+
+            for (Term term : this.detailTerms) {
+                if (term.kernel != null) {
+                    term.kernel.convoluteRow(term.rows, term.offsets, term.inLen, high, 0, this.outLen, index, term.width);
+                }
+            }
+            if (this.lineH != null) {
+                this.lineH.convolute(low, 0, this.lowWidth, 1, output, 0, this.outWidth, 1);
+                this.lineG.convolute(high, 0, this.highWidth, 1, output, 0, this.outWidth, 1);
+            }
+            releaseRow(low);
+            releaseRow(high);
+
+            this.next.putRow(index, output);
+        }
+
+        /**
+         * Get the width (or height) of the image reconstructed from the given tree node
+         *
+         * @param tree Tree node
+         * @param width true for width, false for height
+         * @return Size
+         */
+        private int getReconstructedSize(ImageTree tree, boolean width) {
+            if (tree.getImage() != null) {
+                return width ? tree.getImage().getWidth() : tree.getImage().getHeight();
+            }
+            return getReconstructedSize(tree.getCoarse(), width)
+                    + (width ? tree.getHorizontal().getImage().getWidth() : tree.getVertical().getImage().getHeight());
+        }
+    }
+
+    /**
+     * Receiver of the rows of the top level of the inverse transform, which writes them to the pixel plane
+     */
+    private class PlaneWriter implements RowSink {
+        /**
+         * Pixel data of the plane
+         */
+        private int[] pixels = null;
+
+        /**
+         * Distance between the start of two consecutive rows in the plane
+         */
+        private int stride = 0;
+
+        /**
+         * Default constructor
+         *
+         * @param planes Image pixel data
+         * @param plane Index of the plane to be written
+         */
+        private PlaneWriter(PixelPlanes planes, int plane) {
+            this.pixels = planes.getPlane(plane);
+            this.stride = planes.getStride();
+        }
+
+        @Override
+        public void putRow(int index, double[] row) {
+            int idx = index * this.stride;
+
+            if (index < StreamingDWT.this.plan.getRows()) {
+                for (int j = 0; j < StreamingDWT.this.plan.getCols(); j++) {
+                    this.pixels[idx++] = ImageUtil.pixelRange((int) (row[j] + 0.5));
+                }
+            }
+            releaseRow(row);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Steganography utility to hide messages into cover files
+ * Author: Samir Vaidya (mailto:syvaidya@gmail.com)
+ * Copyright (c) 2007-2017 Samir Vaidya
+ */
+
+package com.openstego.desktop.util.dct;
+
+/**
+ * Development tool to compare the fast (AAN) 8x8 DCT implementation against the reference matrix implementation using
+ * {@link DCT#compareFastDct8x8(int, long)} with the JPEG luminance quantization table.
+ * <p>
+ * This class lives outside the <code>src</code> tree so that it is not part of the build. Compile it against the
+ * classes of the full source tree (including the <code>com.openstego.desktop.util.dct</code> package) and run:
+ *
+ * <pre>
+ * java com.openstego.desktop.util.dct.DCTCompare [blocks] [seed]
+ * </pre>
+ */
+public class DCTCompare {
+    /**
+     * Main method. Optional arguments are the number of blocks (default 100000) and the seed (default 0). Exits with
+     * status 1 if any quantized coefficient differs
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int numBlocks = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0L;
+        DCT dct = new DCT();
+        int mismatches = 0;
+
+        dct.initDct8x8();
+        dct.initQuantumJpegLumin();
+        mismatches = dct.compareFastDct8x8(numBlocks, seed);
+        System.out.println(numBlocks + " blocks compared, " + mismatches + " quantized coefficients differ");
+        if (mismatches != 0) {
+            System.exit(1);
+        }
+    }
+}